@@ -0,0 +1,20 @@
+package com.my.netty.core.reactor.channel;
+
+/**
+ * 开启了allowHalfClosure时，channel读取到对端的EOF(对端关闭了输出端或者调用了shutdownOutput)后，
+ * 本端的输入端被关闭，通过userEventTriggered向pipeline中的handler发出该事件(参考netty的ChannelInputShutdownEvent)
+ *
+ * 收到该事件后channel的输出端依然可用，handler可以继续写出响应，之后再close或者shutdownOutput
+ * */
+public final class MyChannelInputShutdownEvent {
+
+    public static final MyChannelInputShutdownEvent INSTANCE = new MyChannelInputShutdownEvent();
+
+    private MyChannelInputShutdownEvent() {
+    }
+
+    @Override
+    public String toString() {
+        return "MyChannelInputShutdownEvent";
+    }
+}
@@ -3,38 +3,106 @@ package com.my.netty.core.reactor.channel;
 import com.my.netty.bytebuffer.netty.MyByteBuf;
 import com.my.netty.core.reactor.channel.buffer.MyChannelOutboundBuffer;
 import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyWriteBufferWaterMark;
 import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
 import com.my.netty.core.reactor.exception.MyNettyException;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipelineSupplier;
 import com.my.netty.core.reactor.util.AssertUtil;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public abstract class MyNioChannel {
 
     private static final Logger logger = LoggerFactory.getLogger(MyNioChannel.class);
 
+    private static final AtomicIntegerFieldUpdater<MyNioChannel> AUTO_READ_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(MyNioChannel.class, "autoRead");
+
     private Selector selector;
 
     private SelectionKey selectionKey;
 
     private SelectableChannel javaChannel;
 
-    private MyNioEventLoop myNioEventLoop;
+    /**
+     * channel所绑定的eventLoop，channel在eventLoop之间迁移时会被其它线程读取，所以需要是volatile的
+     * */
+    private volatile MyNioEventLoop myNioEventLoop;
 
     private MyChannelPipeline channelPipeline;
 
     private MyChannelOutboundBuffer myChannelOutboundBuffer;
 
+    /**
+     * 当前channel复用的void future(writeVoid)
+     * */
+    private final MyVoidCompletableFuture voidFuture = new MyVoidCompletableFuture(this);
+
     protected DefaultChannelConfig defaultChannelConfig;
 
+    /**
+     * 是否已经注册到了eventLoop上(只由eventLoop线程访问)
+     * */
+    private boolean registered;
+
+    /**
+     * 是否已经触发过channelActive事件(只由eventLoop线程访问)，关闭时据此决定是否触发与之成对的channelInactive事件
+     * */
+    private boolean activeNotified;
+
+    /**
+     * 当前channel处理过的io事件总数(只由eventLoop线程更新)，用于在eventLoop之间做负载均衡时评估channel的热度
+     * */
+    private volatile long ioEventCount;
+
+    /**
+     * 上一次负载均衡采样时的ioEventCount(只由eventLoop线程访问)
+     * */
+    private long sampledIoEventCount;
+
+    /**
+     * 一次flush没能把数据全部写完的次数(只由eventLoop线程更新)
+     * */
+    private volatile long incompleteWriteCount;
+
+    /**
+     * 因为socket缓冲区写满而注册OP_WRITE事件的次数(只由eventLoop线程更新)
+     * */
+    private volatile long opWriteRegistrationCount;
+
+    /**
+     * 调用socketChannel.write(包括gathering write)的总次数，用于评估flush合并的效果
+     * 每次写出都会更新，处于写出的热路径上，所以是普通字段，只能在eventLoop线程中读写
+     * */
+    private long socketWriteCount;
+
+    /**
+     * 是否自动读取，为true时始终监听OP_READ事件；为false时只有显式调用read()后才会监听，读到一次数据后就取消监听
+     * 读端的背压：handler处理不过来时关掉autoRead，对端的数据就会积压在内核缓冲区中(进而通过tcp的滑动窗口让对端降低发送速度)
+     * 1为开启，0为关闭；可能被任意线程并发修改，通过AUTO_READ_UPDATER原子的getAndSet，保证每次开关状态的变化只被一个线程感知到
+     * */
+    private volatile int autoRead;
+
+    /**
+     * 是否有一个显式的read()请求还没有读取到数据(只由eventLoop线程访问)
+     * */
+    private boolean readPending;
+
+    /**
+     * 当前channel单独设置的写缓冲区高低水位线，为null则使用defaultChannelConfig中的全局配置
+     * */
+    private volatile MyWriteBufferWaterMark writeBufferWaterMark;
+
     public MyNioChannel(Selector selector,
                         SelectableChannel javaChannel,
                         MyChannelPipelineSupplier channelPipelineSupplier,
@@ -43,12 +111,14 @@ public abstract class MyNioChannel {
         this.selector = selector;
         this.javaChannel = javaChannel;
         this.channelPipeline = channelPipelineSupplier.buildMyChannelPipeline(this);
-        this.myChannelOutboundBuffer = new MyChannelOutboundBuffer(this);
         this.defaultChannelConfig = defaultChannelConfig;
 
         AssertUtil.notNull(this.channelPipeline,"channelPipeline is null");
         AssertUtil.notNull(this.defaultChannelConfig,"defaultChannelConfig is null");
 
+        this.myChannelOutboundBuffer = new MyChannelOutboundBuffer(this, defaultChannelConfig.isOutboundDirectStaging());
+        this.autoRead = defaultChannelConfig.isAutoRead() ? 1 : 0;
+
         try {
             // nio，非阻塞
             javaChannel.configureBlocking(false);
@@ -71,9 +141,16 @@ public abstract class MyNioChannel {
 
         MyByteBuf byteBufferMsg = (MyByteBuf)msg;
 
+        if(!isOpen() || isOutputShutdown()){
+            // channel已经关闭(或输出端已经shutdown)，消息不可能再写出了，直接释放并通知future失败
+            MyReferenceCountUtil.safeRelease(byteBufferMsg);
+            completableFuture.completeExceptionally(new ClosedChannelException());
+            return;
+        }
+
         MyChannelOutboundBuffer myChannelOutboundBuffer = this.myChannelOutboundBuffer;
-        // netty在存入outBoundBuffer时使用的是堆外内存缓冲，避免积压过多的数据造成堆内存移除
-        // 这里简单起见先不考虑这方面的性能优化，重点关注ChannelOutboundBuffer本身的功能实现
+        // netty在存入outBoundBuffer时使用的是堆外内存缓冲，避免积压过多的数据造成堆内存溢出
+        // 开启了outboundDirectStaging时，addMessage中会将msg拷贝到池化的堆外buffer中暂存，并立即释放掉msg
         myChannelOutboundBuffer.addMessage(byteBufferMsg,byteBufferMsg.readableBytes(),completableFuture);
 
         if(doFlush){
@@ -108,6 +185,26 @@ public abstract class MyNioChannel {
         this.myNioEventLoop = myNioEventLoop;
     }
 
+    /**
+     * 将针对当前channel的内部任务(不经过pipeline的，比如再次flush、取消OP_READ监听等)提交到channel所属的eventLoop中执行
+     *
+     * 任务执行时channel可能已经被迁移到了其它eventLoop上(见MyNioEventLoop.migrate)，此时将任务转交给channel当前所属的eventLoop，
+     * 保证channel的outboundBuffer、selectionKey等状态始终只被一个线程访问(与MyAbstractChannelHandlerContext.safeExecute一致)
+     * */
+    public void executeInEventLoop(Runnable task) {
+        myNioEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                MyNioEventLoop owner = myNioEventLoop;
+                if (owner.inEventLoop()) {
+                    task.run();
+                } else {
+                    owner.execute(this);
+                }
+            }
+        });
+    }
+
     public SelectionKey getSelectionKey() {
         return selectionKey;
     }
@@ -116,6 +213,14 @@ public abstract class MyNioChannel {
         this.selectionKey = selectionKey;
     }
 
+    /**
+     * 获得当前channel复用的void future，用于不关心写出结果的写入，写出失败时异常会以exceptionCaught事件在pipeline中传播
+     * 不支持等待结果以及添加回调
+     * */
+    public CompletableFuture<MyNioChannel> voidFuture() {
+        return voidFuture;
+    }
+
     public MyChannelPipeline getChannelPipeline() {
         return channelPipeline;
     }
@@ -130,7 +235,11 @@ public abstract class MyNioChannel {
             return;
         }
 
-        // netty针对当前channel的状态做了很多判断(isActive、isOpen)，避免往一个不可用的channel里写入数据，简单起见先不考虑这些场景
+        if(!isOpen()){
+            // channel已经关闭，积压的消息不可能再写出了，全部失败掉
+            myChannelOutboundBuffer.failAll(new ClosedChannelException());
+            return;
+        }
 
         try {
             doWrite(myChannelOutboundBuffer);
@@ -142,11 +251,294 @@ public abstract class MyNioChannel {
         }
     }
 
+    /**
+     * 将outboundBuffer中已写入但还未flush的数据全部flush出去
+     * */
+    public void flushPendingWrites(){
+        myChannelOutboundBuffer.addFlush();
+        flush0();
+    }
+
+    /**
+     * outboundBuffer中是否还有已flush但还未写出完毕的数据
+     * */
+    public boolean hasPendingWrites(){
+        return !myChannelOutboundBuffer.isEmpty();
+    }
+
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    public void setRegistered(boolean registered) {
+        this.registered = registered;
+    }
+
+    public long getIncompleteWriteCount() {
+        return incompleteWriteCount;
+    }
+
+    public long getOpWriteRegistrationCount() {
+        return opWriteRegistrationCount;
+    }
+
+    /**
+     * 只能在eventLoop线程中调用，其它线程需要提交一个任务到eventLoop中读取
+     * */
+    public long getSocketWriteCount() {
+        return socketWriteCount;
+    }
+
+    /**
+     * 调用了一次socketChannel.write(只能在eventLoop线程中调用)
+     * */
+    protected final void incrementSocketWriteCount() {
+        socketWriteCount++;
+    }
+
+    public long getIoEventCount() {
+        return ioEventCount;
+    }
+
+    /**
+     * 处理了一次io事件(只能在eventLoop线程中调用)
+     * */
+    public void incrementIoEventCount() {
+        ioEventCount++;
+    }
+
+    /**
+     * 获得自上一次采样以来处理的io事件数，并重新采样(只能在eventLoop线程中调用)
+     * */
+    public long sampleIoEvents() {
+        long current = ioEventCount;
+        long delta = current - sampledIoEventCount;
+        sampledIoEventCount = current;
+        return delta;
+    }
+
+    /**
+     * 关闭底层的jdk channel，并从所属的eventLoop上注销
+     * outboundBuffer中还未写出的消息都会被释放掉，对应的future以ClosedChannelException失败，避免调用方一直等待
+     * */
+    public void doClose() throws IOException {
+        try {
+            javaChannel.close();
+        } finally {
+            try {
+                myChannelOutboundBuffer.failAll(new ClosedChannelException());
+            } finally {
+                if(registered){
+                    registered = false;
+                    myNioEventLoop.deregister(this);
+
+                    // 与netty一致，先触发channelInactive，最后触发channelUnregistered
+                    // 状态在触发事件之前就已经修改，handler在回调中再次close时不会重复触发
+                    if(activeNotified){
+                        activeNotified = false;
+                        channelPipeline.fireChannelInactive();
+                    }
+                    channelPipeline.fireChannelUnregistered();
+                }
+            }
+        }
+    }
+
+    /**
+     * channel首次注册到eventLoop上之后调用(只能在eventLoop线程中调用)，触发channelRegistered事件
+     * 已经建立好连接的channel(服务端accept的连接)，紧接着触发channelActive事件
+     * */
+    public void onRegistered() {
+        channelPipeline.fireChannelRegistered();
+        onActive();
+    }
+
+    /**
+     * channel可能变为了活跃状态时调用(只能在eventLoop线程中调用)，如果确实是活跃的，则触发一次channelActive事件
+     * */
+    public void onActive() {
+        if(!activeNotified && registered && isActive()){
+            activeNotified = true;
+            channelPipeline.fireChannelActive();
+        }
+    }
+
+    /**
+     * channel是否是活跃的(已打开并且建立好了连接)
+     * */
+    public boolean isActive() {
+        return isOpen();
+    }
+
+    /**
+     * 将outboundBuffer中所有还未写出的消息都失败掉(只能在eventLoop线程中调用)
+     * */
+    protected void failPendingWrites(Throwable cause) {
+        myChannelOutboundBuffer.failAll(cause);
+    }
+
+    public boolean isOpen() {
+        return javaChannel.isOpen();
+    }
+
+    /**
+     * 输入端是否已经被关闭(半关闭)，只有MyNioSocketChannel才支持
+     * */
+    public boolean isInputShutdown() {
+        return false;
+    }
+
+    /**
+     * 输出端是否已经被关闭(半关闭)，只有MyNioSocketChannel才支持
+     * */
+    public boolean isOutputShutdown() {
+        return false;
+    }
+
+    /**
+     * 当前channel是否可写(写缓冲区积压的数据没有超过高水位线，并且所有用户自定义的可写标识都为可写)
+     *
+     * 返回false时，业务方应该暂停写入，等待channelWritabilityChanged事件通知重新可写之后再继续
+     * */
     public boolean isWritable() {
         MyChannelOutboundBuffer buf = this.myChannelOutboundBuffer;
         return buf != null && buf.isWritable();
     }
 
+    /**
+     * 距离变为不可写还能写入多少字节，已经不可写时返回0
+     * */
+    public long bytesBeforeUnwritable() {
+        MyChannelOutboundBuffer buf = this.myChannelOutboundBuffer;
+        return buf != null ? buf.bytesBeforeUnwritable() : 0;
+    }
+
+    /**
+     * 距离重新变为可写还需要写出多少字节，已经可写时返回0
+     * */
+    public long bytesBeforeWritable() {
+        MyChannelOutboundBuffer buf = this.myChannelOutboundBuffer;
+        return buf != null ? buf.bytesBeforeWritable() : Long.MAX_VALUE;
+    }
+
+    /**
+     * 设置用户自定义的可写标识(index取值范围为1~31)，任意一个标识为不可写时，channel整体都是不可写的
+     *
+     * 可用于将业务上的背压(比如下游处理不过来)与写缓冲区水位线统一起来
+     * */
+    public void setUserDefinedWritability(int index, boolean writable) {
+        myChannelOutboundBuffer.setUserDefinedWritability(index, writable);
+    }
+
+    public boolean getUserDefinedWritability(int index) {
+        return myChannelOutboundBuffer.getUserDefinedWritability(index);
+    }
+
+    public boolean isAutoRead() {
+        return autoRead == 1;
+    }
+
+    /**
+     * 开启/关闭自动读取
+     *
+     * 由关闭变为开启时，会触发一次read()操作重新开始监听OP_READ；由开启变为关闭时，会取消对OP_READ的监听
+     * */
+    public void setAutoRead(boolean autoRead) {
+        // 先读后写不是原子的，并发的setAutoRead可能都认为自己改变了开关状态，导致重复的read()或者丢失取消监听的操作
+        boolean oldAutoRead = AUTO_READ_UPDATER.getAndSet(this, autoRead ? 1 : 0) == 1;
+        MyNioEventLoop myNioEventLoop = this.myNioEventLoop;
+        if (myNioEventLoop == null) {
+            // 还没有注册，注册时会根据autoRead决定是否监听OP_READ
+            return;
+        }
+
+        if (autoRead && !oldAutoRead) {
+            channelPipeline.read();
+        } else if (!autoRead && oldAutoRead) {
+            if (myNioEventLoop.inEventLoop()) {
+                autoReadCleared();
+            } else {
+                executeInEventLoop(this::autoReadCleared);
+            }
+        }
+    }
+
+    private void autoReadCleared() {
+        // 执行时autoRead可能又被打开了
+        if (!isAutoRead()) {
+            readPending = false;
+            removeReadOp();
+        }
+    }
+
+    /**
+     * 开始监听OP_READ事件(read()这一outbound事件最终由head节点调用)，只能在eventLoop线程中调用
+     * */
+    public void beginRead() {
+        if (isInputShutdown()) {
+            // 输入端已经关闭，不会再有数据可读了
+            return;
+        }
+
+        readPending = true;
+
+        final SelectionKey key = selectionKey;
+        if (key == null || !key.isValid()) {
+            // 还没有注册(注册时会检查readPending)，或者已经关闭了
+            return;
+        }
+
+        final int interestOps = key.interestOps();
+        if ((interestOps & SelectionKey.OP_READ) == 0) {
+            key.interestOps(interestOps | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * 取消对OP_READ事件的监听，只能在eventLoop线程中调用
+     * */
+    protected final void removeReadOp() {
+        final SelectionKey key = selectionKey;
+        // Check first if the key is still valid as it may be canceled as part of the deregistration
+        // from the EventLoop
+        // See https://github.com/netty/netty/issues/2104
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        final int interestOps = key.interestOps();
+        if ((interestOps & SelectionKey.OP_READ) != 0) {
+            key.interestOps(interestOps & ~SelectionKey.OP_READ);
+        }
+    }
+
+    public boolean isReadPending() {
+        return readPending;
+    }
+
+    protected void setReadPending(boolean readPending) {
+        this.readPending = readPending;
+    }
+
+    /**
+     * 获得当前channel生效的写缓冲区高低水位线
+     * */
+    public MyWriteBufferWaterMark getWriteBufferWaterMark() {
+        MyWriteBufferWaterMark writeBufferWaterMark = this.writeBufferWaterMark;
+        if(writeBufferWaterMark != null){
+            return writeBufferWaterMark;
+        }
+        return defaultChannelConfig != null ? defaultChannelConfig.getWriteBufferWaterMark() : MyWriteBufferWaterMark.DEFAULT;
+    }
+
+    /**
+     * 单独为当前channel设置写缓冲区高低水位线，覆盖全局配置，为null代表恢复使用全局配置
+     *
+     * 新的水位线在下一次写缓冲区积压字节数变化时生效
+     * */
+    public void setWriteBufferWaterMark(MyWriteBufferWaterMark writeBufferWaterMark) {
+        this.writeBufferWaterMark = writeBufferWaterMark;
+    }
+
     public DefaultChannelConfig config() {
         return defaultChannelConfig;
     }
@@ -164,6 +556,7 @@ public abstract class MyNioChannel {
         final int interestOps = key.interestOps();
         if ((interestOps & SelectionKey.OP_WRITE) == 0) {
             key.interestOps(interestOps | SelectionKey.OP_WRITE);
+            opWriteRegistrationCount++;
         }
     }
 
@@ -185,6 +578,8 @@ public abstract class MyNioChannel {
 
     protected final void incompleteWrite(boolean setOpWrite) {
         // Did not write completely.
+        incompleteWriteCount++;
+
         if (setOpWrite) {
             setOpWrite();
         } else {
@@ -197,7 +592,7 @@ public abstract class MyNioChannel {
             // Schedule flush again later so other tasks can be picked up in the meantime
             // Calling flush0 directly to ensure we not try to flush messages that were added via write(...) in the
             // meantime.
-            myNioEventLoop.execute(this::flush0);
+            executeInEventLoop(this::flush0);
         }
     }
 }
@@ -0,0 +1,40 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.core.reactor.config.MyChannelOption;
+
+import java.nio.channels.ServerSocketChannel;
+import java.util.Map;
+
+/**
+ * 服务端监听的serverSocketChannel，作为attachment挂在其SelectionKey上，由boss eventLoop在处理accept事件时使用
+ *
+ * 与MyNioChannel不同，没有pipeline，也不参与读写，只持有accept新连接时需要的状态
+ * */
+public final class MyNioServerSocketChannel {
+
+    private final ServerSocketChannel javaChannel;
+
+    /**
+     * 作用于accept的连接的配置项快照(不可变)，在bind时生成一次，所有accept的连接共用，不用每次都加锁拷贝一份
+     * bind之后再修改defaultChannelConfig中的childOptions，不会对当前serverSocketChannel生效
+     * */
+    private final Map<MyChannelOption<?>, Object> childOptions;
+
+    public MyNioServerSocketChannel(ServerSocketChannel javaChannel, Map<MyChannelOption<?>, Object> childOptions) {
+        this.javaChannel = javaChannel;
+        this.childOptions = childOptions;
+    }
+
+    public ServerSocketChannel getJavaChannel() {
+        return javaChannel;
+    }
+
+    public Map<MyChannelOption<?>, Object> getChildOptions() {
+        return childOptions;
+    }
+
+    @Override
+    public String toString() {
+        return "MyNioServerSocketChannel{javaChannel=" + javaChannel + '}';
+    }
+}
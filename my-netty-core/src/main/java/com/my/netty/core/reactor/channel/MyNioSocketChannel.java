@@ -5,18 +5,23 @@ import com.my.netty.bytebuffer.netty.MyByteBuf;
 import com.my.netty.bytebuffer.netty.allocator.MyByteBufAllocator;
 import com.my.netty.core.reactor.channel.buffer.MyChannelOutboundBuffer;
 import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipelineSupplier;
 import com.my.netty.core.reactor.limiter.ReceivedMessageBytesLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class MyNioSocketChannel extends MyNioChannel{
     private static final Logger logger = LoggerFactory.getLogger(MyNioSocketChannel.class);
@@ -32,16 +37,58 @@ public class MyNioSocketChannel extends MyNioChannel{
 
     public static final int MAX_BYTES_PER_GATHERING_WRITE_ATTEMPTED_LOW_THRESHOLD = 4096;
 
+    /**
+     * 输入端/输出端是否已经被关闭(半关闭)，只由eventLoop线程更新
+     * 没有直接使用socket().isInputShutdown()，因为jdk内部需要加锁，而isOutputShutdown在每次写入时都会被调用
+     * */
+    private volatile boolean inputShutdown;
+    private volatile boolean outputShutdown;
+
     public MyNioSocketChannel(
         Selector selector, SocketChannel socketChannel, MyChannelPipelineSupplier myChannelPipelineSupplier,
         DefaultChannelConfig defaultChannelConfig) {
+        this(selector,socketChannel,myChannelPipelineSupplier,defaultChannelConfig,defaultChannelConfig.getChildOptions());
+    }
+
+    /**
+     * @param childOptions 作用于连接的配置项快照(不可变)，服务端在bind时生成一次，所有accept的连接共用
+     * */
+    public MyNioSocketChannel(
+        Selector selector, SocketChannel socketChannel, MyChannelPipelineSupplier myChannelPipelineSupplier,
+        DefaultChannelConfig defaultChannelConfig, Map<MyChannelOption<?>, Object> childOptions) {
         super(selector,socketChannel,myChannelPipelineSupplier,defaultChannelConfig);
 
         this.socketChannel = socketChannel;
 
         this.defaultChannelConfig = defaultChannelConfig;
 
-        this.receivedMessageBytesLimiter = new ReceivedMessageBytesLimiter(defaultChannelConfig.getInitialReceiveBufferSize());
+        this.receivedMessageBytesLimiter = new ReceivedMessageBytesLimiter(
+            defaultChannelConfig.getInitialReceiveBufferSize(), defaultChannelConfig.getMaxMessagesPerRead());
+
+        // 服务端accept的连接与客户端的连接，都使用childOptions
+        MyChannelOption.applySocketOptions(socketChannel, childOptions);
+
+        calculateMaxBytesPerGatheringWrite();
+    }
+
+    /**
+     * 参考netty的NioSocketChannelConfig.calculateMaxBytesPerGatheringWrite
+     * 以socket发送缓冲区大小的两倍作为一次聚合写出的最大字节数的初始值，后续再由adjustMaxBytesPerGatheringWrite动态调整
+     * */
+    private void calculateMaxBytesPerGatheringWrite() {
+        try {
+            // 读取的是实际生效的值(配置了SO_SNDBUF时内核可能会做调整，未配置时为操作系统的默认值)
+            int newSendBufferSize = socketChannel.getOption(StandardSocketOptions.SO_SNDBUF) << 1;
+            if (newSendBufferSize > 0) {
+                this.maxBytesPerGatheringWrite = newSendBufferSize;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to get SO_SNDBUF, channel={}", socketChannel, e);
+        }
+    }
+
+    public int getMaxBytesPerGatheringWrite() {
+        return maxBytesPerGatheringWrite;
     }
 
     public SocketChannel getSocketChannel() {
@@ -56,6 +103,18 @@ public class MyNioSocketChannel extends MyNioChannel{
         // receivedMessageLimiter相当于netty中简化版的不包含buffer类型分配的RecvByteBufAllocator(参考自AdaptiveRecvByteBufAllocator)
         // 新的一次read事件开始前，刷新下readLimiter的状态
         receivedMessageBytesLimiter.reset();
+        try {
+            doReadMessages();
+        } finally {
+            // 关闭了autoRead，并且期间没有新的read()请求，取消对OP_READ的监听，直到下一次显式调用read()
+            // See https://github.com/netty/netty/issues/2254
+            if (!isReadPending() && !isAutoRead()) {
+                removeReadOp();
+            }
+        }
+    }
+
+    private void doReadMessages() throws IOException {
         do {
             int receiveBufferSize = receivedMessageBytesLimiter.getReceiveBufferSize();
 
@@ -63,20 +122,17 @@ public class MyNioSocketChannel extends MyNioChannel{
             MyByteBufAllocator myByteBufAllocator = defaultChannelConfig.getAllocator();
             MyByteBuf readBuffer = myByteBufAllocator.heapBuffer(receiveBufferSize);
             int byteRead = readBuffer.writeBytes(socketChannel, receiveBufferSize);
-            logger.info("processReadEvent byteRead={},message={}", byteRead,readBuffer.toString(Charset.defaultCharset()));
+            if (logger.isDebugEnabled()) {
+                logger.debug("processReadEvent byteRead={},message={}", byteRead,readBuffer.toString(Charset.defaultCharset()));
+            }
 
             // 记录下最近一次读取的字节数
             receivedMessageBytesLimiter.recordLastBytesRead(byteRead);
             if (byteRead < 0) {
-                // 简单起见不考虑tcp半连接的情况，返回-1直接关掉连接
-                socketChannel.close();
-                // 取消key的监听
-                key.cancel();
-
                 readBuffer.release();
 
-                // 触发close事件
-                this.getChannelPipeline().close();
+                // 读取到了对端的EOF
+                closeOnRead();
                 break;
             } else if(byteRead == 0){
                 readBuffer.release();
@@ -87,12 +143,15 @@ public class MyNioSocketChannel extends MyNioChannel{
                 // 总消息读取次数+1
                 receivedMessageBytesLimiter.incMessagesRead();
 
+                // 读到了数据，显式的read()请求已经完成
+                setReadPending(false);
+
                 // 触发pipeline的读取操作
                 this.getChannelPipeline().fireChannelRead(readBuffer);
             }
 
             readBuffer = null;
-        }while (receivedMessageBytesLimiter.canContinueReading());
+        }while (isAutoRead() && receivedMessageBytesLimiter.canContinueReading());
 
         // 整理一下此次read事件读取的字节数，调整下一次read事件分配的bufferSize大小
         receivedMessageBytesLimiter.readComplete();
@@ -101,12 +160,106 @@ public class MyNioSocketChannel extends MyNioChannel{
         this.getChannelPipeline().fireChannelReadComplete();
     }
 
+    /**
+     * 参考netty的AbstractNioByteChannel.closeOnRead
+     * 未开启allowHalfClosure时，直接关闭连接(outboundBuffer中未写出的消息会以ClosedChannelException失败)
+     * 开启了allowHalfClosure时，只关闭输入端，并触发MyChannelInputShutdownEvent，输出端依然可以继续写出
+     * */
+    private void closeOnRead() throws IOException {
+        if (!isInputShutdown()) {
+            if (defaultChannelConfig.isAllowHalfClosure()) {
+                doShutdownInput();
+                this.getChannelPipeline().fireUserEventTriggered(MyChannelInputShutdownEvent.INSTANCE);
+            } else {
+                // 触发close事件
+                this.getChannelPipeline().close();
+            }
+        } else {
+            // 输入端已经关闭了，不应该再收到读事件，取消监听即可
+            removeReadOp();
+        }
+    }
+
     @Override
-    protected void doWrite(MyChannelOutboundBuffer myChannelOutboundBuffer) throws Exception {
-        // 默认一次写出16次
-//        int writeSpinCount = 16;
+    public boolean isActive() {
+        // pipeline在父类构造器中创建，此时子类的字段还未赋值，handlerAdded中调用isActive时只能使用父类的javaChannel
+        return isOpen() && ((SocketChannel) getJavaChannel()).isConnected();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return inputShutdown || !isOpen();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return outputShutdown || !isOpen();
+    }
+
+    /**
+     * 关闭输入端(半关闭)，之后不会再读取对端发来的数据，但依然可以继续写出
+     * */
+    public CompletableFuture<MyNioChannel> shutdownInput() {
+        return executeShutdown(() -> doShutdownInput());
+    }
+
+    /**
+     * 关闭输出端(半关闭)，对端会读取到EOF，本端依然可以继续读取对端发来的数据
+     * 与netty一致，outboundBuffer中还未写出的消息都会以ClosedChannelException失败，所以需要等待最后一次写出的future完成后再调用
+     * */
+    public CompletableFuture<MyNioChannel> shutdownOutput() {
+        return executeShutdown(() -> {
+            try {
+                if (!outputShutdown) {
+                    socketChannel.shutdownOutput();
+                    outputShutdown = true;
+                }
+            } finally {
+                failPendingWrites(new ClosedChannelException());
+            }
+        });
+    }
 
-        int writeSpinCount = 2;  // 方便测试
+    private void doShutdownInput() throws IOException {
+        if (!inputShutdown) {
+            socketChannel.shutdownInput();
+            inputShutdown = true;
+        }
+        setReadPending(false);
+        removeReadOp();
+    }
+
+    private CompletableFuture<MyNioChannel> executeShutdown(ShutdownAction shutdownAction) {
+        CompletableFuture<MyNioChannel> completableFuture = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                shutdownAction.shutdown();
+                completableFuture.complete(this);
+            } catch (Throwable t) {
+                completableFuture.completeExceptionally(t);
+            }
+        };
+
+        // 与读写操作一样，统一由channel所属的eventLoop线程执行
+        MyNioEventLoop myNioEventLoop = getMyNioEventLoop();
+        if (myNioEventLoop == null || myNioEventLoop.inEventLoop()) {
+            task.run();
+        } else {
+            executeInEventLoop(task);
+        }
+        return completableFuture;
+    }
+
+    @FunctionalInterface
+    private interface ShutdownAction {
+        void shutdown() throws IOException;
+    }
+
+    @Override
+    protected void doWrite(MyChannelOutboundBuffer myChannelOutboundBuffer) throws Exception {
+        // 一次flush最多调用writeSpinCount次write，并且最多写出writeQuantumBytes字节，保证同一eventLoop上不同channel之间的公平性
+        int writeSpinCount = defaultChannelConfig.getWriteSpinCount();
+        long remainingQuantumBytes = defaultChannelConfig.getWriteQuantumBytes();
 
         do {
             if (myChannelOutboundBuffer.isEmpty()) {
@@ -118,16 +271,34 @@ public class MyNioSocketChannel extends MyNioChannel{
                 return;
             }
 
-            // 计算出当前这一次写出的bytebuffer的数量
-            List<ByteBuffer> needWriteByteBufferList = myChannelOutboundBuffer.nioByteBuffers(1024,maxBytesPerGatheringWrite);
-            // 相比netty里用数组，List会多一次数组copy，但这样简单一点，不用考虑缓存or动态扩容的问题，暂不优化
-            ByteBuffer[] byteBuffers = needWriteByteBufferList.toArray(new ByteBuffer[0]);
+            // 计算出当前这一次写出的bytebuffer的数量(返回的是IO线程复用的数组，有效元素个数为nioBufferCount)
+            ByteBuffer[] nioBuffers = myChannelOutboundBuffer.nioByteBuffers(1024,maxBytesPerGatheringWrite);
+            int nioBufferCount = myChannelOutboundBuffer.getNioBufferCount();
             SocketChannel socketChannel = this.getSocketChannel();
 
-            // 调用jdk channel的write方法一次性写入byteBuffer集合
-            final long localWrittenBytes = socketChannel.write(byteBuffers,0, needWriteByteBufferList.size());
-            logger.info("localWrittenBytes={},attemptedBytes={},needWriteByteBufferList.size={}"
-                , localWrittenBytes, myChannelOutboundBuffer.getNioBufferSize(),needWriteByteBufferList.size());
+            final long localWrittenBytes;
+            if (nioBufferCount > 0) {
+                incrementSocketWriteCount();
+            }
+            switch (nioBufferCount) {
+                case 0:
+                    // 已flush的消息都是空消息或者已经被取消了，没有需要实际写出的数据，直接将其移除掉
+                    myChannelOutboundBuffer.removeBytes(0);
+                    writeSpinCount--;
+                    continue;
+                case 1:
+                    // 只有一个ByteBuffer时，直接调用单个ByteBuffer的write方法，比gathering write的开销更小
+                    localWrittenBytes = socketChannel.write(nioBuffers[0]);
+                    break;
+                default:
+                    // 调用jdk channel的write方法一次性写入byteBuffer集合
+                    localWrittenBytes = socketChannel.write(nioBuffers, 0, nioBufferCount);
+                    break;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("localWrittenBytes={},attemptedBytes={},nioBufferCount={}"
+                    , localWrittenBytes, myChannelOutboundBuffer.getNioBufferSize(), nioBufferCount);
+            }
             if (localWrittenBytes <= 0) {
                 // 返回值localWrittenBytes小于等于0，说明当前Socket缓冲区写满了，不能再写入了。注册一个OP_WRITE事件(setOpWrite=true)，
                 // 当channel所在的NIO循环中监听到当前channel的OP_WRITE事件时，就说明缓冲区又可写了，在对应逻辑里继续执行写入操作
@@ -144,9 +315,10 @@ public class MyNioSocketChannel extends MyNioChannel{
 
             // 每次写入一次消息，writeSpinCount自减
             writeSpinCount--;
-        } while (writeSpinCount > 0);
+            remainingQuantumBytes -= localWrittenBytes;
+        } while (writeSpinCount > 0 && remainingQuantumBytes > 0);
 
-        // 自然的退出了循环，说明已经正确的写完了writeSpinCount指定条数的消息，但channelOutboundBuffer还不为空(如果写完了会提前return)
+        // 自然的退出了循环，说明已经用完了本次flush的写出次数或字节数配额，但channelOutboundBuffer还不为空(如果写完了会提前return)
         // incompleteWrite内部提交一个flush0的任务，等待到下一次事件循环中再捞出来处理，保证不同channel间读写的公平性
         incompleteWrite(false);
     }
@@ -0,0 +1,322 @@
+package com.my.netty.core.reactor.channel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 参考netty的VoidChannelPromise，每个channel一个，在不关心写出结果的场景下(writeVoid)复用，避免每条消息都new一个CompletableFuture
+ *
+ * 1. complete是空操作，写出成功时不会有任何的回调，也不会改变自身的状态
+ * 2. completeExceptionally时(比如写出失败、channel已关闭)，异常会通过channel的pipeline以exceptionCaught事件传播出去
+ * 3. 由于是复用的，不支持等待结果以及添加回调，调用这些方法(包括所有创建依赖future的方法)时会抛出IllegalStateException
+ *
+ * 其它future的thenCombine/applyToEither等以void future为参数的方法会调用toCompletableFuture，同样会抛出异常；
+ * 而CompletableFuture.allOf/anyOf不会经过可覆盖的public方法，是直接读取内部的结果字段的。
+ * 因此void future在创建时内部就以IllegalStateException异常完成了，allOf/anyOf创建的future会立即以该异常失败，
+ * 而不是因为void future永远不会完成而一直挂起；对外暴露的isDone/isCompletedExceptionally等方法依然表现为未完成
+ * */
+public final class MyVoidCompletableFuture extends CompletableFuture<MyNioChannel> {
+
+    private final MyNioChannel channel;
+
+    MyVoidCompletableFuture(MyNioChannel channel) {
+        this.channel = channel;
+        super.completeExceptionally(reject());
+    }
+
+    public static boolean isVoid(CompletableFuture<?> completableFuture) {
+        return completableFuture instanceof MyVoidCompletableFuture;
+    }
+
+    @Override
+    public boolean complete(MyNioChannel value) {
+        return false;
+    }
+
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        // 与netty一致，只有channel还注册在eventLoop上时才传播异常
+        if (channel.isRegistered()) {
+            channel.getChannelPipeline().fireExceptionCaught(ex);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return false;
+    }
+
+    @Override
+    public boolean isCompletedExceptionally() {
+        return false;
+    }
+
+    @Override
+    public MyNioChannel get() {
+        throw reject();
+    }
+
+    @Override
+    public MyNioChannel get(long timeout, TimeUnit unit) {
+        throw reject();
+    }
+
+    @Override
+    public MyNioChannel join() {
+        throw reject();
+    }
+
+    @Override
+    public MyNioChannel getNow(MyNioChannel valueIfAbsent) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> thenApply(Function<? super MyNioChannel, ? extends U> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> thenApplyAsync(Function<? super MyNioChannel, ? extends U> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> thenApplyAsync(Function<? super MyNioChannel, ? extends U> fn, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> thenAccept(Consumer<? super MyNioChannel> action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> thenAcceptAsync(Consumer<? super MyNioChannel> action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> thenAcceptAsync(Consumer<? super MyNioChannel> action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> thenRun(Runnable action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> thenRunAsync(Runnable action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> thenRunAsync(Runnable action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public <U, V> CompletableFuture<V> thenCombine(CompletionStage<? extends U> other, BiFunction<? super MyNioChannel, ? super U, ? extends V> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U, V> CompletableFuture<V> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super MyNioChannel, ? super U, ? extends V> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U, V> CompletableFuture<V> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super MyNioChannel, ? super U, ? extends V> fn, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<Void> thenAcceptBoth(CompletionStage<? extends U> other, BiConsumer<? super MyNioChannel, ? super U> action) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super MyNioChannel, ? super U> action) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super MyNioChannel, ? super U> action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> applyToEither(CompletionStage<? extends MyNioChannel> other, Function<? super MyNioChannel, U> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> applyToEitherAsync(CompletionStage<? extends MyNioChannel> other, Function<? super MyNioChannel, U> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> applyToEitherAsync(CompletionStage<? extends MyNioChannel> other, Function<? super MyNioChannel, U> fn, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> acceptEither(CompletionStage<? extends MyNioChannel> other, Consumer<? super MyNioChannel> action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> acceptEitherAsync(CompletionStage<? extends MyNioChannel> other, Consumer<? super MyNioChannel> action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> acceptEitherAsync(CompletionStage<? extends MyNioChannel> other, Consumer<? super MyNioChannel> action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> thenCompose(Function<? super MyNioChannel, ? extends CompletionStage<U>> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> thenComposeAsync(Function<? super MyNioChannel, ? extends CompletionStage<U>> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> thenComposeAsync(Function<? super MyNioChannel, ? extends CompletionStage<U>> fn, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<MyNioChannel> whenComplete(BiConsumer<? super MyNioChannel, ? super Throwable> action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<MyNioChannel> whenCompleteAsync(BiConsumer<? super MyNioChannel, ? super Throwable> action) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<MyNioChannel> whenCompleteAsync(BiConsumer<? super MyNioChannel, ? super Throwable> action, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> handle(BiFunction<? super MyNioChannel, Throwable, ? extends U> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> handleAsync(BiFunction<? super MyNioChannel, Throwable, ? extends U> fn) {
+        throw reject();
+    }
+
+    @Override
+    public <U> CompletableFuture<U> handleAsync(BiFunction<? super MyNioChannel, Throwable, ? extends U> fn, Executor executor) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<MyNioChannel> exceptionally(Function<Throwable, ? extends MyNioChannel> fn) {
+        throw reject();
+    }
+
+    @Override
+    public CompletableFuture<MyNioChannel> toCompletableFuture() {
+        throw reject();
+    }
+
+    @Override
+    public void obtrudeValue(MyNioChannel value) {
+        throw reject();
+    }
+
+    @Override
+    public void obtrudeException(Throwable ex) {
+        throw reject();
+    }
+
+    // 以下是jdk9+才有的方法，编译目标是jdk8，不能加@Override(在jdk9+上依然会覆盖父类的方法)
+
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        throw reject();
+    }
+
+    public CompletableFuture<MyNioChannel> completeAsync(Supplier<? extends MyNioChannel> supplier) {
+        throw reject();
+    }
+
+    public CompletableFuture<MyNioChannel> completeAsync(Supplier<? extends MyNioChannel> supplier, Executor executor) {
+        throw reject();
+    }
+
+    public CompletableFuture<MyNioChannel> orTimeout(long timeout, TimeUnit unit) {
+        throw reject();
+    }
+
+    public CompletableFuture<MyNioChannel> completeOnTimeout(MyNioChannel value, long timeout, TimeUnit unit) {
+        throw reject();
+    }
+
+    private static IllegalStateException reject() {
+        return new IllegalStateException("void future");
+    }
+
+    @Override
+    public String toString() {
+        return "MyVoidCompletableFuture{channel=" + channel + '}';
+    }
+}
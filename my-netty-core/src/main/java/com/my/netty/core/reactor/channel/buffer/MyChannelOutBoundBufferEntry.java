@@ -2,7 +2,9 @@ package com.my.netty.core.reactor.channel.buffer;
 
 import com.my.netty.bytebuffer.netty.MyByteBuf;
 import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
 
 class MyChannelOutBoundBufferEntry {
@@ -22,6 +24,17 @@ class MyChannelOutBoundBufferEntry {
 
     MyChannelOutBoundBufferEntry next;
     MyByteBuf msg;
+    /**
+     * msg对应的nio视图(internalNioBuffer)，在第一次参与写出时创建并缓存，避免重复创建
+     * */
+    ByteBuffer buf;
+    /**
+     * msg被拷贝到的堆外暂存buffer(MyDirectStagingBufferPool)，不为null时msg已经被释放掉了，写出时以它为准
+     * 暂存buffer中的数据范围为[0, stagedLength)，stagedReaderIndex相当于msg的readerIndex
+     * */
+    ByteBuffer stagedBuf;
+    int stagedReaderIndex;
+    int stagedLength;
     CompletableFuture<MyNioChannel> completableFuture;
     int msgSize;
     int pendingSize;
@@ -38,6 +51,80 @@ class MyChannelOutBoundBufferEntry {
         return entry;
     }
 
+    /**
+     * 将msg中可读的数据拷贝到池化的堆外暂存buffer中，并立即释放掉msg
+     * 暂存池的堆外内存已经达到上限时不做暂存，依然使用堆内的msg写出
+     * */
+    void stageToDirect() {
+        MyByteBuf msg = this.msg;
+        int readerIndex = msg.readerIndex();
+        int readableBytes = msg.writerIndex() - readerIndex;
+
+        ByteBuffer stagedBuf = MyDirectStagingBufferPool.acquire(readableBytes);
+        if (stagedBuf == null) {
+            return;
+        }
+        stagedBuf.put(msg.internalNioBuffer(readerIndex, readableBytes));
+        stagedBuf.flip();
+
+        this.stagedBuf = stagedBuf;
+        this.stagedReaderIndex = 0;
+        this.stagedLength = readableBytes;
+
+        // 数据已经拷贝到堆外了，堆内的msg可以立即释放，不再随着积压的消息一直占用堆内存
+        MyReferenceCountUtil.safeRelease(msg);
+        this.msg = null;
+    }
+
+    int readableBytes() {
+        if (stagedBuf != null) {
+            return stagedLength - stagedReaderIndex;
+        }
+        return msg.writerIndex() - msg.readerIndex();
+    }
+
+    /**
+     * 当前entry对应的nio视图，在第一次参与写出时创建并缓存
+     * */
+    ByteBuffer nioBuffer() {
+        ByteBuffer nioBuf = this.buf;
+        if (nioBuf == null) {
+            if (stagedBuf != null) {
+                nioBuf = stagedBuf;
+                nioBuf.limit(stagedLength).position(stagedReaderIndex);
+            } else {
+                nioBuf = msg.internalNioBuffer(msg.readerIndex(), readableBytes());
+            }
+            this.buf = nioBuf;
+        }
+        return nioBuf;
+    }
+
+    /**
+     * 部分写出后推进读指针(nio视图的position已经由jdk推进过了)
+     * */
+    void skipBytes(int length) {
+        if (stagedBuf != null) {
+            stagedReaderIndex += length;
+        } else {
+            msg.readerIndex(msg.readerIndex() + length);
+        }
+    }
+
+    /**
+     * 释放entry持有的内存
+     * */
+    void release() {
+        ByteBuffer stagedBuf = this.stagedBuf;
+        if (stagedBuf != null) {
+            this.stagedBuf = null;
+            this.buf = null;
+            MyDirectStagingBufferPool.release(stagedBuf);
+        } else {
+            MyReferenceCountUtil.safeRelease(msg);
+        }
+    }
+
     void cancel() {
         if (!cancelled) {
             cancelled = true;
@@ -48,6 +135,7 @@ class MyChannelOutBoundBufferEntry {
     public String toString() {
         return "MyChannelOutBoundBufferEntry{" +
             "msg=" + msg +
+            ", staged=" + (stagedBuf != null) +
             ", pendingSize=" + pendingSize +
             ", cancelled=" + cancelled +
             '}';
@@ -2,21 +2,23 @@ package com.my.netty.core.reactor.channel.buffer;
 
 import com.my.netty.bytebuffer.netty.MyByteBuf;
 import com.my.netty.core.reactor.channel.MyNioChannel;
-import com.my.netty.core.reactor.util.MyReferenceCountUtil;
+import com.my.netty.core.reactor.config.MyWriteBufferWaterMark;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.threadlocal.impl.netty.MyFastThreadLocal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class MyChannelOutboundBuffer {
 
     private static final Logger logger = LoggerFactory.getLogger(MyChannelOutboundBuffer.class);
 
-    private static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
-    private static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+    private static final AtomicIntegerFieldUpdater<MyChannelOutboundBuffer> UNWRITABLE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(MyChannelOutboundBuffer.class, "unWritable");
 
     private final MyNioChannel channel;
 
@@ -29,34 +31,68 @@ public class MyChannelOutboundBuffer {
     public int num;
 
     /**
-     * 简单一点，这里直接用boolean类型
-     * netty中用整型，是为了同时表达多个index下的unWritable语义(setUserDefinedWritability)
+     * 与netty一致用整型，同时表达多个index下的unWritable语义
+     * 第0位为水位线对应的标识，第1~31位为用户自定义的标识(setUserDefinedWritability)，任意一位为1都代表不可写
+     * 用户自定义的标识可能被任意线程修改，所以通过cas更新
      * */
-    private volatile boolean unWritable;
+    private volatile int unWritable;
 
     /**
-     * 当前outBoundBuffer
-     * 目前只支持持有channel的IO线程更新，所以不设置为volatile
+     * 当前outBoundBuffer中积压的总字节数
+     * 目前只支持持有channel的IO线程更新，但会被业务线程读取(bytesBeforeUnwritable等)，所以设置为volatile
      * */
-    private long totalPendingSize;
+    private volatile long totalPendingSize;
 
     /**
      * 一次写出操作的nioBuffer集合的大小总和
      * */
     private long nioBufferSize;
 
+    /**
+     * 一次写出操作的nioBuffer的数量(NIO_BUFFERS数组中有效元素的个数)
+     * */
+    private int nioBufferCount;
+
     // The number of flushed entries that are not written yet
     private int flushed;
 
-    private static final ThreadLocal<ByteBuffer[]> NIO_BUFFERS = ThreadLocal.withInitial(() -> new ByteBuffer[1024]);
+    /**
+     * 是否正在执行failAll，避免future的回调中再次触发close导致重入
+     * */
+    private boolean inFail;
+
+    /**
+     * 每个IO线程复用同一个ByteBuffer数组，避免每次写出时都new一个新的集合/数组
+     * (一个channel只会被其所属的IO线程写出，所以同一线程内不会出现并发使用的问题)
+     * */
+    private static final MyFastThreadLocal<ByteBuffer[]> NIO_BUFFERS = new MyFastThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[1024];
+        }
+    };
+
+    /**
+     * 是否将堆内的消息拷贝到堆外暂存(DefaultChannelConfig.outboundDirectStaging)
+     * */
+    private final boolean directStaging;
 
     public MyChannelOutboundBuffer(MyNioChannel channel) {
+        this(channel, false);
+    }
+
+    public MyChannelOutboundBuffer(MyNioChannel channel, boolean directStaging) {
         this.channel = channel;
+        this.directStaging = directStaging;
     }
 
     public void addMessage(MyByteBuf msg, int size, CompletableFuture<MyNioChannel> completableFuture) {
         // 每个msg对应一个链表中的entry对象
         MyChannelOutBoundBufferEntry entry = MyChannelOutBoundBufferEntry.newInstance(msg, size, completableFuture);
+        if (directStaging && size > 0 && size <= MyDirectStagingBufferPool.MAX_STAGING_SIZE) {
+            // 将堆内的msg拷贝到池化的堆外buffer中暂存，积压的数据不再占用堆内存，写出时jdk也不需要再额外拷贝一次
+            entry.stageToDirect();
+        }
         if (tailEntry == null) {
             // 当前队列为空
             flushedEntry = null;
@@ -120,12 +156,16 @@ public class MyChannelOutboundBuffer {
             MyChannelOutBoundBufferEntry currentEntry = currentEntry();
             if(currentEntry == null){
                 // 已flushed的节点都遍历完成了
-                return;
+                break;
+            }
+
+            if (currentEntry.cancelled) {
+                // 已取消的节点没有参与写出(nioByteBuffers中被跳过)，不占用写出的字节数，直接移除
+                remove();
+                continue;
             }
 
-            final MyByteBuf buf = currentEntry.msg;
-            final int readerIndex = buf.readerIndex();
-            final int readableBytes = buf.writerIndex() - readerIndex;
+            final int readableBytes = currentEntry.readableBytes();
 
             if (readableBytes <= totalWrittenBytes) {
                 if (totalWrittenBytes != 0) {
@@ -138,11 +178,27 @@ public class MyChannelOutboundBuffer {
                 // readableBytes > writtenBytes
                 // 发现一个未写完的ByteBuf，不能移除，退出本次处理。等待下一次继续写出
                 if (totalWrittenBytes != 0) {
-                    buf.readerIndex(readerIndex + (int) totalWrittenBytes);
+                    currentEntry.skipBytes((int) totalWrittenBytes);
                 }
-                return;
+                break;
             }
         }
+
+        clearNioBuffers();
+    }
+
+    /**
+     * Clear all ByteBuffer from the array so these can be GC'ed.
+     * See https://github.com/netty/netty/issues/3837
+     *
+     * 复用的数组是线程级别的，写出完成后及时清理掉引用，避免已写完的ByteBuffer被一直持有无法回收
+     * */
+    private void clearNioBuffers() {
+        int count = nioBufferCount;
+        if (count > 0) {
+            nioBufferCount = 0;
+            Arrays.fill(NIO_BUFFERS.get(), 0, count, null);
+        }
     }
 
     /**
@@ -164,8 +220,8 @@ public class MyChannelOutboundBuffer {
         if (!entry.cancelled) {
             // only release message, notify and decrement if it was not canceled before.
 
-            // 传输完毕，当前所使用的byteBuf需要回收掉，避免内存泄露
-            MyReferenceCountUtil.safeRelease(entry.msg);
+            // 传输完毕，当前所使用的byteBuf(或堆外暂存buffer)需要回收掉，避免内存泄露
+            entry.release();
 
             // 写入操作flush成功，通知future
             try {
@@ -174,45 +230,110 @@ public class MyChannelOutboundBuffer {
                 logger.error("MyChannelOutboundBuffer notify write complete error! channel={}",this.channel,ex);
             }
             decrementPendingOutboundBytes(size);
+        } else if (entry.stagedBuf != null) {
+            // 被取消的消息在暂存时msg已经释放掉了，只需要归还堆外暂存buffer
+            entry.release();
         }
 
         return true;
     }
 
     /**
-     * 参考netty的ChannelOutboundBuffer的nioByteBuffers方法，因为没有ByteBuf到ByteBuffer的转换，所以简单不少
+     * channel关闭(或输出端被shutdown)时调用，将所有还未写出的消息(包括已flush和未flush的)全部释放掉，并以cause通知对应的future
+     * 参考netty的ChannelOutboundBuffer.failFlushed与close，合并为一个方法
+     *
+     * 积压的字节数与remove一样通过decrementPendingOutboundBytes扣减，回落到低水位线以下时恢复可写并触发channelWritabilityChanged事件
+     * 否则一个积压超过高水位线的channel在close或shutdownOutput之后会一直处于不可写的状态
+     * */
+    public void failAll(Throwable cause) {
+        if (inFail) {
+            return;
+        }
+
+        try {
+            inFail = true;
+
+            // 已flush的队列在前，未flush的队列在后，两者是同一个链表
+            MyChannelOutBoundBufferEntry entry = flushedEntry != null ? flushedEntry : unFlushedEntry;
+            flushedEntry = null;
+            unFlushedEntry = null;
+            tailEntry = null;
+            flushed = 0;
+
+            long pendingSize = 0;
+            while (entry != null) {
+                MyChannelOutBoundBufferEntry next = entry.next;
+                entry.next = null;
+
+                if (!entry.cancelled) {
+                    pendingSize += entry.pendingSize;
+                    entry.release();
+                    try {
+                        // 用户已经cancel掉的future不会受影响
+                        entry.completableFuture.completeExceptionally(cause);
+                    } catch (Throwable ex) {
+                        logger.error("MyChannelOutboundBuffer notify write failure error! channel={}", this.channel, ex);
+                    }
+                } else {
+                    // 被取消的消息没有参与写出，同样需要释放掉(totalPendingSize在addFlush时已经扣减过了)
+                    entry.release();
+                }
+
+                entry = next;
+            }
+            decrementPendingOutboundBytes(pendingSize);
+        } finally {
+            inFail = false;
+        }
+
+        clearNioBuffers();
+    }
+
+    /**
+     * 参考netty的ChannelOutboundBuffer的nioBuffers方法，因为没有ByteBuf到ByteBuffer的转换，所以简单不少
+     *
+     * 返回的是当前线程复用的ByteBuffer数组，其中有效元素的个数通过getNioBufferCount获取，所有有效元素的总字节数通过getNioBufferSize获取
+     * 调用方只能在当前IO线程中使用返回的数组，并且不能持有它
      * */
-    public List<ByteBuffer> nioByteBuffers(int maxCount, int maxBytes) {
+    public ByteBuffer[] nioByteBuffers(int maxCount, int maxBytes) {
         long totalNioBufferSize = 0;
+        int nioBufferCount = 0;
 
-        // 简单起见，需要处理的byteBuffer列表直接new出来，暂不考虑优化
-        List<ByteBuffer> needWriteByteBufferList = new ArrayList<>();
+        ByteBuffer[] nioBuffers = NIO_BUFFERS.get();
 
         MyChannelOutBoundBufferEntry entry = flushedEntry;
         // 遍历队列中所有已经flush的节点
         while (isFlushedEntry(entry)){
             // 只处理未cancel的节点
             if(!entry.cancelled) {
-                MyByteBuf buf = entry.msg;
-                final int readerIndex = buf.readerIndex();
-                final int readableBytes = buf.writerIndex() - readerIndex;
+                final int readableBytes = entry.readableBytes();
                 // 只处理可读的消息，空msg忽略掉
                 if (readableBytes > 0) {
                     // 判断一下是否需要将当前的msg进行写出，如果超出了maxBytes就留到下一次再处理
-                    // 判断!byteBufferList.isEmpty的目的是避免一个超大的msg直接超过了maxBytes
-                    // 如果是这种极端情况即byteBufferList.isEmpty，且 readableBytes > maxBytes,那也要尝试着进行写出
+                    // 判断nioBufferCount != 0的目的是避免一个超大的msg直接超过了maxBytes
+                    // 如果是这种极端情况即nioBufferCount == 0，且 readableBytes > maxBytes,那也要尝试着进行写出
                     // 让底层的操作系统去尽可能的写入，不一定要一次写完，下次再进来就能继续写(readableBytes会变小)
-                    if (maxBytes < totalNioBufferSize + readableBytes && !needWriteByteBufferList.isEmpty()) {
+                    if (maxBytes < totalNioBufferSize + readableBytes && nioBufferCount != 0) {
                         break;
                     }
 
                     // 总共要写出的bufferSize自增
                     totalNioBufferSize += readableBytes;
 
-                    // 当前msg加入待写出的list中
-                    needWriteByteBufferList.add(entry.msg.internalNioBuffer(readerIndex, readableBytes));
+                    // 每个entry对应的nio视图只创建一次，缓存在entry上
+                    // 部分写出时jdk会直接推进其position，与removeBytes中推进的readerIndex始终保持一致，下一次写出可以直接复用
+                    ByteBuffer nioBuf = entry.nioBuffer();
+
+                    if (nioBufferCount == nioBuffers.length) {
+                        // 复用的数组不够用了，扩容(maxCount大于初始容量时才会出现)
+                        nioBuffers = expandNioBufferArray(nioBuffers, nioBufferCount + 1, nioBufferCount);
+                        NIO_BUFFERS.set(nioBuffers);
+                    }
+
+                    // 当前msg加入待写出的数组中
+                    nioBuffers[nioBufferCount++] = nioBuf;
 
-                    if (needWriteByteBufferList.size() >= maxCount) {
+                    if (nioBufferCount >= maxCount) {
                         // 限制一下一次写出最大的msg数量
                         break;
                     }
@@ -222,8 +343,35 @@ public class MyChannelOutboundBuffer {
             entry = entry.next;
         }
 
+        this.nioBufferCount = nioBufferCount;
         this.nioBufferSize = totalNioBufferSize;
-        return needWriteByteBufferList;
+        return nioBuffers;
+    }
+
+    private static ByteBuffer[] expandNioBufferArray(ByteBuffer[] array, int neededSpace, int size) {
+        int newCapacity = array.length;
+        do {
+            // double capacity until it is big enough
+            // See https://github.com/netty/netty/issues/1890
+            newCapacity <<= 1;
+
+            if (newCapacity < 0) {
+                throw new IllegalStateException();
+            }
+
+        } while (neededSpace > newCapacity);
+
+        ByteBuffer[] newArray = new ByteBuffer[newCapacity];
+        System.arraycopy(array, 0, newArray, 0, size);
+
+        return newArray;
+    }
+
+    /**
+     * 最近一次nioByteBuffers调用得到的有效ByteBuffer个数
+     * */
+    public int getNioBufferCount() {
+        return nioBufferCount;
     }
 
     public long getNioBufferSize() {
@@ -231,7 +379,131 @@ public class MyChannelOutboundBuffer {
     }
 
     public boolean isWritable() {
-        return !unWritable;
+        return unWritable == 0;
+    }
+
+    /**
+     * Get how many bytes can be written until {@link #isWritable()} returns {@code false}.
+     * This quantity will always be non-negative. If {@link #isWritable()} is {@code false} then 0.
+     */
+    public long bytesBeforeUnwritable() {
+        // +1 because writability doesn't change until the threshold is crossed (not equal to).
+        long bytes = waterMark().high() - totalPendingSize + 1;
+        // If bytes is negative we know we are not writable, but if bytes is non-negative we have to check writability.
+        // Note that totalPendingSize and isWritable() use different volatile variables that are not synchronized
+        // together. totalPendingSize will be updated before isWritable().
+        return bytes > 0 && isWritable() ? bytes : 0;
+    }
+
+    /**
+     * Get how many bytes must be drained from the underlying buffer until {@link #isWritable()} returns {@code true}.
+     * This quantity will always be non-negative. If {@link #isWritable()} is {@code true} then 0.
+     */
+    public long bytesBeforeWritable() {
+        // -1 because writability doesn't change until the threshold is crossed (not equal to).
+        long bytes = totalPendingSize - waterMark().low() + 1;
+        // If bytes is negative we know we are writable, but if bytes is non-negative we have to check writability.
+        return bytes <= 0 || isWritable() ? 0 : bytes;
+    }
+
+    public long getTotalPendingSize() {
+        return totalPendingSize;
+    }
+
+    /**
+     * Returns {@code true} if and only if the user-defined writability flag at the specified index is set to
+     * {@code true}.
+     */
+    public boolean getUserDefinedWritability(int index) {
+        return (unWritable & writabilityMask(index)) == 0;
+    }
+
+    /**
+     * Sets a user-defined writability flag at the specified index.
+     *
+     * 可以在任意线程中调用，可写状态变化时channelWritabilityChanged事件总是在eventLoop线程中触发
+     */
+    public void setUserDefinedWritability(int index, boolean writable) {
+        final int mask = ~writabilityMask(index);
+        if (writable) {
+            for (;;) {
+                final int oldValue = unWritable;
+                final int newValue = oldValue & mask;
+                if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
+                    if (oldValue != 0 && newValue == 0) {
+                        // 所有的标识都变为了可写
+                        fireChannelWritabilityChanged();
+                    }
+                    break;
+                }
+            }
+        } else {
+            for (;;) {
+                final int oldValue = unWritable;
+                final int newValue = oldValue | ~mask;
+                if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
+                    if (oldValue == 0 && newValue != 0) {
+                        // 从可写变为了不可写
+                        fireChannelWritabilityChanged();
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int writabilityMask(int index) {
+        // 第0位留给水位线使用
+        if (index < 1 || index > 31) {
+            throw new IllegalArgumentException("index: " + index + " (expected: 1~31)");
+        }
+        return 1 << index;
+    }
+
+    private void setWritable() {
+        for (;;) {
+            final int oldValue = unWritable;
+            final int newValue = oldValue & ~1;
+            if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
+                if (oldValue != 0 && newValue == 0) {
+                    fireChannelWritabilityChanged();
+                }
+                break;
+            }
+        }
+    }
+
+    private void setUnwritable() {
+        for (;;) {
+            final int oldValue = unWritable;
+            final int newValue = oldValue | 1;
+            if (UNWRITABLE_UPDATER.compareAndSet(this, oldValue, newValue)) {
+                if (oldValue == 0) {
+                    fireChannelWritabilityChanged();
+                }
+                break;
+            }
+        }
+    }
+
+    private void fireChannelWritabilityChanged() {
+        if (channel == null) {
+            return;
+        }
+
+        // 可写状态发生了变化，通知pipeline中的handler(入站事件，从head开始传播)
+        // 用户自定义的标识可能在业务线程中被修改，handler的回调必须在eventLoop线程中执行，非eventLoop线程时提交为一个任务
+        MyNioEventLoop myNioEventLoop = channel.getMyNioEventLoop();
+        if (myNioEventLoop == null || myNioEventLoop.inEventLoop()) {
+            channel.getChannelPipeline().fireChannelWritabilityChanged();
+        } else {
+            channel.executeInEventLoop(() -> channel.getChannelPipeline().fireChannelWritabilityChanged());
+        }
+    }
+
+    private MyWriteBufferWaterMark waterMark() {
+        // 每次都从channel上获取，以支持运行时动态调整水位线
+        return channel != null ? channel.getWriteBufferWaterMark() : MyWriteBufferWaterMark.DEFAULT;
     }
 
     public boolean isEmpty() {
@@ -279,10 +551,11 @@ public class MyChannelOutboundBuffer {
             return;
         }
 
-        this.totalPendingSize += size;
-        if (totalPendingSize > DEFAULT_HIGH_WATER_MARK) {
+        long newWriteBufferSize = this.totalPendingSize + size;
+        this.totalPendingSize = newWriteBufferSize;
+        if (newWriteBufferSize > waterMark().high()) {
             // 超过了所配置的高水位线，标识设置为不可写
-            this.unWritable = true;
+            setUnwritable();
         }
     }
 
@@ -291,10 +564,11 @@ public class MyChannelOutboundBuffer {
             return;
         }
 
-        this.totalPendingSize -= size;
-        if (totalPendingSize < DEFAULT_LOW_WATER_MARK) {
+        long newWriteBufferSize = this.totalPendingSize - size;
+        this.totalPendingSize = newWriteBufferSize;
+        if (newWriteBufferSize < waterMark().low()) {
             // 低于了所配置的低水位线，标识设置为可写
-            this.unWritable = false;
+            setWritable();
         }
     }
 }
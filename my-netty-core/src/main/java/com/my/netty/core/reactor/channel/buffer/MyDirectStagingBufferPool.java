@@ -0,0 +1,101 @@
+package com.my.netty.core.reactor.channel.buffer;
+
+import com.my.netty.threadlocal.impl.netty.MyFastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写出暂存用的堆外内存(DirectByteBuffer)池
+ *
+ * netty在消息进入ChannelOutboundBuffer时，会将堆内的ByteBuf拷贝到池化的堆外ByteBuf中(AbstractNioByteChannel.filterOutboundMessage)，
+ * 一方面积压的待写出数据不再占用堆内存，另一方面jdk写出堆内ByteBuffer时内部会先拷贝到一个临时的堆外ByteBuffer中，提前拷贝后就省掉了这一次隐藏的拷贝
+ * MyNetty的ByteBuf还没有堆外实现，所以这里简单实现一个按2的幂次划分规格的、线程级别的DirectByteBuffer缓存池
+ *
+ * 只有持有channel的IO线程会申请/归还，每个线程只访问自己的缓存，所以不需要加锁
+ * (channel在eventLoop之间迁移后，buffer会被归还到新的IO线程的缓存中，不影响正确性)
+ *
+ * 堆外内存只有在DirectByteBuffer被gc回收后才会释放，归还时丢弃buffer并不能及时释放内存，突发流量下堆外内存会不受控制的增长。
+ * 因此归还的buffer总是放回缓存，不会丢弃；而所有线程新申请的堆外内存总量受MAX_ALLOCATED_BYTES限制，
+ * 超过限制时acquire返回null，调用方退化为直接使用堆内的msg写出，已分配的堆外内存总量不会超过该上限
+ * */
+final class MyDirectStagingBufferPool {
+
+    /**
+     * 最小的规格512B，最大的规格64KB，超过最大规格的消息不做暂存，依然使用原始的堆内ByteBuf写出
+     * */
+    private static final int MIN_SIZE_SHIFT = 9;
+    private static final int MAX_SIZE_SHIFT = 16;
+
+    static final int MAX_STAGING_SIZE = 1 << MAX_SIZE_SHIFT;
+
+    /**
+     * 整个进程中暂存池最多分配的堆外内存总字节数(包括正在使用的以及缓存在各个线程中的)
+     * */
+    private static final long MAX_ALLOCATED_BYTES = 64 * 1024 * 1024;
+
+    private static final AtomicLong ALLOCATED_BYTES = new AtomicLong();
+
+    private static final MyFastThreadLocal<SizeClassCache[]> CACHES = new MyFastThreadLocal<SizeClassCache[]>() {
+        @Override
+        protected SizeClassCache[] initialValue() {
+            SizeClassCache[] caches = new SizeClassCache[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+            for (int i = 0; i < caches.length; i++) {
+                caches[i] = new SizeClassCache();
+            }
+            return caches;
+        }
+    };
+
+    private MyDirectStagingBufferPool() {
+    }
+
+    /**
+     * 申请一个容量不小于size的DirectByteBuffer(position=0，limit=capacity)
+     *
+     * @return 当前线程没有可复用的buffer，并且堆外内存总量已经达到上限时返回null
+     * */
+    static ByteBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer = CACHES.get()[sizeClass].buffers.pollLast();
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+
+        int capacity = 1 << (sizeClass + MIN_SIZE_SHIFT);
+        for (;;) {
+            long allocated = ALLOCATED_BYTES.get();
+            if (allocated + capacity > MAX_ALLOCATED_BYTES) {
+                return null;
+            }
+            if (ALLOCATED_BYTES.compareAndSet(allocated, allocated + capacity)) {
+                return ByteBuffer.allocateDirect(capacity);
+            }
+        }
+    }
+
+    /**
+     * 归还DirectByteBuffer，总是放回当前线程的缓存中(已分配的总量是有上限的，缓存不会无限增长)
+     * */
+    static void release(ByteBuffer buffer) {
+        CACHES.get()[sizeClass(buffer.capacity())].buffers.offerLast(buffer);
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= 1 << MIN_SIZE_SHIFT) {
+            return 0;
+        }
+        // 向上取整到2的幂次
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * 单个规格的缓存(避免创建泛型数组)
+     * */
+    private static final class SizeClassCache {
+        final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+    }
+}
@@ -13,6 +13,8 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class MyNioClientBootstrap {
 
@@ -57,18 +59,17 @@ public class MyNioClientBootstrap {
                 // Returns: true if a connection was established,
                 //          false if this channel is in non-blocking mode and the connection operation is in progress;
                 if(!socketChannel.connect(remoteAddress)){
-                    // 简单起见也监听READ事件，相当于netty中开启了autoRead
-                    int clientInterestOps = SelectionKey.OP_CONNECT | SelectionKey.OP_READ;
+                    // 注册时已经根据autoRead决定了是否监听READ事件，在此基础上再监听CONNECT事件
+                    int clientInterestOps = myNioSocketChannel.getSelectionKey().interestOps() | SelectionKey.OP_CONNECT;
 
                     myNioSocketChannel.getSelectionKey().interestOps(clientInterestOps);
 
                     // 监听connect事件
                     logger.info("MyNioClient do start! remoteAddress={}",remoteAddress);
                 }else{
-                    logger.info("MyNioClient do start connect error! remoteAddress={}",remoteAddress);
-
-                    // connect操作直接失败，关闭连接
-                    socketChannel.close();
+                    // 非阻塞模式下连接也可能立即建立成功(比如连接本机)，不会再有OP_CONNECT事件，直接触发channelActive
+                    logger.info("MyNioClient connected immediately! remoteAddress={}",remoteAddress);
+                    myNioSocketChannel.onActive();
                 }
             } catch (IOException e) {
                 logger.error("MyNioClient do connect error!",e);
@@ -80,4 +81,15 @@ public class MyNioClientBootstrap {
         // 发送消息, 由encode编码器去编码为byteBuf
         myNioSocketChannel.getChannelPipeline().write(msg,true);
     }
+
+    /**
+     * 优雅关闭客户端，积压的数据写出之后(或者超时之后)再关闭连接
+     * */
+    public CompletableFuture<Void> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit){
+        return eventLoopGroup.shutdownGracefully(quietPeriod,timeout,unit);
+    }
+
+    public CompletableFuture<Void> shutdownGracefully(){
+        return eventLoopGroup.shutdownGracefully();
+    }
 }
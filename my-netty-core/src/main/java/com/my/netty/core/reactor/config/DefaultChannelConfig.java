@@ -2,8 +2,18 @@ package com.my.netty.core.reactor.config;
 
 import com.my.netty.bytebuffer.netty.allocator.MyByteBufAllocator;
 import com.my.netty.bytebuffer.netty.allocator.MyUnpooledByteBufAllocator;
+import com.my.netty.core.reactor.eventloop.chooser.MyDefaultEventExecutorChooserFactory;
+import com.my.netty.core.reactor.eventloop.chooser.MyEventExecutorChooserFactory;
+import com.my.netty.core.reactor.eventloop.queue.MyEventLoopTaskQueueFactory;
+import com.my.netty.core.reactor.eventloop.queue.MyMpscTaskQueueFactory;
+import com.my.netty.core.reactor.eventloop.queue.MyRejectedExecutionHandler;
+import com.my.netty.core.reactor.eventloop.queue.MyRejectedExecutionHandlers;
 import com.my.netty.threadlocal.impl.netty.MyDefaultThreadFactory;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * channel相关的配置，待后续拓展
  * */
@@ -15,6 +25,109 @@ public class DefaultChannelConfig {
 
     private MyByteBufAllocator allocator = new MyUnpooledByteBufAllocator();
 
+    /**
+     * eventLoop任务队列的工厂，默认为无锁的mpsc队列
+     * */
+    private MyEventLoopTaskQueueFactory taskQueueFactory = MyMpscTaskQueueFactory.INSTANCE;
+
+    /**
+     * eventLoop任务队列的最大容量，默认无界(与netty一致)
+     * 默认的mpsc队列会将有界的容量向上取整为2的幂次方
+     * */
+    private int maxPendingTasks = Integer.MAX_VALUE;
+
+    /**
+     * 有界任务队列满了之后的拒绝策略
+     * */
+    private MyRejectedExecutionHandler rejectedExecutionHandler = MyRejectedExecutionHandlers.reject();
+
+    /**
+     * 一次事件循环中，处理io事件的时间占总时间的百分比(与netty一致，默认为50)
+     * */
+    private int ioRatio = 50;
+
+    /**
+     * 是否通过反射将selector内部的selectedKeys(HashSet)替换为基于数组的集合，替换失败时会自动退化
+     * 依赖jdk的内部实现(sun.nio.ch.SelectorImpl，jdk9+上还需要--add-opens或者sun.misc.Unsafe)，因此默认关闭，需要时显式开启
+     * */
+    private boolean selectedKeySetOptimization = false;
+
+    /**
+     * 时间窗口内select提前返回(空轮询)多少次后重建selector，用于规避jdk的epoll空轮询bug，小于等于0代表不自动重建(netty默认512)
+     * */
+    private int selectorAutoRebuildThreshold = 512;
+
+    /**
+     * 检测select提前返回次数的时间窗口，同时也是MyNioEventLoop.getPrematureSelectReturnRate的统计窗口
+     * */
+    private long selectorSpinWindowMillis = 1000;
+
+    /**
+     * eventLoopGroup选择eventLoop的策略，默认轮询
+     * */
+    private MyEventExecutorChooserFactory eventExecutorChooserFactory = MyDefaultEventExecutorChooserFactory.INSTANCE;
+
+    /**
+     * 一次read事件最多读取多少次(对于serverSocketChannel，就是一次accept事件最多接受多少个连接)，与netty一致默认为16
+     * */
+    private int maxMessagesPerRead = 16;
+
+    /**
+     * 一次flush中最多调用多少次jdk的write(与netty一致默认为16)，超过后让出eventLoop，剩余的数据在下一次事件循环中再写出
+     * */
+    private int writeSpinCount = 16;
+
+    /**
+     * 一次flush中最多写出的字节数，避免单个channel一次性flush大量数据时长时间占用eventLoop，导致同一eventLoop上的其它channel饥饿
+     * */
+    private int writeQuantumBytes = 1024 * 1024;
+
+    /**
+     * 新建立的channel是否自动读取(与netty一致默认为true)，为false时需要由handler显式的调用read()才会读取一次数据
+     * 创建之后可以通过channel.setAutoRead单独调整
+     * */
+    private boolean autoRead = true;
+
+    /**
+     * 是否允许tcp半关闭(参考netty的ChannelOption.ALLOW_HALF_CLOSURE，默认为false)
+     * 为false时，读取到对端的EOF后直接关闭连接；为true时，只关闭输入端(shutdownInput)并触发MyChannelInputShutdownEvent用户事件，
+     * 输出端依然可用，业务方可以继续把响应写完，再自行close或者shutdownOutput
+     * */
+    private boolean allowHalfClosure = false;
+
+    /**
+     * 是否在消息进入channelOutboundBuffer时，将堆内的ByteBuf拷贝到池化的堆外暂存buffer中(参考netty的filterOutboundMessage)
+     * 开启后积压的待写出数据不再占用堆内存(降低gc压力)，并且省掉了jdk写出堆内ByteBuffer时内部的那一次拷贝
+     * 超过64KB的单个消息不做暂存；暂存池分配的堆外内存总量达到上限(64MB)后，新的消息也不再暂存
+     * */
+    private boolean outboundDirectStaging = false;
+
+    /**
+     * 写缓冲区的高低水位线，channel上没有单独设置时使用该值
+     * */
+    private volatile MyWriteBufferWaterMark writeBufferWaterMark = MyWriteBufferWaterMark.DEFAULT;
+
+    /**
+     * 未配置SO_BACKLOG时，serverSocketChannel的连接队列大小(listen backlog)
+     * */
+    private static final int DEFAULT_BACKLOG = 1024;
+
+    /**
+     * 作用于serverSocketChannel的配置项，在bind时生效
+     * */
+    private final Map<MyChannelOption<?>, Object> options = new LinkedHashMap<>();
+
+    /**
+     * 作用于连接(服务端accept的socketChannel，以及客户端的socketChannel)的配置项，在channel创建时生效
+     * */
+    private final Map<MyChannelOption<?>, Object> childOptions = new LinkedHashMap<>();
+
+    /**
+     * 是否开启SO_REUSEPORT多acceptor模式，开启后每个boss eventLoop都会绑定一个独立的serverSocketChannel(需要linux3.9+以及jdk9+)，
+     * 由内核将新连接分散到不同的serverSocketChannel上，避免单个boss线程成为建立连接的瓶颈
+     * */
+    private boolean reusePort = false;
+
     public int getInitialReceiveBufferSize() {
         return initialReceiveBufferSize;
     }
@@ -38,4 +151,224 @@ public class DefaultChannelConfig {
     public void setAllocator(MyByteBufAllocator myByteBufAllocator) {
         this.allocator = myByteBufAllocator;
     }
+
+    public MyEventLoopTaskQueueFactory getTaskQueueFactory() {
+        return taskQueueFactory;
+    }
+
+    public void setTaskQueueFactory(MyEventLoopTaskQueueFactory taskQueueFactory) {
+        this.taskQueueFactory = taskQueueFactory;
+    }
+
+    public int getMaxPendingTasks() {
+        return maxPendingTasks;
+    }
+
+    public void setMaxPendingTasks(int maxPendingTasks) {
+        if(maxPendingTasks <= 0){
+            throw new IllegalArgumentException("maxPendingTasks must > 0");
+        }
+        this.maxPendingTasks = maxPendingTasks;
+    }
+
+    public MyRejectedExecutionHandler getRejectedExecutionHandler() {
+        return rejectedExecutionHandler;
+    }
+
+    public void setRejectedExecutionHandler(MyRejectedExecutionHandler rejectedExecutionHandler) {
+        this.rejectedExecutionHandler = rejectedExecutionHandler;
+    }
+
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    public boolean isSelectedKeySetOptimization() {
+        return selectedKeySetOptimization;
+    }
+
+    public void setSelectedKeySetOptimization(boolean selectedKeySetOptimization) {
+        this.selectedKeySetOptimization = selectedKeySetOptimization;
+    }
+
+    public int getSelectorAutoRebuildThreshold() {
+        return selectorAutoRebuildThreshold;
+    }
+
+    public void setSelectorAutoRebuildThreshold(int selectorAutoRebuildThreshold) {
+        this.selectorAutoRebuildThreshold = selectorAutoRebuildThreshold;
+    }
+
+    public long getSelectorSpinWindowMillis() {
+        return selectorSpinWindowMillis;
+    }
+
+    public void setSelectorSpinWindowMillis(long selectorSpinWindowMillis) {
+        if(selectorSpinWindowMillis <= 0){
+            throw new IllegalArgumentException("selectorSpinWindowMillis must > 0");
+        }
+        this.selectorSpinWindowMillis = selectorSpinWindowMillis;
+    }
+
+    public MyEventExecutorChooserFactory getEventExecutorChooserFactory() {
+        return eventExecutorChooserFactory;
+    }
+
+    public void setEventExecutorChooserFactory(MyEventExecutorChooserFactory eventExecutorChooserFactory) {
+        this.eventExecutorChooserFactory = eventExecutorChooserFactory;
+    }
+
+    public int getMaxMessagesPerRead() {
+        return maxMessagesPerRead;
+    }
+
+    public void setMaxMessagesPerRead(int maxMessagesPerRead) {
+        if(maxMessagesPerRead <= 0){
+            throw new IllegalArgumentException("maxMessagesPerRead: " + maxMessagesPerRead + " (expected: > 0)");
+        }
+        this.maxMessagesPerRead = maxMessagesPerRead;
+    }
+
+    public int getWriteSpinCount() {
+        return writeSpinCount;
+    }
+
+    public void setWriteSpinCount(int writeSpinCount) {
+        if(writeSpinCount <= 0){
+            throw new IllegalArgumentException("writeSpinCount: " + writeSpinCount + " (expected: > 0)");
+        }
+        this.writeSpinCount = writeSpinCount;
+    }
+
+    public int getWriteQuantumBytes() {
+        return writeQuantumBytes;
+    }
+
+    public void setWriteQuantumBytes(int writeQuantumBytes) {
+        if(writeQuantumBytes <= 0){
+            throw new IllegalArgumentException("writeQuantumBytes: " + writeQuantumBytes + " (expected: > 0)");
+        }
+        this.writeQuantumBytes = writeQuantumBytes;
+    }
+
+    public boolean isAutoRead() {
+        return autoRead;
+    }
+
+    public void setAutoRead(boolean autoRead) {
+        this.autoRead = autoRead;
+    }
+
+    public boolean isAllowHalfClosure() {
+        return allowHalfClosure;
+    }
+
+    public void setAllowHalfClosure(boolean allowHalfClosure) {
+        this.allowHalfClosure = allowHalfClosure;
+    }
+
+    public boolean isOutboundDirectStaging() {
+        return outboundDirectStaging;
+    }
+
+    public void setOutboundDirectStaging(boolean outboundDirectStaging) {
+        this.outboundDirectStaging = outboundDirectStaging;
+    }
+
+    public MyWriteBufferWaterMark getWriteBufferWaterMark() {
+        return writeBufferWaterMark;
+    }
+
+    public void setWriteBufferWaterMark(MyWriteBufferWaterMark writeBufferWaterMark) {
+        if(writeBufferWaterMark == null){
+            throw new NullPointerException("writeBufferWaterMark");
+        }
+        this.writeBufferWaterMark = writeBufferWaterMark;
+    }
+
+    /**
+     * serverSocketChannel的连接队列大小，即SO_BACKLOG配置项的值
+     * */
+    public int getBacklog() {
+        Integer backlog = getOption(MyChannelOption.SO_BACKLOG);
+        return backlog != null ? backlog : DEFAULT_BACKLOG;
+    }
+
+    /**
+     * 设置作用于serverSocketChannel的配置项，value为null代表移除
+     * */
+    public <T> DefaultChannelConfig option(MyChannelOption<T> option, T value) {
+        setOption(options, option, value);
+        return this;
+    }
+
+    /**
+     * 设置作用于连接(socketChannel)的配置项，value为null代表移除
+     * */
+    public <T> DefaultChannelConfig childOption(MyChannelOption<T> option, T value) {
+        setOption(childOptions, option, value);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getOption(MyChannelOption<T> option) {
+        synchronized (options) {
+            return (T) options.get(option);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getChildOption(MyChannelOption<T> option) {
+        synchronized (childOptions) {
+            return (T) childOptions.get(option);
+        }
+    }
+
+    /**
+     * 作用于serverSocketChannel的全部配置项(快照)
+     * */
+    public Map<MyChannelOption<?>, Object> getOptions() {
+        synchronized (options) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(options));
+        }
+    }
+
+    /**
+     * 作用于连接的全部配置项(快照)
+     * */
+    public Map<MyChannelOption<?>, Object> getChildOptions() {
+        synchronized (childOptions) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(childOptions));
+        }
+    }
+
+    private static <T> void setOption(Map<MyChannelOption<?>, Object> options, MyChannelOption<T> option, T value) {
+        if(option == null){
+            throw new NullPointerException("option");
+        }
+
+        synchronized (options) {
+            if(value == null){
+                options.remove(option);
+            }else{
+                option.validate(value);
+                options.put(option, value);
+            }
+        }
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public void setReusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+    }
 }
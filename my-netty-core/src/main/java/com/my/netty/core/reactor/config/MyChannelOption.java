@@ -0,0 +1,115 @@
+package com.my.netty.core.reactor.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 类型安全的channel配置项(参考netty的ChannelOption)
+ *
+ * 每个配置项都是全局唯一的常量，通过泛型约束配置值的类型，避免直接使用字符串/Object带来的类型错误
+ * 与jdk socket选项对应的配置项会直接作用于底层的jdk channel上，其它的(比如SO_BACKLOG)则由框架自己解释
+ * */
+public final class MyChannelOption<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MyChannelOption.class);
+
+    private static final ConcurrentMap<String, MyChannelOption<?>> POOL = new ConcurrentHashMap<>();
+
+    public static final MyChannelOption<Boolean> TCP_NODELAY = newSocketOption("TCP_NODELAY", StandardSocketOptions.TCP_NODELAY);
+    public static final MyChannelOption<Integer> SO_SNDBUF = newSocketOption("SO_SNDBUF", StandardSocketOptions.SO_SNDBUF);
+    public static final MyChannelOption<Integer> SO_RCVBUF = newSocketOption("SO_RCVBUF", StandardSocketOptions.SO_RCVBUF);
+    public static final MyChannelOption<Boolean> SO_KEEPALIVE = newSocketOption("SO_KEEPALIVE", StandardSocketOptions.SO_KEEPALIVE);
+    public static final MyChannelOption<Boolean> SO_REUSEADDR = newSocketOption("SO_REUSEADDR", StandardSocketOptions.SO_REUSEADDR);
+    public static final MyChannelOption<Integer> SO_LINGER = newSocketOption("SO_LINGER", StandardSocketOptions.SO_LINGER);
+
+    /**
+     * serverSocketChannel的连接队列大小(listen backlog)，在bind时生效
+     * */
+    public static final MyChannelOption<Integer> SO_BACKLOG = valueOf("SO_BACKLOG");
+
+    private final String name;
+
+    /**
+     * 对应的jdk socket选项，为null说明不是jdk socket选项
+     * */
+    private final SocketOption<T> socketOption;
+
+    private MyChannelOption(String name, SocketOption<T> socketOption) {
+        this.name = name;
+        this.socketOption = socketOption;
+    }
+
+    /**
+     * 获取(或创建)一个指定名字的配置项
+     * */
+    @SuppressWarnings("unchecked")
+    public static <T> MyChannelOption<T> valueOf(String name) {
+        if(name == null){
+            throw new NullPointerException("name");
+        }
+        return (MyChannelOption<T>) POOL.computeIfAbsent(name, k -> new MyChannelOption<>(k, null));
+    }
+
+    private static <T> MyChannelOption<T> newSocketOption(String name, SocketOption<T> socketOption) {
+        MyChannelOption<T> option = new MyChannelOption<>(name, socketOption);
+        if(POOL.putIfAbsent(name, option) != null){
+            throw new IllegalArgumentException(String.format("'%s' is already in use", name));
+        }
+        return option;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public SocketOption<T> socketOption() {
+        return socketOption;
+    }
+
+    public void validate(T value) {
+        if(value == null){
+            throw new NullPointerException("value");
+        }
+    }
+
+    /**
+     * 将配置项中的jdk socket选项设置到jdk channel上
+     *
+     * 与netty一致，单个选项设置失败(比如当前平台不支持)只打印告警日志，不影响channel的正常使用
+     * */
+    @SuppressWarnings("unchecked")
+    public static void applySocketOptions(NetworkChannel channel, Map<MyChannelOption<?>, Object> options) {
+        for(Map.Entry<MyChannelOption<?>, Object> entry : options.entrySet()){
+            MyChannelOption<Object> option = (MyChannelOption<Object>) entry.getKey();
+            SocketOption<Object> socketOption = option.socketOption();
+            if(socketOption == null){
+                // 非jdk socket选项，由框架在对应的地方自行处理
+                continue;
+            }
+
+            if(!channel.supportedOptions().contains(socketOption)){
+                logger.warn("Unknown channel option '{}' for channel '{}'", option, channel);
+                continue;
+            }
+
+            try {
+                channel.setOption(socketOption, entry.getValue());
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to set channel option '{}' with value '{}' for channel '{}'", option, entry.getValue(), channel, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,44 @@
+package com.my.netty.core.reactor.config;
+
+/**
+ * 写缓冲区(channelOutboundBuffer)的高低水位线(参考netty的WriteBufferWaterMark)
+ *
+ * 积压的待写出字节数超过高水位线时，channel变为不可写(isWritable=false)；回落到低水位线以下时，channel重新变为可写
+ * 每次可写状态发生变化时都会触发channelWritabilityChanged事件，业务方可以据此暂停/恢复写入，实现背压，避免无限制的积压消息导致OOM
+ * */
+public final class MyWriteBufferWaterMark {
+
+    private static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+    private static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+
+    public static final MyWriteBufferWaterMark DEFAULT =
+        new MyWriteBufferWaterMark(DEFAULT_LOW_WATER_MARK, DEFAULT_HIGH_WATER_MARK);
+
+    private final int low;
+    private final int high;
+
+    public MyWriteBufferWaterMark(int low, int high) {
+        if (low < 0) {
+            throw new IllegalArgumentException("write buffer's low water mark: " + low + " (expected: >= 0)");
+        }
+        if (high < low) {
+            throw new IllegalArgumentException(
+                "write buffer's high water mark cannot be less than low water mark (" + low + "): " + high);
+        }
+        this.low = low;
+        this.high = high;
+    }
+
+    public int low() {
+        return low;
+    }
+
+    public int high() {
+        return high;
+    }
+
+    @Override
+    public String toString() {
+        return "MyWriteBufferWaterMark(low: " + low + ", high: " + high + ")";
+    }
+}
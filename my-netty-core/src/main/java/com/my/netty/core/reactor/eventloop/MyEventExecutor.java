@@ -0,0 +1,18 @@
+package com.my.netty.core.reactor.eventloop;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 执行channelHandler逻辑的执行单元
+ *
+ * 默认情况下就是channel所绑定的eventLoop，也可以是用于卸载阻塞逻辑的非I/O执行器(参考netty中的EventExecutor)
+ * */
+public interface MyEventExecutor extends Executor {
+
+    /**
+     * 当前线程是否就是该执行单元的执行线程
+     *
+     * 是则可以直接执行，否则需要通过execute提交任务，以保证针对同一channel的操作不会并发执行
+     * */
+    boolean inEventLoop();
+}
@@ -0,0 +1,206 @@
+package com.my.netty.core.reactor.eventloop;
+
+import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.eventloop.schedule.MyScheduledFutureTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于eventLoop繁忙程度的channel负载均衡器
+ *
+ * 长连接场景下，channel在建立连接时就固定绑定在了某个eventLoop上，如果少数热点channel恰好集中在同一个eventLoop上，
+ * 就会出现部分cpu核心很忙而其它核心很闲的情况。
+ * 负载均衡器定期采样每个eventLoop的繁忙时间占比，当最忙与最闲的eventLoop之间的差距超过阈值时，
+ * 从最忙的eventLoop中挑选一个channel迁移到最闲的eventLoop上(MyNioEventLoop.migrate)，整个过程客户端无感知，不需要重连
+ *
+ * 为了避免来回震荡，每一轮最多只迁移一个channel，并且挑选的channel的预估负载不超过差距的一半
+ * */
+public class MyEventLoopRebalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MyEventLoopRebalancer.class);
+
+    private final MyNioEventLoop[] eventLoops;
+
+    /**
+     * 最忙与最闲的eventLoop之间繁忙时间占比的差距超过该值时触发迁移(0-1之间)
+     * */
+    private final double imbalanceThreshold;
+
+    private final long[] lastBusyNanos;
+    private long lastSampleNanos;
+
+    /**
+     * 同一时刻最多只有一个迁移在进行中
+     * */
+    private final AtomicBoolean migrating = new AtomicBoolean();
+
+    private final AtomicLong migrationCount = new AtomicLong();
+
+    private volatile MyScheduledFutureTask scheduledTask;
+
+    public MyEventLoopRebalancer(MyNioEventLoopGroup eventLoopGroup, double imbalanceThreshold) {
+        if(imbalanceThreshold <= 0 || imbalanceThreshold >= 1){
+            throw new IllegalArgumentException("imbalanceThreshold: " + imbalanceThreshold + " (expected: 0 < imbalanceThreshold < 1)");
+        }
+
+        List<MyNioEventLoop> eventLoopList = eventLoopGroup.eventLoops();
+        this.eventLoops = eventLoopList.toArray(new MyNioEventLoop[0]);
+        this.imbalanceThreshold = imbalanceThreshold;
+        this.lastBusyNanos = new long[eventLoops.length];
+    }
+
+    /**
+     * 开始定期执行负载均衡(定时任务由group中的第一个eventLoop执行)
+     * */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if(scheduledTask != null){
+            throw new IllegalStateException("rebalancer already started");
+        }
+
+        this.scheduledTask = eventLoops[0].scheduleAtFixedRate(this::rebalance, interval, interval, unit);
+    }
+
+    public synchronized void stop() {
+        if(scheduledTask != null){
+            scheduledTask.cancel(false);
+            scheduledTask = null;
+        }
+    }
+
+    /**
+     * 累计迁移的channel数量
+     * */
+    public long getMigrationCount() {
+        return migrationCount.get();
+    }
+
+    /**
+     * 执行一轮负载均衡
+     * */
+    public synchronized void rebalance() {
+        if(eventLoops.length < 2){
+            return;
+        }
+
+        // 采样各个eventLoop在本轮周期内的繁忙时间占比
+        long now = System.nanoTime();
+        boolean firstSample = lastSampleNanos == 0;
+        long elapsedNanos = now - lastSampleNanos;
+        lastSampleNanos = now;
+
+        double[] busyRatios = new double[eventLoops.length];
+        for(int i=0; i<eventLoops.length; i++){
+            long busyNanos = eventLoops[i].getBusyNanos();
+            busyRatios[i] = (double) (busyNanos - lastBusyNanos[i]) / elapsedNanos;
+            lastBusyNanos[i] = busyNanos;
+        }
+
+        if(firstSample){
+            // 第一次采样没有可对比的基准
+            return;
+        }
+
+        int hotIndex = 0;
+        int coldIndex = 0;
+        for(int i=1; i<eventLoops.length; i++){
+            if(busyRatios[i] > busyRatios[hotIndex]){
+                hotIndex = i;
+            }
+            if(busyRatios[i] < busyRatios[coldIndex]){
+                coldIndex = i;
+            }
+        }
+
+        double gap = busyRatios[hotIndex] - busyRatios[coldIndex];
+        if(gap < imbalanceThreshold){
+            return;
+        }
+
+        if(!migrating.compareAndSet(false,true)){
+            // 上一次的迁移还没有完成
+            return;
+        }
+
+        MyNioEventLoop hot = eventLoops[hotIndex];
+        MyNioEventLoop cold = eventLoops[coldIndex];
+        double hotBusyRatio = busyRatios[hotIndex];
+        logger.info("eventLoop imbalance detected, hot={}({}), cold={}({})",
+            hot, busyRatios[hotIndex], cold, busyRatios[coldIndex]);
+
+        try {
+            // channel的采样与挑选需要访问selector.keys，必须在hot eventLoop线程中执行
+            hot.execute(()-> migrateOne(hot, cold, hotBusyRatio, gap));
+        }catch (RejectedExecutionException e){
+            migrating.set(false);
+        }
+    }
+
+    private void migrateOne(MyNioEventLoop hot, MyNioEventLoop cold, double hotBusyRatio, double gap) {
+        MyNioChannel candidate = null;
+        try {
+            // 采样hot eventLoop上各个channel的io事件数
+            List<SelectionKey> keys = new ArrayList<>(hot.getUnwrappedSelector().keys());
+            long[] ioEvents = new long[keys.size()];
+            long totalIoEvents = 0;
+            int channelCount = 0;
+            for(int i=0; i<keys.size(); i++){
+                SelectionKey key = keys.get(i);
+                if(key.isValid() && key.attachment() instanceof MyNioChannel){
+                    ioEvents[i] = ((MyNioChannel) key.attachment()).sampleIoEvents();
+                    totalIoEvents += ioEvents[i];
+                    channelCount++;
+                }
+            }
+
+            if(channelCount < 2 || totalIoEvents == 0){
+                // 只有一个channel，迁移过去只会让另一个eventLoop变成热点
+                return;
+            }
+
+            // 按io事件数占比估算每个channel的负载，挑选预估负载不超过差距一半的channel中最大的那个
+            double maxLoad = gap / 2;
+            double candidateLoad = 0;
+            for(int i=0; i<keys.size(); i++){
+                if(ioEvents[i] == 0){
+                    continue;
+                }
+
+                double load = hotBusyRatio * ioEvents[i] / totalIoEvents;
+                if(load <= maxLoad && load > candidateLoad){
+                    candidateLoad = load;
+                    candidate = (MyNioChannel) keys.get(i).attachment();
+                }
+            }
+
+            if(candidate == null){
+                return;
+            }
+
+            MyNioChannel migrateChannel = candidate;
+            hot.migrate(migrateChannel, cold).whenComplete((v, t)->{
+                migrating.set(false);
+                if(t == null){
+                    migrationCount.incrementAndGet();
+                    logger.info("channel migrated, channel={}, from={}, to={}",migrateChannel,hot,cold);
+                }else{
+                    logger.warn("channel migrate failed, channel={}",migrateChannel,t);
+                }
+            });
+        } catch (Throwable t){
+            logger.error("eventLoop rebalance error!",t);
+            candidate = null;
+        } finally {
+            if(candidate == null){
+                migrating.set(false);
+            }
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.my.netty.core.reactor.eventloop;
 
 import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.channel.MyNioServerSocketChannel;
 import com.my.netty.core.reactor.channel.MyNioSocketChannel;
 import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
+import com.my.netty.core.reactor.eventloop.queue.MyRejectedExecutionHandler;
+import com.my.netty.core.reactor.eventloop.schedule.MyScheduledFutureTask;
+import com.my.netty.core.reactor.eventloop.schedule.MyScheduledTaskQueue;
 import com.my.netty.core.reactor.exception.MyNettyException;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipelineSupplier;
 import org.slf4j.Logger;
@@ -15,27 +20,168 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-public class MyNioEventLoop implements Executor {
+public class MyNioEventLoop implements MyEventExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(MyNioEventLoop.class);
 
     /**
      * 原始的jdk中的selector
      * */
-    private final Selector unwrappedSelector;
+    private volatile Selector unwrappedSelector;
 
-    private final Queue<Runnable> taskQueue = new LinkedBlockingQueue<>(256);
+    /**
+     * 替换了jdk selector内部HashSet后的selectedKeys集合，为null代表未开启优化(或者优化失败)
+     * */
+    private MySelectedSelectionKeySet selectedKeys;
+
+    /**
+     * 任务队列(多生产者单消费者)，默认为jctools的无锁mpsc队列
+     * */
+    private final Queue<Runnable> taskQueue;
+
+    private final MyRejectedExecutionHandler rejectedExecutionHandler;
+
+    /**
+     * 定时任务队列，只由当前eventLoop线程访问
+     * */
+    private final MyScheduledTaskQueue scheduledTaskQueue = new MyScheduledTaskQueue(11);
+
+    /**
+     * 定时任务的id生成器，只由当前eventLoop线程访问
+     * */
+    private long nextTaskId;
+
+    /**
+     * eventLoop线程处于非阻塞(未在select中等待)状态
+     * */
+    private static final long AWAKE = -1L;
+
+    /**
+     * eventLoop线程在select中无限期阻塞(没有定时任务)
+     * */
+    private static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * 参考netty的nextWakeupNanos，作为唤醒selector的CAS门闩
+     *
+     * AWAKE：eventLoop线程是醒着的，外部线程提交任务时不需要调用selector.wakeup
+     * 其它值：eventLoop线程正阻塞在select中(值为select超时的deadline)，第一个把它改为AWAKE的外部线程负责执行wakeup
+     *
+     * 这样在eventLoop一次阻塞期间，无论外部线程提交了多少任务，都只会有一次wakeup系统调用(eventfd/pipe写入)
+     * */
+    private final AtomicLong nextWakeupNanos = new AtomicLong(AWAKE);
+
+    /**
+     * 外部线程提交的任务数
+     * */
+    private final LongAdder externalTaskCount = new LongAdder();
+
+    /**
+     * 实际执行的selector.wakeup次数
+     * */
+    private final LongAdder wakeupCount = new LongAdder();
+
+    /**
+     * 每执行多少个任务检查一次是否超过了runAllTasks的时间预算(nanoTime也是有开销的，不宜每个任务都检查)
+     * */
+    private static final int RUN_TASKS_CHECK_DEADLINE_INTERVAL = 64;
+
+    /**
+     * 一次事件循环中，处理io事件的时间占总时间的百分比(1-100)
+     * */
+    private volatile int ioRatio;
+
+    /**
+     * 时间窗口内select提前返回(没有io事件、没有任务、也没有到超时时间、也不是被wakeup唤醒的)的次数，用于检测jdk的epoll空轮询bug
+     * 只由eventLoop线程更新，其它线程通过getPrematureSelectReturnRate读取
+     * */
+    private volatile int prematureSelectReturns;
+
+    /**
+     * 当前检测窗口的起始时间(只由eventLoop线程更新)
+     * */
+    private volatile long prematureWindowStartNanos;
+
+    /**
+     * 累计的select提前返回次数(空轮询次数)
+     * */
+    private volatile long totalPrematureSelectReturns;
+
+    /**
+     * 累计重建selector的次数
+     * */
+    private volatile long selectorRebuildCount;
+
+    /**
+     * 当前注册在(或正在注册到)该eventLoop上的channel数量，用于基于负载的eventLoop选择
+     * */
+    private final AtomicInteger registeredChannels = new AtomicInteger();
+
+    /**
+     * eventLoop线程累计的繁忙时间，只由eventLoop线程更新
+     * */
+    private volatile long busyNanos;
+
+    /**
+     * channel迁入/迁出的次数
+     * */
+    private final LongAdder migratedInChannels = new LongAdder();
+    private final LongAdder migratedOutChannels = new LongAdder();
+
+    /**
+     * accept的连接总数
+     * */
+    private final LongAdder acceptedChannels = new LongAdder();
+
+    /**
+     * eventLoop的生命周期状态(参考netty的SingleThreadEventExecutor)
+     * */
+    private static final int ST_NOT_STARTED = 1;
+    private static final int ST_STARTED = 2;
+    private static final int ST_SHUTTING_DOWN = 3;
+    private static final int ST_SHUTDOWN = 4;
+    private static final int ST_TERMINATED = 5;
+
+    /**
+     * 优雅关闭时，即使没有任何io事件，也至少每隔这么久醒来一次检查是否可以结束了
+     * */
+    private static final long SHUTDOWN_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicInteger state = new AtomicInteger(ST_NOT_STARTED);
+
+    /**
+     * 优雅关闭的静默期，静默期内没有新任务提交才会真正关闭
+     * */
+    private volatile long gracefulShutdownQuietPeriod;
+
+    /**
+     * 优雅关闭的最大等待时间，超过后无论是否还有任务或者待写出的数据都会强制关闭
+     * */
+    private volatile long gracefulShutdownTimeout;
+
+    /**
+     * 开始优雅关闭的时间，以及最后一次执行任务的时间，只由eventLoop线程访问
+     * */
+    private long gracefulShutdownStartTime;
+    private long lastExecutionTime;
+
+    /**
+     * eventLoop线程完全终止(channel、selector都已关闭)时完成
+     * */
+    private final CompletableFuture<Void> terminationFuture = new CompletableFuture<>();
 
     private volatile Thread thread;
     private final MyNioEventLoopGroup childGroup;
 
-    private final AtomicBoolean threadStartedFlag = new AtomicBoolean(false);
-
     private MyChannelPipelineSupplier channelPipelineSupplier;
 
     private DefaultChannelConfig defaultChannelConfig;
@@ -47,46 +193,262 @@ public class MyNioEventLoop implements Executor {
     public MyNioEventLoop(MyNioEventLoopGroup childGroup, DefaultChannelConfig defaultChannelConfig) {
         this.childGroup = childGroup;
 
-        SelectorProvider selectorProvider = SelectorProvider.provider();
-        try {
-            this.unwrappedSelector = selectorProvider.openSelector();
-        } catch (IOException e) {
-            throw new MyNettyException("open selector error!",e);
-        }
-
         this.defaultChannelConfig = defaultChannelConfig;
+
+        // 打开selector
+        openSelector();
+
+        this.taskQueue = defaultChannelConfig.getTaskQueueFactory().newTaskQueue(defaultChannelConfig.getMaxPendingTasks());
+        this.rejectedExecutionHandler = defaultChannelConfig.getRejectedExecutionHandler();
+        this.ioRatio = defaultChannelConfig.getIoRatio();
     }
 
     @Override
     public void execute(Runnable task) {
+        if(isShutdown()){
+            // 已经完成了优雅关闭的所有步骤，不再接收新任务
+            throw new RejectedExecutionException("event executor terminated");
+        }
+
         // 将任务加入eventLoop所属的任务队列，事件循环中线程的无限会把任务捞起来处理
-        taskQueue.add(task);
+        if(!offerTask(task)){
+            // 有界队列已满，交给拒绝策略处理
+            rejectedExecutionHandler.rejected(task,this);
+        }
 
         if(this.thread != Thread.currentThread()){
             // 如果执行execute方法的线程不是当前线程，可能当前eventLoop对应的thread还没有启动
             // 尝试启动当前eventLoop对应的线程(cas防并发，避免重复启动新线程)
-            if(threadStartedFlag.compareAndSet(false,true)){
-                // 类似netty的ThreadPerTaskExecutor,启动一个线程来执行事件循环
-                // 使用自定义的Thread，能够更好的使用FastThreadLocal
-                Thread newThread = this.defaultChannelConfig.getDefaultThreadFactory().newThread(()->{
-                    // 将eventLoop的thread与新启动的这个thread进行绑定
-                    this.thread = Thread.currentThread();
-
-                    // 执行监听selector的事件循环
-                    doEventLoop();
-                });
-                newThread.start();
+            if(state.get() == ST_NOT_STARTED && state.compareAndSet(ST_NOT_STARTED,ST_STARTED)){
+                doStartThread();
             }
         }
 
         boolean inEventLoop = inEventLoop();
         if(!inEventLoop){
+            externalTaskCount.increment();
+
             // 因为eventLoop中selector.select是阻塞等待的，如果是别的线程提交了任务
             // 要尝试把当前eventLoop对应的线程唤醒，令其能去执行队列里的任务
+            wakeup();
+        }
+    }
+
+    private void doStartThread(){
+        // 类似netty的ThreadPerTaskExecutor,启动一个线程来执行事件循环
+        // 使用自定义的Thread，能够更好的使用FastThreadLocal
+        Thread newThread = this.defaultChannelConfig.getDefaultThreadFactory().newThread(()->{
+            // 将eventLoop的thread与新启动的这个thread进行绑定
+            this.thread = Thread.currentThread();
+
+            // 执行监听selector的事件循环
+            doEventLoop();
+        });
+        newThread.start();
+    }
+
+    /**
+     * 优雅关闭当前eventLoop
+     *
+     * 1. 停止accept新连接(关闭注册在当前eventLoop上的serverSocketChannel)
+     * 2. 继续执行任务队列中的任务，并将所有channel的outboundBuffer中积压的数据flush出去
+     * 3. 任务都执行完毕、积压数据都写出完毕，且静默期(quietPeriod)内没有新的任务提交后，关闭所有的channel以及selector，eventLoop线程退出
+     * 4. 如果超过了timeout依然没有满足条件，则强制执行第3步中的关闭操作
+     *
+     * @return 当eventLoop线程完全终止时完成的future
+     * */
+    public CompletableFuture<Void> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit){
+        if (quietPeriod < 0) {
+            throw new IllegalArgumentException("quietPeriod: " + quietPeriod + " (expected >= 0)");
+        }
+        if (timeout < quietPeriod) {
+            throw new IllegalArgumentException(
+                "timeout: " + timeout + " (expected >= quietPeriod (" + quietPeriod + "))");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        for(;;){
+            int oldState = state.get();
+            if(oldState >= ST_SHUTTING_DOWN){
+                // 已经在关闭中了
+                return terminationFuture;
+            }
+
+            // 先设置参数，再修改状态，保证eventLoop线程看到关闭状态时一定能看到对应的参数
+            this.gracefulShutdownQuietPeriod = unit.toNanos(quietPeriod);
+            this.gracefulShutdownTimeout = unit.toNanos(timeout);
+
+            if(state.compareAndSet(oldState,ST_SHUTTING_DOWN)){
+                if(oldState == ST_NOT_STARTED){
+                    // 线程还没启动过，启动线程，由其完成selector等资源的释放
+                    doStartThread();
+                }else{
+                    // 唤醒可能阻塞在select中的eventLoop线程，令其尽快开始关闭流程
+                    wakeup();
+                }
+                return terminationFuture;
+            }
+        }
+    }
+
+    /**
+     * 是否已经开始了优雅关闭
+     * */
+    public boolean isShuttingDown(){
+        return state.get() >= ST_SHUTTING_DOWN;
+    }
+
+    /**
+     * 是否已经不再接收新的任务
+     * */
+    public boolean isShutdown(){
+        return state.get() >= ST_SHUTDOWN;
+    }
+
+    /**
+     * eventLoop线程是否已经完全终止
+     * */
+    public boolean isTerminated(){
+        return state.get() == ST_TERMINATED;
+    }
+
+    public CompletableFuture<Void> terminationFuture(){
+        return terminationFuture;
+    }
+
+    /**
+     * 唤醒阻塞在select中的eventLoop线程
+     *
+     * 只有eventLoop进入select阻塞后的第一次调用会真正执行selector.wakeup，后续的调用直到eventLoop醒来前都会被CAS门闩过滤掉
+     * */
+    public void wakeup(){
+        if(!inEventLoop() && nextWakeupNanos.getAndSet(AWAKE) != AWAKE){
+            wakeupCount.increment();
             this.unwrappedSelector.wakeup();
         }
     }
 
+    /**
+     * 外部线程提交的任务总数
+     * */
+    public long getExternalTaskCount(){
+        return externalTaskCount.sum();
+    }
+
+    /**
+     * 实际执行selector.wakeup的总次数，与externalTaskCount对比即可知道CAS门闩节约了多少次系统调用
+     * */
+    public long getWakeupCount(){
+        return wakeupCount.sum();
+    }
+
+    /**
+     * 尝试将任务加入任务队列，队列已满时返回false
+     * */
+    public boolean offerTask(Runnable task){
+        if(task == null){
+            throw new NullPointerException("task");
+        }
+        return taskQueue.offer(task);
+    }
+
+    /**
+     * 当前任务队列中待执行的任务数(mpsc队列的size是一个近似值)
+     * */
+    public int pendingTasks(){
+        return taskQueue.size();
+    }
+
+    /**
+     * 提交一个延迟执行的定时任务，任务会在当前eventLoop线程中执行
+     * */
+    public MyScheduledFutureTask schedule(Runnable command, long delay, TimeUnit unit) {
+        if(delay < 0){
+            delay = 0;
+        }
+        return schedule(new MyScheduledFutureTask(
+            this, command, MyScheduledFutureTask.deadlineNanos(unit.toNanos(delay)), 0));
+    }
+
+    /**
+     * 提交一个以固定频率重复执行的定时任务
+     * */
+    public MyScheduledFutureTask scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if(period <= 0){
+            throw new IllegalArgumentException(String.format("period: %d (expected: > 0)", period));
+        }
+        return schedule(new MyScheduledFutureTask(
+            this, command, MyScheduledFutureTask.deadlineNanos(unit.toNanos(Math.max(initialDelay, 0))), unit.toNanos(period)));
+    }
+
+    /**
+     * 提交一个以固定延迟重复执行的定时任务(上一次执行完成后，再延迟delay执行下一次)
+     * */
+    public MyScheduledFutureTask scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if(delay <= 0){
+            throw new IllegalArgumentException(String.format("delay: %d (expected: > 0)", delay));
+        }
+        return schedule(new MyScheduledFutureTask(
+            this, command, MyScheduledFutureTask.deadlineNanos(unit.toNanos(Math.max(initialDelay, 0))), -unit.toNanos(delay)));
+    }
+
+    private MyScheduledFutureTask schedule(MyScheduledFutureTask task) {
+        if(inEventLoop()){
+            scheduleFromEventLoop(task);
+        }else{
+            // 定时任务队列只能由eventLoop线程访问，外部线程提交的定时任务先通过普通任务转交给eventLoop线程
+            // 唤醒后eventLoop会基于最新的定时任务队列重新计算select的超时时间
+            execute(()->scheduleFromEventLoop(task));
+        }
+        return task;
+    }
+
+    /**
+     * 将定时任务加入定时任务队列(只能在eventLoop线程中调用)
+     * */
+    public void scheduleFromEventLoop(MyScheduledFutureTask task) {
+        if(task.isCancelled()){
+            return;
+        }
+        scheduledTaskQueue.add(task.setId(++nextTaskId));
+    }
+
+    /**
+     * 将已取消的定时任务从定时任务队列中移除
+     * */
+    public void removeScheduled(MyScheduledFutureTask task) {
+        if(inEventLoop()){
+            scheduledTaskQueue.remove(task);
+        }else{
+            execute(()->scheduledTaskQueue.remove(task));
+        }
+    }
+
+    /**
+     * 当前定时任务队列中的任务数(只能在eventLoop线程中调用)
+     * */
+    public int scheduledTasks(){
+        return scheduledTaskQueue.size();
+    }
+
+    public int getIoRatio() {
+        return ioRatio;
+    }
+
+    /**
+     * 设置一次事件循环中处理io事件的时间占比，默认为50，即处理io和处理任务的时间各占一半
+     * 设置为100时，不再限制执行任务的时间，每次都会把任务队列里的任务全部执行完
+     * */
+    public void setIoRatio(int ioRatio) {
+        if (ioRatio <= 0 || ioRatio > 100) {
+            throw new IllegalArgumentException("ioRatio: " + ioRatio + " (expected: 0 < ioRatio <= 100)");
+        }
+        this.ioRatio = ioRatio;
+    }
+
+    @Override
     public boolean inEventLoop(){
         return this.thread == Thread.currentThread();
     }
@@ -99,96 +461,693 @@ public class MyNioEventLoop implements Executor {
         this.channelPipelineSupplier = channelPipelineSupplier;
     }
 
+    /**
+     * 将channel注册到当前eventLoop上，如果当前线程不是eventLoop线程，则提交一个注册任务
+     * */
     public void register(MyNioChannel myNioChannel){
-        doRegister(this,myNioChannel);
+        // 在提交注册任务前就计数，避免连接建立的高峰期，注册任务还未执行时负载选择器无法感知到新分配的连接
+        registeredChannels.incrementAndGet();
+
+        if(inEventLoop()){
+            doRegister(this,myNioChannel);
+        }else{
+            try {
+                execute(()-> doRegister(this,myNioChannel));
+            }catch (RejectedExecutionException e){
+                // eventLoop已经关闭，注册任务不会被执行
+                registeredChannels.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 将channel从当前eventLoop上注销(只能在eventLoop线程中调用)
+     * */
+    public void deregister(MyNioChannel myNioChannel){
+        SelectionKey selectionKey = myNioChannel.getSelectionKey();
+        if(selectionKey != null){
+            selectionKey.cancel();
+        }
+        registeredChannels.decrementAndGet();
+    }
+
+    /**
+     * 当前注册在该eventLoop上的channel数量
+     * */
+    public int registeredChannels(){
+        return registeredChannels.get();
+    }
+
+    /**
+     * 将一个注册在当前eventLoop上的channel迁移到另一个eventLoop上，outboundBuffer中积压的数据、监听的事件都会保留
+     *
+     * 迁移分两个阶段：
+     * 1. 在当前(原)eventLoop线程中校验参数，然后将交接任务重新提交到当前eventLoop的任务队列中，排在迁移前已经提交的任务之后
+     *    (保证迁移前提交的针对该channel的事件依然在原eventLoop中按顺序处理完，并且不需要在任务/io事件的处理过程中重入runAllTasks)
+     * 2. 交接任务执行时，取消原selector上的key，向目标eventLoop提交注册任务，最后再把channel绑定的eventLoop切换为目标eventLoop；
+     *    目标eventLoop线程中，以原来的interestOps将channel注册到目标selector上
+     *
+     * 注册任务先于channel的切换提交，因此切换后其它线程提交给目标eventLoop的、针对该channel的任务一定排在注册任务之后。
+     * 而与切换并发、依然被提交到了原eventLoop中的任务，在执行前会发现channel已经不属于原eventLoop了，从而转交给目标eventLoop
+     * (pipeline事件见MyAbstractChannelHandlerContext.safeExecute，channel的内部任务见MyNioChannel.executeInEventLoop)
+     *
+     * @return 在目标eventLoop上注册成功后完成的future
+     * */
+    public CompletableFuture<Void> migrate(MyNioChannel myNioChannel, MyNioEventLoop target){
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if(target == this){
+            future.complete(null);
+            return future;
+        }
+
+        if(inEventLoop()){
+            doMigrate(myNioChannel,target,future);
+        }else{
+            execute(()-> doMigrate(myNioChannel,target,future));
+        }
+        return future;
+    }
+
+    private void doMigrate(MyNioChannel myNioChannel, MyNioEventLoop target, CompletableFuture<Void> future){
+        if(myNioChannel.getMyNioEventLoop() != this){
+            future.completeExceptionally(new MyNettyException("channel is not registered on this eventLoop, channel=" + myNioChannel));
+            return;
+        }
+        if(target.isShuttingDown()){
+            future.completeExceptionally(new MyNettyException("target eventLoop is shutting down"));
+            return;
+        }
+
+        // 第一阶段，交接任务重新入队，等迁移前已经提交的任务都执行完之后再进行交接
+        try {
+            execute(()-> handOffMigrate(myNioChannel,target,future));
+        }catch (RejectedExecutionException e){
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void handOffMigrate(MyNioChannel myNioChannel, MyNioEventLoop target, CompletableFuture<Void> future){
+        if(myNioChannel.getMyNioEventLoop() != this){
+            // 排队期间channel已经被迁移走了
+            future.completeExceptionally(new MyNettyException("channel is not registered on this eventLoop, channel=" + myNioChannel));
+            return;
+        }
+        if(target.isShuttingDown()){
+            future.completeExceptionally(new MyNettyException("target eventLoop is shutting down"));
+            return;
+        }
+
+        SelectionKey oldKey = myNioChannel.getSelectionKey();
+        if(!myNioChannel.isRegistered() || oldKey == null || !oldKey.isValid()){
+            // 执行任务的过程中channel可能被关闭了
+            future.completeExceptionally(new MyNettyException("channel is not registered, channel=" + myNioChannel));
+            return;
+        }
+
+        int interestOps = oldKey.interestOps();
+        if(myNioChannel.hasPendingWrites()){
+            // 还有积压的数据，在新的eventLoop中需要继续监听OP_WRITE事件将其写出
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        final int migrateInterestOps = interestOps;
+
+        // 从原selector上注销
+        oldKey.cancel();
+        myNioChannel.setRegistered(false);
+        registeredChannels.decrementAndGet();
+
+        target.registeredChannels.incrementAndGet();
+        try {
+            target.execute(()->{
+                // 第二阶段，在目标eventLoop中注册
+                target.doRegister(target,myNioChannel,migrateInterestOps);
+                if(myNioChannel.isRegistered()){
+                    target.migratedInChannels.increment();
+                    future.complete(null);
+                }else{
+                    future.completeExceptionally(new MyNettyException("channel register to target eventLoop error, channel=" + myNioChannel));
+                }
+            });
+        }catch (RejectedExecutionException e){
+            // 目标eventLoop拒绝了注册任务(比如刚好开始关闭)，重新注册回当前eventLoop
+            target.registeredChannels.decrementAndGet();
+            registeredChannels.incrementAndGet();
+            doRegister(this,myNioChannel,migrateInterestOps);
+            future.completeExceptionally(e);
+            return;
+        }
+
+        // 切换channel绑定的eventLoop，之后针对该channel的任务都会提交给目标eventLoop
+        myNioChannel.setMyNioEventLoop(target);
+        migratedOutChannels.increment();
+    }
+
+    /**
+     * eventLoop线程累计的繁忙时间(处理io事件与执行任务的时间，不包括阻塞在select上的时间)
+     * */
+    public long getBusyNanos(){
+        return busyNanos;
+    }
+
+    /**
+     * 累计accept的连接总数
+     * */
+    public long getAcceptedChannels(){
+        return acceptedChannels.sum();
+    }
+
+    /**
+     * 从其它eventLoop迁入的channel总数
+     * */
+    public long getMigratedInChannels(){
+        return migratedInChannels.sum();
+    }
+
+    /**
+     * 迁出到其它eventLoop的channel总数
+     * */
+    public long getMigratedOutChannels(){
+        return migratedOutChannels.sum();
     }
 
     private void doEventLoop(){
-        // 事件循环
-        for(;;){
-            try{
-                if(taskQueue.isEmpty()){
-                    int keys = unwrappedSelector.select();
-                    if (keys == 0) {
-                        continue;
+        try {
+            // 事件循环
+            for(;;){
+                runEventLoopOnce();
+
+                try {
+                    if(isShuttingDown() && confirmShutdown()){
+                        // 优雅关闭的条件已经满足，退出事件循环
+                        break;
                     }
-                }else{
-                    // 确保任务队列里的任务能够被触发
-                    unwrappedSelector.selectNow();
+                }catch (Throwable e){
+                    logger.error("event loop confirm shutdown error!",e);
+                }
+            }
+        } finally {
+            cleanupAndTerminate();
+        }
+    }
+
+    private void runEventLoopOnce(){
+        try{
+            int readyKeys = 0;
+            if(taskQueue.isEmpty()){
+                // 没有普通任务需要执行，基于最近的一个定时任务的deadline计算出select阻塞的超时时间
+                // 保证定时任务能够按时在eventLoop线程中执行，而不需要额外的线程去唤醒
+                MyScheduledFutureTask scheduledTask = scheduledTaskQueue.peek();
+                long curDeadlineNanos = scheduledTask == null ? NONE : scheduledTask.deadlineNanos();
+                if(isShuttingDown()){
+                    // 关闭中，需要定期醒来检查静默期是否已过、积压的数据是否已经写完
+                    curDeadlineNanos = Math.min(curDeadlineNanos, MyScheduledFutureTask.nanoTime() + SHUTDOWN_CHECK_INTERVAL_NANOS);
                 }
 
-                // 简单起见，暂不实现基于时间等元素的更为公平的执行策略
-                // 直接先处理io，再处理所有task(ioRatio=100), netty默认ioRatio=50(比如处理某个channel大量写出时，可以公平一点)
+                // 准备进入阻塞，打开唤醒门闩
+                nextWakeupNanos.set(curDeadlineNanos);
+                boolean selected = false;
+                boolean wokenUp = false;
+                try {
+                    // 再检查一次，避免在打开门闩之前外部线程提交了任务(当时门闩为AWAKE，没有wakeup)而导致任务被延迟执行
+                    if(taskQueue.isEmpty()){
+                        readyKeys = select(curDeadlineNanos);
+                        selected = true;
+                    }
+                }finally {
+                    // eventLoop已经醒来，关闭门闩，后续外部线程提交任务时不需要再wakeup
+                    // 如果门闩已经被外部线程关闭了，说明是被wakeup唤醒的
+                    wokenUp = nextWakeupNanos.getAndSet(AWAKE) == AWAKE;
+                }
+
+                if(selected && readyKeys == 0 && !wokenUp && taskQueue.isEmpty()
+                    && MyScheduledFutureTask.nanoTime() < curDeadlineNanos){
+                    // 没有任何理由的提前返回，可能是触发了jdk的epoll空轮询bug
+                    if(onPrematureSelectReturn()){
+                        // selector已经被重建了，直接开始下一轮循环
+                        return;
+                    }
+                }
+            }else{
+                // 确保任务队列里的任务能够被触发
+                readyKeys = unwrappedSelector.selectNow();
+            }
+
+            // select返回之后的时间都算作eventLoop的繁忙时间
+            final long busyStartNanos = System.nanoTime();
+
+            // 参考netty，基于ioRatio对处理io事件和处理任务的时间进行分配
+            // 避免大量的任务导致io事件得不到及时的处理，或者大量的io事件导致任务得不到及时的处理
+            final int ioRatio = this.ioRatio;
+            if(ioRatio == 100){
                 try {
                     // 处理监听到的io事件
                     processSelectedKeys();
                 }finally {
                     // Ensure we always run tasks.
-                    // 处理task队列里的任务
+                    // 处理task队列里的全部任务(包括已经到期的定时任务)
                     runAllTasks();
                 }
-            }catch (Throwable e){
-                logger.error("server event loop error!",e);
+            }else if(readyKeys > 0){
+                final long ioStartTime = System.nanoTime();
+                try {
+                    // 处理监听到的io事件
+                    processSelectedKeys();
+                }finally {
+                    // Ensure we always run tasks.
+                    // 按照ioRatio，基于处理io事件所花费的时间计算出本轮执行任务的时间预算
+                    final long ioTime = System.nanoTime() - ioStartTime;
+                    runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
+                }
+            }else{
+                // 没有io事件，只执行最少数量的任务(RUN_TASKS_CHECK_DEADLINE_INTERVAL个)，然后马上回到select检查是否有io事件
+                runAllTasks(0);
             }
+
+            // 只有eventLoop线程会更新，不需要原子操作
+            busyNanos += System.nanoTime() - busyStartNanos;
+        }catch (Throwable e){
+            logger.error("server event loop error!",e);
         }
     }
 
-    private void processSelectedKeys() throws IOException {
-        // processSelectedKeysPlain
-        Iterator<SelectionKey> selectionKeyItr = unwrappedSelector.selectedKeys().iterator();
-        while (selectionKeyItr.hasNext()) {
-            SelectionKey key = selectionKeyItr.next();
-            logger.info("process SelectionKey={}",key.readyOps());
-            try {
-                // 拿出来后，要把集合中已经获取到的事件移除掉，避免重复的处理
-                selectionKeyItr.remove();
+    /**
+     * 检查优雅关闭的条件是否已经满足(参考netty的SingleThreadEventExecutor.confirmShutdown)
+     *
+     * @return true 可以退出事件循环了
+     * */
+    private boolean confirmShutdown(){
+        final long nanoTime = MyScheduledFutureTask.nanoTime();
+        if(gracefulShutdownStartTime == 0){
+            gracefulShutdownStartTime = nanoTime;
+            lastExecutionTime = nanoTime;
 
-                if (key.isConnectable()) {
-                    // 处理客户端连接建立相关事件
-                    processConnectEvent(key);
-                }
+            // 停止接收新的连接
+            closeServerChannels();
+            // 关闭流程中不再执行定时任务
+            cancelScheduledTasks();
+            // 将所有channel中已经写入但还没flush的数据flush出去
+            flushAllChannels();
+        }
 
-                if (key.isAcceptable()) {
-                    // 处理服务端accept事件（接受到来自客户端的连接请求）
-                    processAcceptEvent(key);
-                }
+        if(runAllTasks()){
+            // 定时任务可能是在关闭开始后才提交的，也一并取消掉
+            cancelScheduledTasks();
+            if(gracefulShutdownQuietPeriod == 0){
+                // 没有静默期，但积压的数据依然要写出完毕(或者超过了最大等待时间)才能退出
+                return !hasPendingWrites() || nanoTime - gracefulShutdownStartTime > gracefulShutdownTimeout;
+            }
+            return false;
+        }
+
+        if(nanoTime - gracefulShutdownStartTime > gracefulShutdownTimeout){
+            // 超过了最大等待时间，强制关闭
+            return true;
+        }
+
+        if(hasPendingWrites()){
+            // 还有积压的数据没写出完毕，等待OP_WRITE事件将其写出
+            return false;
+        }
 
-                if (key.isReadable()) {
-                    // 处理read事件
-                    processReadEvent(key);
+        // 静默期内有任务被执行过，继续等待，直到静默期内没有新的任务提交
+        return nanoTime - lastExecutionTime > gracefulShutdownQuietPeriod;
+    }
+
+    private void closeServerChannels(){
+        for(SelectionKey key : unwrappedSelector.keys()){
+            if(key.channel() instanceof ServerSocketChannel){
+                key.cancel();
+                try {
+                    key.channel().close();
+                    logger.info("eventLoop shutting down, close serverSocketChannel={}",key.channel());
+                } catch (IOException e) {
+                    logger.warn("Failed to close a serverSocketChannel.", e);
                 }
+            }
+        }
+    }
 
-                if(key.isWritable()){
-                    // 处理OP_WRITE事件（setOpWrite中注册的）
-                    processWriteEvent(key);
+    private void cancelScheduledTasks(){
+        MyScheduledFutureTask scheduledTask;
+        while ((scheduledTask = scheduledTaskQueue.poll()) != null){
+            scheduledTask.cancel(false);
+        }
+    }
+
+    private void flushAllChannels(){
+        for(SelectionKey key : unwrappedSelector.keys()){
+            Object attachment = key.attachment();
+            if(key.isValid() && attachment instanceof MyNioChannel){
+                ((MyNioChannel) attachment).flushPendingWrites();
+            }
+        }
+    }
+
+    private boolean hasPendingWrites(){
+        for(SelectionKey key : unwrappedSelector.keys()){
+            Object attachment = key.attachment();
+            if(key.isValid() && attachment instanceof MyNioChannel && ((MyNioChannel) attachment).hasPendingWrites()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 关闭所有的channel以及selector，并将eventLoop标记为已终止
+     * */
+    private void cleanupAndTerminate(){
+        // 不再接收新的任务
+        for(;;){
+            int oldState = state.get();
+            if(oldState >= ST_SHUTDOWN || state.compareAndSet(oldState,ST_SHUTDOWN)){
+                break;
+            }
+        }
+
+        try {
+            closeAll();
+
+            // 执行关闭channel过程中产生的任务(在state设置为ST_SHUTDOWN前提交的任务也一并执行掉)
+            runAllTasks();
+        } catch (Throwable e){
+            logger.error("eventLoop close all channel error!",e);
+        } finally {
+            try {
+                unwrappedSelector.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close the selector.", e);
+            }
+
+            state.set(ST_TERMINATED);
+
+            int remainTasks = taskQueue.size();
+            if(remainTasks > 0){
+                logger.warn("An event executor terminated with non-empty task queue ({})", remainTasks);
+            }
+
+            logger.info("eventLoop terminated! eventLoop={}",this);
+            terminationFuture.complete(null);
+        }
+    }
+
+    private void closeAll(){
+        for(SelectionKey key : unwrappedSelector.keys()){
+            Object attachment = key.attachment();
+            if(attachment instanceof MyNioChannel){
+                MyNioChannel myNioChannel = (MyNioChannel) attachment;
+                try {
+                    // 先走pipeline的close，让handler感知到关闭
+                    myNioChannel.getChannelPipeline().close();
+                } catch (Throwable e){
+                    logger.warn("Failed to close a channel by pipeline. channel={}",myNioChannel,e);
                 }
-            }catch (Throwable e){
-                logger.error("server event loop process an selectionKey error!",e);
 
-                // 处理io事件有异常，取消掉监听的key，并且尝试把channel也关闭掉
+                try {
+                    // 兜底，确保底层连接一定被关闭(close操作可能被handler拦截或者转交到了其它执行器)
+                    myNioChannel.doClose();
+                } catch (IOException e) {
+                    logger.warn("Failed to close a channel. channel={}",myNioChannel,e);
+                }
+            }else{
                 key.cancel();
-                if(key.channel() != null){
-                    logger.error("has error, close channel={} ",key.channel());
+                try {
                     key.channel().close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close a channel.", e);
                 }
+            }
+        }
+    }
 
-                Object attachment = key.attachment();
-                if(attachment != null){
-                    // 目前所有的attachment都是MyNioChannel
-                    MyNioSocketChannel myNioSocketChannel = (MyNioSocketChannel)attachment;
-                    myNioSocketChannel.getChannelPipeline().close();
+    /**
+     * 记录一次select的提前返回，时间窗口内的次数超过阈值时重建selector
+     *
+     * @return 是否重建了selector
+     * */
+    private boolean onPrematureSelectReturn() {
+        totalPrematureSelectReturns++;
+
+        // 关闭了自动重建时也要按窗口计数，getPrematureSelectReturnRate依赖该计数
+        long now = System.nanoTime();
+        int returns = prematureSelectReturns;
+        if(returns == 0
+            || now - prematureWindowStartNanos > TimeUnit.MILLISECONDS.toNanos(defaultChannelConfig.getSelectorSpinWindowMillis())){
+            // 开启一个新的检测窗口
+            prematureWindowStartNanos = now;
+            returns = 0;
+        }
+        prematureSelectReturns = ++returns;
+
+        final int threshold = defaultChannelConfig.getSelectorAutoRebuildThreshold();
+        if(threshold <= 0){
+            // 关闭了自动重建
+            return false;
+        }
+
+        if(returns >= threshold){
+            // The selector returned prematurely many times in a row.
+            // Rebuild the selector to work around the problem.
+            logger.warn("Selector.select() returned prematurely {} times in a row; rebuilding Selector {}.",
+                returns, unwrappedSelector);
+
+            prematureSelectReturns = 0;
+            rebuildSelector();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * 重建selector，将旧selector上注册的所有channel(包括其attachment以及interestOps)都转移到新的selector上
+     * (参考自netty的NioEventLoop.rebuildSelector0)
+     * */
+    private void rebuildSelector() {
+        final Selector oldSelector = this.unwrappedSelector;
+        try {
+            openSelector();
+        } catch (Exception e) {
+            // 新的selector打开失败，继续使用旧的
+            logger.warn("Failed to create a new Selector.", e);
+            return;
+        }
+
+        final Selector newSelector = this.unwrappedSelector;
+
+        // Register all channels to the new Selector.
+        int nChannels = 0;
+        for (SelectionKey key: oldSelector.keys()) {
+            Object attachment = key.attachment();
+            try {
+                if (!key.isValid() || key.channel().keyFor(newSelector) != null) {
+                    continue;
                 }
+
+                int interestOps = key.interestOps();
+                key.cancel();
+                SelectionKey newKey = key.channel().register(newSelector, interestOps, attachment);
+                if (attachment instanceof MyNioChannel) {
+                    // Update SelectionKey
+                    MyNioChannel myNioChannel = (MyNioChannel) attachment;
+                    myNioChannel.setSelector(newSelector);
+                    myNioChannel.setSelectionKey(newKey);
+                }
+                nChannels ++;
+            } catch (Exception e) {
+                logger.warn("Failed to re-register a Channel to the new Selector.", e);
+                if (attachment instanceof MyNioChannel) {
+                    ((MyNioChannel) attachment).getChannelPipeline().close();
+                } else {
+                    try {
+                        key.channel().close();
+                    } catch (IOException ex) {
+                        logger.warn("Failed to close a Channel.", ex);
+                    }
+                }
+            }
+        }
+
+        try {
+            // time to close the old selector as everything else is registered to the new one
+            oldSelector.close();
+        } catch (Throwable t) {
+            logger.warn("Failed to close the old Selector.", t);
+        }
+
+        selectorRebuildCount++;
+        logger.info("Migrated {} channel(s) to the new Selector.", nChannels);
+    }
+
+    private void openSelector() {
+        SelectorProvider selectorProvider = SelectorProvider.provider();
+        Selector selector;
+        try {
+            selector = selectorProvider.openSelector();
+        } catch (IOException e) {
+            throw new MyNettyException("open selector error!",e);
+        }
+
+        if(defaultChannelConfig.isSelectedKeySetOptimization()){
+            // 尝试通过反射替换selector内部的selectedKeys集合，失败了就退化为使用jdk原生的HashSet
+            this.selectedKeys = MySelectorOptimizer.tryOptimize(selector);
+        }else{
+            this.selectedKeys = null;
+        }
+        this.unwrappedSelector = selector;
+    }
+
+    /**
+     * 累计的select提前返回(空轮询)次数，只增不减，需要监控系统自己做差值才能看出当前是否在空轮询
+     * */
+    public long getTotalPrematureSelectReturns() {
+        return totalPrematureSelectReturns;
+    }
+
+    /**
+     * 当前检测窗口(selectorSpinWindowMillis)内select提前返回的次数，按窗口长度换算为每秒的次数
+     *
+     * 窗口已经过期(最近一个窗口长度内没有再提前返回)或者刚重建了selector时为0，空轮询停止后会自动回落，可以直接用于监控告警
+     * */
+    public double getPrematureSelectReturnRate() {
+        final long windowNanos = TimeUnit.MILLISECONDS.toNanos(defaultChannelConfig.getSelectorSpinWindowMillis());
+        // 两个字段不是原子的读取，窗口切换的瞬间可能读到短暂不一致的值，对监控来说可以接受
+        final int returns = prematureSelectReturns;
+        final long windowStartNanos = prematureWindowStartNanos;
+        if(returns == 0 || System.nanoTime() - windowStartNanos > windowNanos){
+            return 0;
+        }
+        return returns * (double) TimeUnit.SECONDS.toNanos(1) / windowNanos;
+    }
+
+    /**
+     * 累计重建selector的次数
+     * */
+    public long getSelectorRebuildCount() {
+        return selectorRebuildCount;
+    }
+
+    private int select(long deadlineNanos) throws IOException {
+        if(deadlineNanos == NONE){
+            return unwrappedSelector.select();
+        }
+
+        long timeoutMillis = deadlineToDelayMillis(deadlineNanos);
+        if(timeoutMillis > 0){
+            return unwrappedSelector.select(timeoutMillis);
+        }else{
+            // 定时任务已经到期了，不阻塞
+            return unwrappedSelector.selectNow();
+        }
+    }
+
+    private void processSelectedKeys() throws IOException {
+        if(selectedKeys != null){
+            processSelectedKeysOptimized();
+        }else{
+            processSelectedKeysPlain();
+        }
+    }
+
+    private void processSelectedKeysPlain() throws IOException {
+        Iterator<SelectionKey> selectionKeyItr = unwrappedSelector.selectedKeys().iterator();
+        while (selectionKeyItr.hasNext()) {
+            SelectionKey key = selectionKeyItr.next();
+            // 拿出来后，要把集合中已经获取到的事件移除掉，避免重复的处理
+            selectionKeyItr.remove();
+
+            processSelectedKey(key);
+        }
+    }
+
+    private void processSelectedKeysOptimized() throws IOException {
+        int i = 0;
+        try {
+            // 按下标遍历数组，没有iterator对象的分配，也没有HashSet的remove开销
+            for (; i < selectedKeys.size; ++i) {
+                // null out entry in the array to allow to have it GC'ed once the Channel close
+                // See https://github.com/netty/netty/issues/2363
+                final SelectionKey key = selectedKeys.getAndClear(i);
+
+                processSelectedKey(key);
             }
+        }finally {
+            // 本轮就绪的key都处理完了，重置集合(异常退出时，剩余未处理的key在下一次select时会被重新选出)
+            selectedKeys.reset(i);
         }
     }
 
-    private void runAllTasks(){
+    private void processSelectedKey(SelectionKey key) throws IOException {
+        if(!key.isValid()){
+            // 同一轮中，key可能已经被前面的处理逻辑取消了(比如channel被关闭)
+            return;
+        }
+
+        logger.debug("process SelectionKey={}",key.readyOps());
+
+        Object channelAttachment = key.attachment();
+        if(channelAttachment instanceof MyNioChannel){
+            ((MyNioChannel) channelAttachment).incrementIoEventCount();
+        }
+        try {
+            if (key.isConnectable()) {
+                // 处理客户端连接建立相关事件
+                processConnectEvent(key);
+            }
+
+            if (key.isAcceptable()) {
+                // 处理服务端accept事件（接受到来自客户端的连接请求）
+                processAcceptEvent(key);
+            }
+
+            if (key.isReadable()) {
+                // 处理read事件
+                processReadEvent(key);
+            }
+
+            // 处理read事件时可能读到了EOF从而关闭了channel，此时key已经失效
+            if(key.isValid() && key.isWritable()){
+                // 处理OP_WRITE事件（setOpWrite中注册的）
+                processWriteEvent(key);
+            }
+        }catch (Throwable e){
+            logger.error("server event loop process an selectionKey error!",e);
+
+            // 处理io事件有异常，取消掉监听的key，并且尝试把channel也关闭掉
+            key.cancel();
+            if(key.channel() != null){
+                logger.error("has error, close channel={} ",key.channel());
+                key.channel().close();
+            }
+
+            Object attachment = key.attachment();
+            if(attachment instanceof MyNioChannel){
+                // serverSocketChannel的attachment是MyNioServerSocketChannel，不是MyNioChannel
+                ((MyNioChannel) attachment).getChannelPipeline().close();
+            }
+        }
+    }
+
+    /**
+     * @return 是否至少执行了一个任务
+     * */
+    private boolean runAllTasks(){
+        // 先将已经到期的定时任务转移到普通任务队列中，统一执行
+        fetchFromScheduledTaskQueue();
+
+        boolean ranAtLeastOne = false;
         for (;;) {
             // 通过无限循环，直到把队列里的任务全部捞出来执行掉
             Runnable task = taskQueue.poll();
             if (task == null) {
-                return;
+                if(ranAtLeastOne){
+                    // 记录最后一次执行任务的时间，用于判断优雅关闭的静默期
+                    this.lastExecutionTime = MyScheduledFutureTask.nanoTime();
+                }
+                return ranAtLeastOne;
             }
+            ranAtLeastOne = true;
 
             try {
                 task.run();
@@ -198,24 +1157,140 @@ public class MyNioEventLoop implements Executor {
         }
     }
 
-    private void processAcceptEvent(SelectionKey key) throws IOException {
-        ServerSocketChannel ssChannel = (ServerSocketChannel)key.channel();
+    /**
+     * 在timeoutNanos的时间预算内执行任务队列里的任务
+     * 每执行RUN_TASKS_CHECK_DEADLINE_INTERVAL个任务检查一次是否超时，超时了就先返回，剩下的任务留到下一轮事件循环中再执行
+     * */
+    private void runAllTasks(long timeoutNanos){
+        // 先将已经到期的定时任务转移到普通任务队列中，统一执行
+        fetchFromScheduledTaskQueue();
 
-        SocketChannel socketChannel = ssChannel.accept();
-        socketChannel.finishConnect();
-        logger.info("socketChannel={} finishConnect!",socketChannel);
+        Runnable task = taskQueue.poll();
+        if (task == null) {
+            return;
+        }
 
-        MyNioSocketChannel myNioSocketChannel = new MyNioSocketChannel(this.unwrappedSelector,socketChannel,channelPipelineSupplier,defaultChannelConfig);
-        if(this.childGroup != null){
-            // boss/worker模式，boss线程只负责接受和建立连接
-            // 将建立的连接交给child线程组去处理后续的读写
-            MyNioEventLoop childEventLoop = childGroup.next();
-            childEventLoop.execute(()->{
-                childEventLoop.register(myNioSocketChannel);
-            });
-        }else{
-            // 没有设置childGroup，就由bossGroup自己处理
-            doRegister(this,myNioSocketChannel);
+        // 基于MyScheduledFutureTask.nanoTime()(相对于类加载时间，不会为负)计算deadline；timeoutNanos为0时deadline即为当前时间，
+        // 每RUN_TASKS_CHECK_DEADLINE_INTERVAL个任务检查时必然已超时，只执行最少数量的任务
+        final long deadline = MyScheduledFutureTask.nanoTime() + Math.max(timeoutNanos, 0);
+        long runTasks = 0;
+        for (;;) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.warn("A task raised an exception. Task: {}", task, t);
+            }
+
+            runTasks ++;
+
+            // Check timeout every 64 tasks because nanoTime() is relatively expensive.
+            if ((runTasks % RUN_TASKS_CHECK_DEADLINE_INTERVAL) == 0) {
+                if (MyScheduledFutureTask.nanoTime() - deadline >= 0) {
+                    break;
+                }
+            }
+
+            task = taskQueue.poll();
+            if (task == null) {
+                break;
+            }
+        }
+
+        // 记录最后一次执行任务的时间，用于判断优雅关闭的静默期
+        this.lastExecutionTime = MyScheduledFutureTask.nanoTime();
+    }
+
+    private void fetchFromScheduledTaskQueue(){
+        if(scheduledTaskQueue.isEmpty()){
+            return;
+        }
+
+        long nanoTime = MyScheduledFutureTask.nanoTime();
+        for(;;){
+            MyScheduledFutureTask scheduledTask = scheduledTaskQueue.peek();
+            if(scheduledTask == null || scheduledTask.deadlineNanos() > nanoTime){
+                // 没有已到期的定时任务了
+                return;
+            }
+
+            scheduledTaskQueue.poll();
+            if(!taskQueue.offer(scheduledTask)){
+                // 普通任务队列已经满了，放回定时任务队列，等待下一次再转移
+                scheduledTaskQueue.add(scheduledTask);
+                return;
+            }
+        }
+    }
+
+    private static long deadlineToDelayMillis(long deadlineNanos){
+        long delayNanos = deadlineNanos - MyScheduledFutureTask.nanoTime();
+        if(delayNanos <= 0){
+            return 0;
+        }
+        // 向上取整，避免定时任务还差一点点到期时select(0)一直空转
+        return (delayNanos + 999999L) / 1000000L;
+    }
+
+    private void processAcceptEvent(SelectionKey key) {
+        // 只有MyNioServerBootstrap会注册OP_ACCEPT，其attachment为MyNioServerSocketChannel
+        MyNioServerSocketChannel myNioServerSocketChannel = (MyNioServerSocketChannel) key.attachment();
+        ServerSocketChannel ssChannel = myNioServerSocketChannel.getJavaChannel();
+
+        // 一次accept事件中尽量多的接受连接(连接风暴时，每次只accept一个连接会导致boss线程反复的select，跟不上建立连接的速度)
+        // 但最多只接受maxMessagesPerRead个，避免boss线程上的其它channel(或任务)得不到处理
+        final int maxMessagesPerRead = defaultChannelConfig.getMaxMessagesPerRead();
+        // bind时生成的childOptions快照
+        final Map<MyChannelOption<?>, Object> childOptions = myNioServerSocketChannel.getChildOptions();
+        for(int i=0; i<maxMessagesPerRead; i++){
+            SocketChannel socketChannel;
+            try {
+                socketChannel = ssChannel.accept();
+            } catch (IOException e) {
+                // 单个连接accept失败(比如文件句柄耗尽)，不能因此关闭serverSocketChannel，等待下一次accept事件再重试
+                logger.warn("Failed to accept a connection.", e);
+                break;
+            }
+
+            if(socketChannel == null){
+                // 已经没有待接受的连接了
+                break;
+            }
+
+            acceptedChannels.increment();
+            logger.debug("socketChannel={} accepted!",socketChannel);
+
+            MyNioSocketChannel myNioSocketChannel;
+            try {
+                myNioSocketChannel = new MyNioSocketChannel(this.unwrappedSelector,socketChannel,channelPipelineSupplier,defaultChannelConfig,childOptions);
+            } catch (Throwable t){
+                logger.warn("Failed to create a new channel from an accepted socket.", t);
+                try {
+                    socketChannel.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close a socket.", e);
+                }
+                continue;
+            }
+
+            if(this.childGroup != null){
+                // boss/worker模式，boss线程只负责接受和建立连接
+                // 将建立的连接交给child线程组去处理后续的读写
+                MyNioEventLoop childEventLoop = childGroup.next();
+                try {
+                    childEventLoop.register(myNioSocketChannel);
+                }catch (RejectedExecutionException e){
+                    // child eventLoop已经关闭，无法再处理该连接，直接关闭掉，避免socket泄露
+                    logger.warn("Failed to register an accepted channel, child eventLoop is terminated. socketChannel={}", socketChannel);
+                    try {
+                        socketChannel.close();
+                    } catch (IOException ex) {
+                        logger.warn("Failed to close a socket.", ex);
+                    }
+                }
+            }else{
+                // 没有设置childGroup，就由bossGroup自己处理
+                register(myNioSocketChannel);
+            }
         }
     }
 
@@ -230,6 +1305,9 @@ public class MyNioEventLoop implements Executor {
         if(socketChannel.finishConnect()){
             // 确认完成连接
             logger.info("client channel connected! socketChannel={}",socketChannel);
+
+            // 目前所有的attachment都是MyNioChannel
+            ((MyNioChannel) key.attachment()).onActive();
         }else{
             logger.error("client channel connect failed!");
             // 连接建立失败，连接关闭(上层catch住会关闭连接)
@@ -253,18 +1331,33 @@ public class MyNioEventLoop implements Executor {
     }
 
     private void doRegister(MyNioEventLoop myNioEventLoop, MyNioChannel myNioChannel){
+        // 新连接，开启了autoRead(默认开启)或者注册前已经显式调用过read()时，监听read事件
+        int interestOps = myNioChannel.isAutoRead() || myNioChannel.isReadPending() ? SelectionKey.OP_READ : 0;
+        doRegister(myNioEventLoop,myNioChannel,interestOps);
+
+        // 只有首次注册才触发生命周期事件，eventLoop之间的迁移对handler是透明的
+        if(myNioChannel.isRegistered()){
+            myNioChannel.onRegistered();
+        }
+    }
+
+    private void doRegister(MyNioEventLoop myNioEventLoop, MyNioChannel myNioChannel, int interestOps){
         try {
             // 与当前eventLoop绑定
             myNioChannel.setMyNioEventLoop(myNioEventLoop);
+            myNioChannel.setSelector(unwrappedSelector);
 
-            // 将接受到的连接注册到selector中，并监听read事件
+            // 将连接注册到selector中，并监听对应的事件
             // 并且将MyNioChannel这一channel的包装类作为附件与socketChannel进行绑定
-            SelectionKey selectionKey = myNioChannel.getJavaChannel().register(unwrappedSelector, SelectionKey.OP_READ, myNioChannel);
+            SelectionKey selectionKey = myNioChannel.getJavaChannel().register(unwrappedSelector, interestOps, myNioChannel);
             myNioChannel.setSelectionKey(selectionKey);
 
+            myNioChannel.setRegistered(true);
+
             logger.info("socketChannel={} register success! eventLoop={}",myNioChannel,this);
         }catch (Exception e){
             logger.error("register socketChannel={} error!",myNioChannel,e);
+            registeredChannels.decrementAndGet();
             try {
                 myNioChannel.getJavaChannel().close();
             } catch (IOException ex) {
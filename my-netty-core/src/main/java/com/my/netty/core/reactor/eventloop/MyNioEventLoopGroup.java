@@ -2,17 +2,26 @@ package com.my.netty.core.reactor.eventloop;
 
 
 import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.chooser.MyEventExecutorChooserFactory;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipelineSupplier;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class MyNioEventLoopGroup {
 
-    private final MyNioEventLoop[] executors;
+    /**
+     * 默认的优雅关闭静默期与超时时间(与netty保持一致)
+     * */
+    private static final long DEFAULT_SHUTDOWN_QUIET_PERIOD = 2;
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT = 15;
 
-    private final int nThreads;
+    private final MyNioEventLoop[] executors;
 
-    private final AtomicInteger atomicInteger = new AtomicInteger();
+    private final MyEventExecutorChooserFactory.MyEventExecutorChooser chooser;
 
     public MyNioEventLoopGroup(MyChannelPipelineSupplier myChannelPipelineSupplier, int nThreads, DefaultChannelConfig defaultChannelConfig) {
         this(myChannelPipelineSupplier,nThreads,null,defaultChannelConfig);
@@ -24,8 +33,6 @@ public class MyNioEventLoopGroup {
             throw new IllegalArgumentException("MyNioEventLoopGroup nThreads must > 0");
         }
 
-        this.nThreads = nThreads;
-
         // 基于参数，初始化对应数量的eventLoop
         executors = new MyNioEventLoop[nThreads];
         for(int i=0; i<nThreads; i++){
@@ -33,11 +40,59 @@ public class MyNioEventLoopGroup {
             myNioEventLoop.setMyChannelPipelineSupplier(myChannelPipelineSupplier);
             executors[i] = myNioEventLoop;
         }
+
+        // 基于配置的选择器工厂创建选择器
+        this.chooser = defaultChannelConfig.getEventExecutorChooserFactory().newChooser(executors);
+    }
+
+    /**
+     * group中所有的eventLoop(只读)
+     * */
+    public List<MyNioEventLoop> eventLoops(){
+        return Collections.unmodifiableList(Arrays.asList(executors));
     }
 
     public MyNioEventLoop next(){
-        // 轮训分摊负载
-        int index = atomicInteger.getAndIncrement() % nThreads;
-        return executors[index];
+        // 由选择器决定使用哪一个eventLoop(默认轮训分摊负载)
+        return chooser.next();
+    }
+
+    /**
+     * 以默认的静默期(2s)和超时时间(15s)优雅关闭
+     * */
+    public CompletableFuture<Void> shutdownGracefully(){
+        return shutdownGracefully(DEFAULT_SHUTDOWN_QUIET_PERIOD, DEFAULT_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 优雅关闭group中所有的eventLoop
+     *
+     * @return 所有eventLoop都终止后完成的future
+     * */
+    public CompletableFuture<Void> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit){
+        CompletableFuture<?>[] terminationFutures = new CompletableFuture<?>[executors.length];
+        for(int i=0; i<executors.length; i++){
+            terminationFutures[i] = executors[i].shutdownGracefully(quietPeriod,timeout,unit);
+        }
+
+        return CompletableFuture.allOf(terminationFutures);
+    }
+
+    public boolean isShuttingDown(){
+        for(MyNioEventLoop executor : executors){
+            if(!executor.isShuttingDown()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isTerminated(){
+        for(MyNioEventLoop executor : executors){
+            if(!executor.isTerminated()){
+                return false;
+            }
+        }
+        return true;
     }
 }
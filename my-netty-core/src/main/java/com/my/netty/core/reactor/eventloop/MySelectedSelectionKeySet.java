@@ -0,0 +1,100 @@
+package com.my.netty.core.reactor.eventloop;
+
+import java.nio.channels.SelectionKey;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于数组的selectedKeys集合(参考自netty的SelectedSelectionKeySet)
+ *
+ * jdk的selector内部用HashSet保存就绪的key，每次add都需要计算hash，迭代时还需要创建iterator并remove
+ * 通过反射替换为本集合后，add只是简单的数组追加，eventLoop中按下标遍历即可，没有额外的对象分配
+ * */
+public final class MySelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+
+    SelectionKey[] keys;
+    int size;
+
+    public MySelectedSelectionKeySet() {
+        keys = new SelectionKey[1024];
+    }
+
+    @Override
+    public boolean add(SelectionKey o) {
+        if (o == null) {
+            return false;
+        }
+
+        if (size == keys.length) {
+            increaseCapacity();
+        }
+
+        keys[size++] = o;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        // jdk的selector只会调用add方法，为了性能不实现contains
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+
+            @Override
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * 获得下标对应的key，并将对应的槽位置为null，便于gc回收已经关闭的channel
+     * */
+    public SelectionKey getAndClear(int index) {
+        SelectionKey key = keys[index];
+        keys[index] = null;
+        return key;
+    }
+
+    public void reset() {
+        reset(0);
+    }
+
+    public void reset(int start) {
+        Arrays.fill(keys, start, size, null);
+        size = 0;
+    }
+
+    private void increaseCapacity() {
+        keys = Arrays.copyOf(keys, keys.length << 1);
+    }
+}
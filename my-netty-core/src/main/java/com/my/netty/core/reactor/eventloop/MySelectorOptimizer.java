@@ -0,0 +1,138 @@
+package com.my.netty.core.reactor.eventloop;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.Selector;
+
+/**
+ * 通过反射将jdk selector内部的selectedKeys/publicSelectedKeys(HashSet)替换为基于数组的MySelectedSelectionKeySet
+ * (参考自netty NioEventLoop的openSelector方法)
+ *
+ * 1. sun.nio.ch包对当前代码开放时(jdk8，或者开启了--add-opens java.base/sun.nio.ch=ALL-UNNAMED)，直接通过setAccessible反射写入字段
+ * 2. 否则(jdk9+默认的模块化限制)，在jdk24之前尝试通过sun.misc.Unsafe写入字段；Unsafe也是反射获取的，编译期不依赖sun.misc包
+ *    jdk24起调用Unsafe的内存访问方法会在运行时打印警告(JEP 498)，因此不再使用
+ * 3. 都不可用时(或者selector的实现类不是sun.nio.ch.SelectorImpl)，放弃优化，退化为使用jdk原生的selectedKeys
+ *
+ * 由于依赖jdk内部实现，该优化默认是关闭的，见DefaultChannelConfig.selectedKeySetOptimization
+ * */
+public final class MySelectorOptimizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MySelectorOptimizer.class);
+
+    private static final int JAVA_VERSION = javaVersion();
+
+    private MySelectorOptimizer() { }
+
+    /**
+     * 尝试替换selector内部的selectedKeys集合
+     *
+     * @return 替换成功返回替换后的集合，否则返回null
+     * */
+    public static MySelectedSelectionKeySet tryOptimize(Selector selector) {
+        final Class<?> selectorImplClass;
+        final Field selectedKeysField;
+        final Field publicSelectedKeysField;
+        try {
+            selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!selectorImplClass.isAssignableFrom(selector.getClass())) {
+                logger.info("selector={} is not a sun.nio.ch.SelectorImpl, skip selectedKeys optimization", selector);
+                return null;
+            }
+
+            selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+            publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+        } catch (Throwable e) {
+            logger.info("failed to find selectedKeys field, skip selectedKeys optimization", e);
+            return null;
+        }
+
+        MySelectedSelectionKeySet selectedKeySet = new MySelectedSelectionKeySet();
+        if (isPackageOpen(selectorImplClass)) {
+            // 包是开放的，setAccessible不会触发illegal reflective access的警告
+            try {
+                selectedKeysField.setAccessible(true);
+                publicSelectedKeysField.setAccessible(true);
+
+                selectedKeysField.set(selector, selectedKeySet);
+                publicSelectedKeysField.set(selector, selectedKeySet);
+                return selectedKeySet;
+            } catch (Throwable e) {
+                logger.info("failed to instrument a special java.util.Set into: {}, skip selectedKeys optimization", selector, e);
+                return null;
+            }
+        }
+
+        if (JAVA_VERSION >= 24) {
+            logger.info("sun.nio.ch is not open and sun.misc.Unsafe is deprecated for removal, skip selectedKeys optimization. " +
+                "Add --add-opens java.base/sun.nio.ch=ALL-UNNAMED to enable it");
+            return null;
+        }
+
+        // Let us try to use sun.misc.Unsafe to replace the SelectionKeySet.
+        // This allows us to also do this in Java9+ without any extra flags.
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            Object unsafe = unsafeField.get(null);
+
+            Method objectFieldOffset = unsafeClass.getMethod("objectFieldOffset", Field.class);
+            Method putObject = unsafeClass.getMethod("putObject", Object.class, long.class, Object.class);
+
+            long selectedKeysFieldOffset = (long) objectFieldOffset.invoke(unsafe, selectedKeysField);
+            long publicSelectedKeysFieldOffset = (long) objectFieldOffset.invoke(unsafe, publicSelectedKeysField);
+            if (selectedKeysFieldOffset == -1 || publicSelectedKeysFieldOffset == -1) {
+                logger.info("invalid selectedKeys field offset, skip selectedKeys optimization");
+                return null;
+            }
+
+            putObject.invoke(unsafe, selector, selectedKeysFieldOffset, selectedKeySet);
+            putObject.invoke(unsafe, selector, publicSelectedKeysFieldOffset, selectedKeySet);
+            return selectedKeySet;
+        } catch (Throwable e) {
+            logger.info("failed to replace selectedKeys by unsafe, skip selectedKeys optimization", e);
+            return null;
+        }
+    }
+
+    /**
+     * clazz所在的包是否对当前类开放(允许深度反射)
+     *
+     * 编译目标是jdk8，没有Module类，只能通过反射调用
+     * */
+    private static boolean isPackageOpen(Class<?> clazz) {
+        if (JAVA_VERSION < 9) {
+            return true;
+        }
+
+        try {
+            Method getModule = Class.class.getMethod("getModule");
+            Object targetModule = getModule.invoke(clazz);
+            Object currentModule = getModule.invoke(MySelectorOptimizer.class);
+            Class<?> moduleClass = Class.forName("java.lang.Module");
+            Method isOpen = moduleClass.getMethod("isOpen", String.class, moduleClass);
+
+            String packageName = clazz.getName().substring(0, clazz.getName().lastIndexOf('.'));
+            return (boolean) isOpen.invoke(targetModule, packageName, currentModule);
+        } catch (Throwable e) {
+            logger.debug("failed to check whether package of {} is open", clazz, e);
+            return false;
+        }
+    }
+
+    private static int javaVersion() {
+        // jdk8为"1.8"，jdk9+为"9"、"17"等
+        String specVersion = System.getProperty("java.specification.version", "1.8");
+        try {
+            if (specVersion.startsWith("1.")) {
+                return Integer.parseInt(specVersion.substring(2));
+            }
+            return Integer.parseInt(specVersion);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.my.netty.core.reactor.eventloop.chooser;
+
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 默认的轮询选择器工厂(参考自netty的DefaultEventExecutorChooserFactory)
+ *
+ * eventLoop的数量是2的幂次方时，使用位运算代替取模运算
+ * */
+public final class MyDefaultEventExecutorChooserFactory implements MyEventExecutorChooserFactory {
+
+    public static final MyDefaultEventExecutorChooserFactory INSTANCE = new MyDefaultEventExecutorChooserFactory();
+
+    private MyDefaultEventExecutorChooserFactory() { }
+
+    @Override
+    public MyEventExecutorChooser newChooser(MyNioEventLoop[] executors) {
+        if (isPowerOfTwo(executors.length)) {
+            return new PowerOfTwoEventExecutorChooser(executors);
+        } else {
+            return new GenericEventExecutorChooser(executors);
+        }
+    }
+
+    private static boolean isPowerOfTwo(int val) {
+        return (val & -val) == val;
+    }
+
+    private static final class PowerOfTwoEventExecutorChooser implements MyEventExecutorChooser {
+        private final AtomicInteger idx = new AtomicInteger();
+        private final MyNioEventLoop[] executors;
+
+        PowerOfTwoEventExecutorChooser(MyNioEventLoop[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public MyNioEventLoop next() {
+            // 长度为2的幂次方时，与运算等价于取模，并且计数器溢出为负数后结果依然在[0,length)之间
+            return executors[idx.getAndIncrement() & executors.length - 1];
+        }
+    }
+
+    private static final class GenericEventExecutorChooser implements MyEventExecutorChooser {
+        // Use a 'long' counter to avoid non-round-robin behaviour at the 32-bit overflow boundary.
+        // The 64-bit long solves this by placing the overflow so far into the future, that no system
+        // will encounter this in practice.
+        private final AtomicLong idx = new AtomicLong();
+        private final MyNioEventLoop[] executors;
+
+        GenericEventExecutorChooser(MyNioEventLoop[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public MyNioEventLoop next() {
+            // 即使溢出为负数，取绝对值后依然是合法的下标
+            return executors[(int) Math.abs(idx.getAndIncrement() % executors.length)];
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.my.netty.core.reactor.eventloop.chooser;
+
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+
+/**
+ * eventLoop选择器的工厂(参考自netty的EventExecutorChooserFactory)
+ *
+ * MyNioEventLoopGroup通过选择器决定新的连接(或者任务)交给哪一个eventLoop去处理
+ * */
+public interface MyEventExecutorChooserFactory {
+
+    /**
+     * 基于eventLoopGroup中的eventLoop数组创建一个新的选择器
+     * */
+    MyEventExecutorChooser newChooser(MyNioEventLoop[] executors);
+
+    interface MyEventExecutorChooser {
+
+        /**
+         * 返回下一个要使用的eventLoop
+         * */
+        MyNioEventLoop next();
+    }
+}
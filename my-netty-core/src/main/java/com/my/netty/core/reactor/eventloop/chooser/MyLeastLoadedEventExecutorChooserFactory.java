@@ -0,0 +1,88 @@
+package com.my.netty.core.reactor.eventloop.chooser;
+
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+
+/**
+ * 基于负载选择eventLoop的选择器工厂
+ *
+ * 轮询的方式只保证了每个eventLoop分配到的连接数量相同，但长连接场景下，连接的关闭时机是不均匀的，
+ * 一段时间后部分eventLoop上的连接会明显多于其它的eventLoop。此时每次都选择当前负载最小的eventLoop，能让负载更加均衡
+ *
+ * 遍历eventLoop数组的开销是O(N)，eventLoop数量通常与cpu核数相当，可以接受
+ * */
+public final class MyLeastLoadedEventExecutorChooserFactory implements MyEventExecutorChooserFactory {
+
+    public enum LoadMetric {
+        /**
+         * 以eventLoop上注册的channel数量作为负载
+         * */
+        REGISTERED_CHANNELS,
+
+        /**
+         * 以eventLoop任务队列中待执行的任务数作为负载
+         * */
+        PENDING_TASKS,
+    }
+
+    private final LoadMetric loadMetric;
+
+    public MyLeastLoadedEventExecutorChooserFactory() {
+        this(LoadMetric.REGISTERED_CHANNELS);
+    }
+
+    public MyLeastLoadedEventExecutorChooserFactory(LoadMetric loadMetric) {
+        if (loadMetric == null) {
+            throw new NullPointerException("loadMetric");
+        }
+        this.loadMetric = loadMetric;
+    }
+
+    @Override
+    public MyEventExecutorChooser newChooser(MyNioEventLoop[] executors) {
+        return new LeastLoadedEventExecutorChooser(executors, loadMetric);
+    }
+
+    private static final class LeastLoadedEventExecutorChooser implements MyEventExecutorChooser {
+        private final MyNioEventLoop[] executors;
+        private final LoadMetric loadMetric;
+
+        /**
+         * 负载相同时从上一次选中的下一个开始找，避免总是选中靠前的eventLoop
+         * */
+        private int lastIndex;
+
+        LeastLoadedEventExecutorChooser(MyNioEventLoop[] executors, LoadMetric loadMetric) {
+            this.executors = executors;
+            this.loadMetric = loadMetric;
+        }
+
+        @Override
+        public MyNioEventLoop next() {
+            // lastIndex只是用于打散，并发下读到旧值也没有关系
+            final int start = lastIndex + 1;
+            final int length = executors.length;
+
+            int minIndex = start % length;
+            long minLoad = Long.MAX_VALUE;
+            for (int i = 0; i < length; i++) {
+                int index = (start + i) % length;
+                long load = load(executors[index]);
+                if (load < minLoad) {
+                    minLoad = load;
+                    minIndex = index;
+                }
+            }
+
+            lastIndex = minIndex;
+            return executors[minIndex];
+        }
+
+        private long load(MyNioEventLoop executor) {
+            if (loadMetric == LoadMetric.REGISTERED_CHANNELS) {
+                return executor.registeredChannels();
+            } else {
+                return executor.pendingTasks();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.my.netty.core.reactor.eventloop.offload;
+
+import com.my.netty.core.reactor.exception.MyNettyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用于卸载阻塞型handler的执行器组(类似netty中addLast(EventExecutorGroup, handler)里的EventExecutorGroup)
+ *
+ * 会调用阻塞服务(rpc、数据库等)的handler如果直接在eventLoop线程中执行，会阻塞掉同一eventLoop上所有的channel，
+ * 此时可以通过pipeline.addLast(offloadExecutorGroup, handler)，让这个handler的事件由非I/O线程执行
+ *
+ * 底层的共享执行器有两种：
+ * 1. jdk21+，每个任务一个虚拟线程，阻塞时只会挂起虚拟线程，不占用平台线程
+ * 2. jdk8上，使用有界的线程池。队列满时拒绝任务(AbortPolicy)，绝不退化为由提交者线程执行：
+ *    提交者往往是eventLoop线程，在其中执行阻塞型handler会卡住同一eventLoop上的所有channel
+ *    被拒绝的事件会以异常的形式通知到pipeline(write失败future，其它事件触发exceptionCaught)
+ *
+ * 每个添加到pipeline中的handler上下文都会分配一个独立的MySerialEventExecutor，用于保证同一channel的事件顺序
+ * */
+public class MyOffloadExecutorGroup {
+
+    private static final Logger logger = LoggerFactory.getLogger(MyOffloadExecutorGroup.class);
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutorMethod();
+
+    private final ExecutorService backingExecutor;
+
+    private MyOffloadExecutorGroup(ExecutorService backingExecutor) {
+        this.backingExecutor = backingExecutor;
+    }
+
+    /**
+     * 当前jdk是否支持虚拟线程
+     * */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器组(jdk21+)
+     * */
+    public static MyOffloadExecutorGroup newVirtualThreadPerTaskGroup() {
+        if(!isVirtualThreadSupported()){
+            throw new MyNettyException("virtual thread is not supported in current jdk, java.version=" + System.getProperty("java.version"));
+        }
+
+        try {
+            // 编译目标是jdk8，只能通过反射创建
+            ExecutorService executorService = (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            return new MyOffloadExecutorGroup(executorService);
+        } catch (Exception e) {
+            throw new MyNettyException("create virtual thread per task executor error!",e);
+        }
+    }
+
+    /**
+     * 基于有界线程池的执行器组
+     *
+     * @param nThreads 线程数
+     * @param queueCapacity 线程池队列大小
+     * */
+    public static MyOffloadExecutorGroup newBoundedGroup(int nThreads, int queueCapacity) {
+        if(nThreads <= 0){
+            throw new IllegalArgumentException("nThreads must > 0");
+        }
+        if(queueCapacity <= 0){
+            throw new IllegalArgumentException("queueCapacity must > 0");
+        }
+
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(nThreads, nThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new OffloadThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        return new MyOffloadExecutorGroup(threadPoolExecutor);
+    }
+
+    /**
+     * jdk21+时使用虚拟线程，否则退化为有界线程池
+     * */
+    public static MyOffloadExecutorGroup newDefaultGroup(int nThreads, int queueCapacity) {
+        if(isVirtualThreadSupported()){
+            return newVirtualThreadPerTaskGroup();
+        }else{
+            return newBoundedGroup(nThreads, queueCapacity);
+        }
+    }
+
+    /**
+     * 创建一个新的串行子执行器
+     * */
+    public MySerialEventExecutor newSerialExecutor() {
+        return new MySerialEventExecutor(backingExecutor);
+    }
+
+    public void shutdown() {
+        backingExecutor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return backingExecutor.awaitTermination(timeout, unit);
+    }
+
+    private static Method findVirtualThreadPerTaskExecutorMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            logger.debug("virtual thread is not supported, java.version={}",System.getProperty("java.version"));
+            return null;
+        }
+    }
+
+    private static final class OffloadThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_ID = new AtomicInteger();
+
+        private final int poolId = POOL_ID.incrementAndGet();
+        private final AtomicInteger threadId = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "my-offload-" + poolId + "-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.my.netty.core.reactor.eventloop.offload;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 提交到MySerialEventExecutor中、已经入队但最终无法被执行的任务的回调
+ *
+ * 任务入队之后，如果共享执行器一直拒绝drain任务，子执行器会放弃队列中剩余的任务；
+ * 实现了该接口的任务会收到通知，用于释放消息、失败future等(与execute直接抛出RejectedExecutionException时调用方的处理一致)
+ * */
+public interface MyRejectableTask extends Runnable {
+
+    /**
+     * 任务被放弃，不会再被执行
+     * */
+    void onRejected(RejectedExecutionException e);
+}
@@ -0,0 +1,155 @@
+package com.my.netty.core.reactor.eventloop.offload;
+
+import com.my.netty.core.reactor.eventloop.MyEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于一个共享的(可能是多线程的)执行器，实现串行执行的子执行器
+ *
+ * 提交进来的任务先放入自己的队列中，同一时刻最多只有一个drain任务在共享执行器中运行，
+ * 因此同一个子执行器中的任务严格按照提交顺序、一个接一个的执行，不会并发，但可能在不同的线程上执行
+ *
+ * 每个channel的每个卸载handler都有一个独立的子执行器，用于保证同一channel的事件顺序
+ *
+ * 共享执行器满了时：
+ * 1. 已经有drain任务在运行(或排队)时，新任务只是进入子执行器自己的队列，不会被拒绝
+ * 2. 需要提交新的drain任务但被拒绝时，execute抛出RejectedExecutionException，由调用方通知pipeline，任务不会在调用方线程中执行
+ * 3. 被拒绝的提交者撤回自己的任务期间，其它提交者的任务可能已经入队(它们以为drain已经提交了)，撤回后会再为它们提交一次drain；
+ *    依然被拒绝时放弃队列中剩余的任务，实现了MyRejectableTask的任务会收到通知
+ * */
+public class MySerialEventExecutor implements MyEventExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MySerialEventExecutor.class);
+
+    /**
+     * 一次drain最多执行的任务数，超过后让出线程并重新提交，避免单个channel长时间占用有界线程池中的线程
+     * */
+    private static final int MAX_TASKS_PER_DRAIN = 1024;
+
+    private final Executor backingExecutor;
+
+    private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 是否已经有drain任务被提交到了共享执行器中
+     * */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * 当前正在执行drain任务的线程
+     * */
+    private volatile Thread runner;
+
+    private final Runnable drainTask = this::drain;
+
+    public MySerialEventExecutor(Executor backingExecutor) {
+        if(backingExecutor == null){
+            throw new NullPointerException("backingExecutor");
+        }
+        this.backingExecutor = backingExecutor;
+    }
+
+    @Override
+    public boolean inEventLoop() {
+        return runner == Thread.currentThread();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if(task == null){
+            throw new NullPointerException("task");
+        }
+
+        taskQueue.offer(task);
+        if(scheduled.compareAndSet(false,true)){
+            try {
+                backingExecutor.execute(drainTask);
+            }catch (RejectedExecutionException e){
+                // 共享执行器拒绝了任务(已满或者已经关闭)，撤回当前任务并还原标识，让后续的提交还能再次尝试
+                boolean removed = taskQueue.remove(task);
+                scheduled.set(false);
+                // 撤回期间其它提交者的任务可能已经入队了，它们的CAS失败而认为drain已经提交了，不能让这些任务留在队列中无人执行
+                rescheduleOrFailRemaining();
+                if(removed){
+                    throw e;
+                }
+                // 撤回失败，说明在入队之后、CAS之前，上一个drain已经把当前任务取走执行了，视为提交成功(否则调用方重试会导致任务被执行两次)
+            }
+        }
+    }
+
+    private void rescheduleOrFailRemaining() {
+        while (!taskQueue.isEmpty() && scheduled.compareAndSet(false,true)){
+            try {
+                backingExecutor.execute(drainTask);
+                return;
+            }catch (RejectedExecutionException e){
+                // 依然被拒绝，放弃队列中剩余的任务(按入队顺序通知)，之后的提交可以重新尝试
+                Runnable task;
+                while ((task = taskQueue.poll()) != null){
+                    failTask(task, e);
+                }
+                scheduled.set(false);
+                // 在清空与还原标识之间，又可能有新的任务入队，继续检查
+            }
+        }
+    }
+
+    private static void failTask(Runnable task, RejectedExecutionException e) {
+        if(task instanceof MyRejectableTask){
+            try {
+                ((MyRejectableTask) task).onRejected(e);
+            }catch (Throwable t){
+                logger.warn("MySerialEventExecutor task onRejected error!",t);
+            }
+        }else{
+            logger.warn("MySerialEventExecutor backing executor rejected, task dropped. task={}",task);
+        }
+    }
+
+    private void drain() {
+        for(;;){
+            runner = Thread.currentThread();
+            try {
+                for(int i=0; i<MAX_TASKS_PER_DRAIN; i++){
+                    Runnable task = taskQueue.poll();
+                    if(task == null){
+                        break;
+                    }
+
+                    try {
+                        task.run();
+                    }catch (Throwable t){
+                        logger.error("MySerialEventExecutor task execute error!",t);
+                    }
+                }
+            } finally {
+                runner = null;
+                scheduled.set(false);
+            }
+
+            // 队列中还有任务(本轮没执行完，或者在scheduled置为false之前入队、但其提交者CAS失败没有触发drain)，需要继续drain
+            if(taskQueue.isEmpty() || !scheduled.compareAndSet(false,true)){
+                return;
+            }
+            try {
+                // 让出线程，重新排队
+                backingExecutor.execute(drainTask);
+                return;
+            }catch (RejectedExecutionException e){
+                // 共享执行器已满，当前线程本身就是共享执行器中的线程(而不是eventLoop线程)，直接继续drain
+            }
+        }
+    }
+
+    public int pendingTasks() {
+        return taskQueue.size();
+    }
+}
@@ -0,0 +1,19 @@
+package com.my.netty.core.reactor.eventloop.queue;
+
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 基于LinkedBlockingQueue的任务队列工厂(MyNetty最初版本的实现)
+ *
+ * 每次offer/poll都需要加锁，保留下来主要是用于和mpsc队列做性能对比
+ * */
+public class MyBlockingTaskQueueFactory implements MyEventLoopTaskQueueFactory {
+
+    public static final MyBlockingTaskQueueFactory INSTANCE = new MyBlockingTaskQueueFactory();
+
+    @Override
+    public Queue<Runnable> newTaskQueue(int maxCapacity) {
+        return new LinkedBlockingQueue<>(maxCapacity);
+    }
+}
@@ -0,0 +1,18 @@
+package com.my.netty.core.reactor.eventloop.queue;
+
+import java.util.Queue;
+
+/**
+ * eventLoop任务队列的工厂(参考自netty的EventLoopTaskQueueFactory)
+ *
+ * eventLoop的任务队列是典型的多生产者(任意线程都可以execute提交任务)、单消费者(只有eventLoop自己的线程会去消费)模型
+ * */
+public interface MyEventLoopTaskQueueFactory {
+
+    /**
+     * 创建一个新的任务队列
+     *
+     * @param maxCapacity 队列的最大容量，Integer.MAX_VALUE代表无界队列
+     * */
+    Queue<Runnable> newTaskQueue(int maxCapacity);
+}
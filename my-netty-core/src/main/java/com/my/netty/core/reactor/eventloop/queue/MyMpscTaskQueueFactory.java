@@ -0,0 +1,47 @@
+package com.my.netty.core.reactor.eventloop.queue;
+
+import org.jctools.queues.MpscChunkedArrayQueue;
+import org.jctools.queues.MpscUnboundedArrayQueue;
+import org.jctools.util.Pow2;
+
+import java.util.Queue;
+
+/**
+ * 默认的任务队列工厂，基于jctools的无锁mpsc队列(netty中PlatformDependent.newMpscQueue也是一样的做法)
+ *
+ * 相比LinkedBlockingQueue，offer时不需要加锁，大量外部线程同时提交任务时(比如跨线程的write)竞争更小
+ * */
+public class MyMpscTaskQueueFactory implements MyEventLoopTaskQueueFactory {
+
+    public static final MyMpscTaskQueueFactory INSTANCE = new MyMpscTaskQueueFactory();
+
+    /**
+     * jctools的队列内部由一个个chunk数组链接而成，按chunk为单位进行扩容
+     * */
+    private static final int MPSC_CHUNK_SIZE = 1024;
+
+    /**
+     * jctools有界队列允许的最小容量
+     * */
+    private static final int MIN_MAX_MPSC_CAPACITY = 4;
+
+    /**
+     * @param maxCapacity 队列的最大容量，Integer.MAX_VALUE代表无界；
+     *                    jctools会将有界队列的容量向上取整为2的幂次方(比如1000实际为1024)，小于4时抛出IllegalArgumentException
+     * */
+    @Override
+    public Queue<Runnable> newTaskQueue(int maxCapacity) {
+        if (maxCapacity == Integer.MAX_VALUE) {
+            // 无界队列
+            return new MpscUnboundedArrayQueue<>(MPSC_CHUNK_SIZE);
+        }
+
+        if (maxCapacity < MIN_MAX_MPSC_CAPACITY) {
+            throw new IllegalArgumentException("maxCapacity: " + maxCapacity + " (expected: >= " + MIN_MAX_MPSC_CAPACITY + ")");
+        }
+
+        // 有界队列，jctools要求chunk小于(取整后的)maxCapacity，容量较小时缩小chunk，而不是把容量放大到chunk的两倍
+        int chunkSize = Math.min(MPSC_CHUNK_SIZE, Pow2.roundToPowerOfTwo(maxCapacity) >> 1);
+        return new MpscChunkedArrayQueue<>(chunkSize, maxCapacity);
+    }
+}
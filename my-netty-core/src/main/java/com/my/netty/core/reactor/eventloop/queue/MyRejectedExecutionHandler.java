@@ -0,0 +1,14 @@
+package com.my.netty.core.reactor.eventloop.queue;
+
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+
+/**
+ * 有界任务队列满了之后的拒绝策略(参考自netty的RejectedExecutionHandler)
+ * */
+public interface MyRejectedExecutionHandler {
+
+    /**
+     * 任务无法加入eventLoop的任务队列时被调用
+     * */
+    void rejected(Runnable task, MyNioEventLoop executor);
+}
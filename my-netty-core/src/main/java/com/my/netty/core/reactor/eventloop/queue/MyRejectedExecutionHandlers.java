@@ -0,0 +1,54 @@
+package com.my.netty.core.reactor.eventloop.queue;
+
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 常用的拒绝策略(参考自netty的RejectedExecutionHandlers)
+ * */
+public final class MyRejectedExecutionHandlers {
+
+    private static final MyRejectedExecutionHandler REJECT = (task, executor) -> {
+        throw new RejectedExecutionException("eventLoop taskQueue is full! executor=" + executor);
+    };
+
+    private MyRejectedExecutionHandlers() { }
+
+    /**
+     * 直接抛出RejectedExecutionException(默认策略)
+     * */
+    public static MyRejectedExecutionHandler reject() {
+        return REJECT;
+    }
+
+    /**
+     * 提交任务的是外部线程时，退避一段时间后重试，重试次数用完后依然无法入队则抛出RejectedExecutionException
+     * eventLoop自己的线程不能阻塞等待(队列只能由它自己来消费)，所以直接拒绝
+     * */
+    public static MyRejectedExecutionHandler backoff(final int retries, long backoffAmount, TimeUnit unit) {
+        if (retries <= 0) {
+            throw new IllegalArgumentException("retries : " + retries + " (expected: > 0)");
+        }
+
+        final long backOffNanos = unit.toNanos(backoffAmount);
+        return (task, executor) -> {
+            if (!executor.inEventLoop()) {
+                for (int i = 0; i < retries; i++) {
+                    // 尝试唤醒eventLoop，令其尽快的消费任务队列
+                    executor.wakeup();
+
+                    LockSupport.parkNanos(backOffNanos);
+                    if (executor.offerTask(task)) {
+                        return;
+                    }
+                }
+            }
+            // Either we tried to add the task from within the EventLoop or we was not able to add it even with
+            // backoff.
+            throw new RejectedExecutionException("eventLoop taskQueue is full! executor=" + executor);
+        };
+    }
+}
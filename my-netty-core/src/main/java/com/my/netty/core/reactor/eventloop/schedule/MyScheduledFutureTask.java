@@ -0,0 +1,157 @@
+package com.my.netty.core.reactor.eventloop.schedule;
+
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * eventLoop中的定时任务(参考自netty的ScheduledFutureTask)
+ *
+ * 定时任务只会被所属的eventLoop线程执行，所以不需要额外的定时线程，也没有额外的跨线程切换
+ * */
+public class MyScheduledFutureTask extends FutureTask<Void> implements ScheduledFuture<Void> {
+
+    /**
+     * 以类加载的时间作为基准，避免nanoTime的绝对值过大时计算deadline溢出
+     * */
+    private static final long START_TIME = System.nanoTime();
+
+    /**
+     * 不在队列中时的下标
+     * */
+    public static final int INDEX_NOT_IN_QUEUE = -1;
+
+    private final MyNioEventLoop executor;
+
+    /**
+     * 任务id，deadline相同时按照提交的先后顺序执行
+     * */
+    private long id;
+
+    private long deadlineNanos;
+
+    /**
+     * 0 - 一次性任务
+     * >0 - 以固定频率重复执行(scheduleAtFixedRate)
+     * <0 - 以固定延迟重复执行(scheduleWithFixedDelay)
+     * */
+    private final long periodNanos;
+
+    /**
+     * 在优先级队列中的下标，用于O(logN)的取消
+     * */
+    private int queueIndex = INDEX_NOT_IN_QUEUE;
+
+    public MyScheduledFutureTask(MyNioEventLoop executor, Runnable runnable, long deadlineNanos, long periodNanos) {
+        super(runnable, null);
+        this.executor = executor;
+        this.deadlineNanos = deadlineNanos;
+        this.periodNanos = periodNanos;
+    }
+
+    public static long nanoTime() {
+        return System.nanoTime() - START_TIME;
+    }
+
+    public static long deadlineNanos(long delayNanos) {
+        long deadlineNanos = nanoTime() + delayNanos;
+        // Guard against overflow
+        return deadlineNanos < 0 ? Long.MAX_VALUE : deadlineNanos;
+    }
+
+    public MyScheduledFutureTask setId(long id) {
+        if (this.id == 0L) {
+            this.id = id;
+        }
+        return this;
+    }
+
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public long delayNanos() {
+        return delayNanos(nanoTime());
+    }
+
+    public long delayNanos(long currentTimeNanos) {
+        return Math.max(0, deadlineNanos - currentTimeNanos);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(delayNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        if (this == o) {
+            return 0;
+        }
+
+        MyScheduledFutureTask that = (MyScheduledFutureTask) o;
+        long d = deadlineNanos - that.deadlineNanos;
+        if (d < 0) {
+            return -1;
+        } else if (d > 0) {
+            return 1;
+        } else if (id < that.id) {
+            return -1;
+        } else {
+            return 1;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (periodNanos == 0) {
+            // 一次性任务
+            super.run();
+            return;
+        }
+
+        // 周期性任务，执行成功并且没有被取消，则计算出下一次的deadline重新放回定时任务队列
+        if (runAndReset()) {
+            if (periodNanos > 0) {
+                deadlineNanos += periodNanos;
+            } else {
+                deadlineNanos = nanoTime() - periodNanos;
+            }
+            if (!isCancelled() && !executor.isShuttingDown()) {
+                // eventLoop关闭中，周期性任务不再继续执行
+                executor.scheduleFromEventLoop(this);
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean canceled = super.cancel(mayInterruptIfRunning);
+        if (canceled) {
+            // 及时的从定时任务队列中移除，避免大量已取消的任务堆积在队列中
+            executor.removeScheduled(this);
+        }
+        return canceled;
+    }
+
+    int queueIndex() {
+        return queueIndex;
+    }
+
+    void queueIndex(int queueIndex) {
+        this.queueIndex = queueIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "MyScheduledFutureTask{" +
+            "id=" + id +
+            ", deadlineNanos=" + deadlineNanos +
+            ", periodNanos=" + periodNanos +
+            ", cancelled=" + isCancelled() +
+            '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.my.netty.core.reactor.eventloop.schedule;
+
+import java.util.Arrays;
+
+/**
+ * 定时任务的优先级队列，基于二叉小顶堆实现(参考自netty的DefaultPriorityQueue)
+ *
+ * 与jdk的PriorityQueue相比，每个任务记录了自己在堆数组中的下标，因此取消(remove)一个任务时不需要O(N)的遍历查找，
+ * 插入/取消/弹出都是O(logN)，适合百万级别的超时任务(比如每个连接一个的空闲检测/写超时)
+ *
+ * 非线程安全，只能由所属的eventLoop线程访问
+ * */
+public final class MyScheduledTaskQueue {
+
+    private static final MyScheduledFutureTask[] EMPTY_ARRAY = new MyScheduledFutureTask[0];
+
+    private MyScheduledFutureTask[] queue;
+
+    private int size;
+
+    public MyScheduledTaskQueue(int initialSize) {
+        queue = initialSize != 0 ? new MyScheduledFutureTask[initialSize] : EMPTY_ARRAY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public MyScheduledFutureTask peek() {
+        return (size == 0) ? null : queue[0];
+    }
+
+    public MyScheduledFutureTask poll() {
+        if (size == 0) {
+            return null;
+        }
+        MyScheduledFutureTask result = queue[0];
+        result.queueIndex(MyScheduledFutureTask.INDEX_NOT_IN_QUEUE);
+
+        MyScheduledFutureTask last = queue[--size];
+        queue[size] = null;
+        if (size != 0) { // Make sure we don't add the last element back.
+            bubbleDown(0, last);
+        }
+
+        return result;
+    }
+
+    public void add(MyScheduledFutureTask task) {
+        if (task.queueIndex() != MyScheduledFutureTask.INDEX_NOT_IN_QUEUE) {
+            throw new IllegalArgumentException("task.queueIndex(): " + task.queueIndex() + " (expected: "
+                + MyScheduledFutureTask.INDEX_NOT_IN_QUEUE + ") + task: " + task);
+        }
+
+        // Check that the array capacity is enough to hold values by doubling capacity.
+        if (size >= queue.length) {
+            // Use a policy which allows for a 0 initial capacity. Same policy as JDK's priority queue, double when
+            // "small", then grow by 50% when "large".
+            queue = Arrays.copyOf(queue, queue.length + ((queue.length < 64) ?
+                (queue.length + 2) :
+                (queue.length >>> 1)));
+        }
+
+        bubbleUp(size++, task);
+    }
+
+    public boolean remove(MyScheduledFutureTask task) {
+        int i = task.queueIndex();
+        if (i < 0 || i >= size || queue[i] != task) {
+            // 不在当前队列中(已经被弹出执行或者已经被移除)
+            return false;
+        }
+
+        task.queueIndex(MyScheduledFutureTask.INDEX_NOT_IN_QUEUE);
+        if (--size == 0 || size == i) {
+            // If there are no node left, or this is the last node in the array just remove and return.
+            queue[i] = null;
+            return true;
+        }
+
+        // Move the last element where node currently lives in the array.
+        MyScheduledFutureTask moved = queue[i] = queue[size];
+        queue[size] = null;
+        // priorityQueueIndex will be updated below in bubbleUp or bubbleDown
+
+        // Make sure the moved node still preserves the min-heap properties.
+        if (task.compareTo(moved) < 0) {
+            bubbleDown(i, moved);
+        } else {
+            bubbleUp(i, moved);
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            MyScheduledFutureTask node = queue[i];
+            if (node != null) {
+                node.queueIndex(MyScheduledFutureTask.INDEX_NOT_IN_QUEUE);
+                queue[i] = null;
+            }
+        }
+        size = 0;
+    }
+
+    private void bubbleDown(int k, MyScheduledFutureTask node) {
+        final int half = size >>> 1;
+        while (k < half) {
+            // Compare node to the children of index k.
+            int iChild = (k << 1) + 1;
+            MyScheduledFutureTask child = queue[iChild];
+
+            // Make sure we get the smallest child to compare against.
+            int rightChild = iChild + 1;
+            if (rightChild < size && child.compareTo(queue[rightChild]) > 0) {
+                child = queue[iChild = rightChild];
+            }
+            // If the bubbleDown node is less than or equal to the smallest child then we will preserve the
+            // min-heap property by inserting the bubbleDown node here.
+            if (node.compareTo(child) <= 0) {
+                break;
+            }
+
+            // Bubble the child up.
+            queue[k] = child;
+            child.queueIndex(k);
+
+            // Move down k down the tree for the next iteration.
+            k = iChild;
+        }
+
+        // We have found where node should live and still satisfy the min-heap property, so put it in the queue.
+        queue[k] = node;
+        node.queueIndex(k);
+    }
+
+    private void bubbleUp(int k, MyScheduledFutureTask node) {
+        while (k > 0) {
+            int iParent = (k - 1) >>> 1;
+            MyScheduledFutureTask parent = queue[iParent];
+
+            // If the bubbleUp node is less than the parent, then we have found a spot to insert and still maintain
+            // min-heap properties.
+            if (node.compareTo(parent) >= 0) {
+                break;
+            }
+
+            // Bubble the parent down.
+            queue[k] = parent;
+            parent.queueIndex(k);
+
+            // Move k up the tree for the next iteration.
+            k = iParent;
+        }
+
+        // We have found where node should live and still satisfy the min-heap property, so put it in the queue.
+        queue[k] = node;
+        node.queueIndex(k);
+    }
+}
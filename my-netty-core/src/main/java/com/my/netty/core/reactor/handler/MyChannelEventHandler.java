@@ -10,6 +10,38 @@ import java.util.concurrent.CompletableFuture;
  * */
 public interface MyChannelEventHandler {
 
+    // ========================= handler生命周期 ==============================
+    /**
+     * handler被加入pipeline之后回调(在ctx.executor()中执行)，在此之前handler不会收到任何事件
+     * */
+    void handlerAdded(MyChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * handler被从pipeline中移除之后回调(在ctx.executor()中执行)，之后handler不会再收到新的事件，可以在这里清理资源
+     * */
+    void handlerRemoved(MyChannelHandlerContext ctx) throws Exception;
+
+    // ========================= channel生命周期 ==============================
+    /**
+     * channel注册到了eventLoop上
+     * */
+    void channelRegistered(MyChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * channel从eventLoop上注销了(关闭时)，这是channel的最后一个事件，可以在这里清理与该连接相关的所有状态
+     * */
+    void channelUnregistered(MyChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * channel变为活跃状态(服务端接受的连接注册完成，或者客户端的连接建立完成)，之后可以正常的读写
+     * */
+    void channelActive(MyChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * channel不再活跃(连接被关闭)，只有触发过channelActive的channel才会触发
+     * */
+    void channelInactive(MyChannelHandlerContext ctx) throws Exception;
+
     // ========================= inbound入站事件 ==============================
     void channelRead(MyChannelHandlerContext ctx, Object msg) throws Exception;
 
@@ -17,13 +49,35 @@ public interface MyChannelEventHandler {
 
     void exceptionCaught(MyChannelHandlerContext ctx, Throwable cause) throws Exception;
 
+    /**
+     * channel的可写状态发生了变化(写缓冲区积压的数据超过高水位线/回落到低水位线以下，或者用户自定义的可写标识发生了变化)
+     * 可通过ctx.channel().isWritable()获得当前的可写状态
+     * */
+    void channelWritabilityChanged(MyChannelHandlerContext ctx) throws Exception;
+
+    /**
+     * 用户自定义事件(或框架内部产生的事件，比如半关闭时的MyChannelInputShutdownEvent)
+     * */
+    void userEventTriggered(MyChannelHandlerContext ctx, Object evt) throws Exception;
+
     // ========================= outbound出站事件 ==============================
     void close(MyChannelHandlerContext ctx) throws Exception;
 
+    /**
+     * 请求从channel中读取一次数据(关闭了autoRead时，读端背压的基础)，读取到的数据通过channelRead事件传播
+     * */
+    void read(MyChannelHandlerContext ctx) throws Exception;
+
     /**
      * doFlush为false ==> 相当于netty的write
      * doFLush为true ==> 相当于netty的writeAndFlush
      * */
     void write(MyChannelHandlerContext ctx, Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture) throws Exception;
 
+    /**
+     * 将之前write(doFlush=false)写入channelOutboundBuffer中的消息全部flush出去
+     * 多次write之后只flush一次，可以将多个消息合并为一次gathering write，减少系统调用的次数
+     * */
+    void flush(MyChannelHandlerContext ctx) throws Exception;
+
 }
@@ -21,6 +21,40 @@ public class MyChannelEventHandlerAdapter implements MyChannelEventHandler{
      * */
     public volatile boolean added;
 
+    @Override
+    public void handlerAdded(MyChannelHandlerContext ctx) throws Exception {
+        // NOOP
+    }
+
+    @Override
+    public void handlerRemoved(MyChannelHandlerContext ctx) throws Exception {
+        // NOOP
+    }
+
+    @Skip
+    @Override
+    public void channelRegistered(MyChannelHandlerContext ctx) throws Exception {
+        ctx.fireChannelRegistered();
+    }
+
+    @Skip
+    @Override
+    public void channelUnregistered(MyChannelHandlerContext ctx) throws Exception {
+        ctx.fireChannelUnregistered();
+    }
+
+    @Skip
+    @Override
+    public void channelActive(MyChannelHandlerContext ctx) throws Exception {
+        ctx.fireChannelActive();
+    }
+
+    @Skip
+    @Override
+    public void channelInactive(MyChannelHandlerContext ctx) throws Exception {
+        ctx.fireChannelInactive();
+    }
+
     @Skip
     @Override
     public void channelRead(MyChannelHandlerContext ctx, Object msg) throws Exception {
@@ -39,18 +73,42 @@ public class MyChannelEventHandlerAdapter implements MyChannelEventHandler{
         ctx.fireExceptionCaught(cause);
     }
 
+    @Skip
+    @Override
+    public void channelWritabilityChanged(MyChannelHandlerContext ctx) throws Exception {
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Skip
+    @Override
+    public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) throws Exception {
+        ctx.fireUserEventTriggered(evt);
+    }
+
     @Skip
     @Override
     public void close(MyChannelHandlerContext ctx) throws Exception {
         ctx.close();
     }
 
+    @Skip
+    @Override
+    public void read(MyChannelHandlerContext ctx) throws Exception {
+        ctx.read();
+    }
+
     @Skip
     @Override
     public void write(MyChannelHandlerContext ctx, Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture) throws Exception {
         ctx.write(msg,doFlush,completableFuture);
     }
 
+    @Skip
+    @Override
+    public void flush(MyChannelHandlerContext ctx) throws Exception {
+        ctx.flush();
+    }
+
     private static ConcurrentHashMap<Class<?>, Boolean> isSharableCacheMap = new ConcurrentHashMap<>();
 
     /**
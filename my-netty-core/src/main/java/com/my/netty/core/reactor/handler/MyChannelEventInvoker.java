@@ -7,6 +7,15 @@ import java.util.concurrent.CompletableFuture;
 
 public interface MyChannelEventInvoker {
 
+    // ========================= channel生命周期 ==============================
+    void fireChannelRegistered();
+
+    void fireChannelUnregistered();
+
+    void fireChannelActive();
+
+    void fireChannelInactive();
+
     // ========================= inbound入站事件 ==============================
     void fireChannelRead(Object msg);
 
@@ -14,10 +23,24 @@ public interface MyChannelEventInvoker {
 
     void fireExceptionCaught(Throwable cause);
 
+    void fireChannelWritabilityChanged();
+
+    void fireUserEventTriggered(Object evt);
+
     // ========================= outbound出站事件 ==============================
     void close();
 
+    void read();
+
     CompletableFuture<MyNioChannel> write(Object msg, boolean doFlush);
 
     CompletableFuture<MyNioChannel> write(Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture);
+
+    /**
+     * 不关心写出结果的写入，复用channel的void future，不会为每条消息创建CompletableFuture
+     * 写出失败时(比如channel已经关闭)，异常会以exceptionCaught事件在pipeline中传播
+     * */
+    void writeVoid(Object msg, boolean doFlush);
+
+    void flush();
 }
@@ -28,6 +28,25 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
 
     private int numReads;
 
+    /**
+     * 本次read过程中是否向后传播过解码出的消息(关闭了autoRead时用于判断是否需要主动再read一次)
+     * */
+    private boolean firedChannelRead;
+
+    private static final byte STATE_INIT = 0;
+    private static final byte STATE_CALLING_CHILD_DECODE = 1;
+    private static final byte STATE_HANDLER_REMOVED_PENDING = 2;
+
+    /**
+     * 子类的decode方法中可能会将当前handler从pipeline中移除掉(比如协议升级)，此时需要等decode返回之后再处理移除的逻辑
+     * <ul>
+     *     <li>{@link #STATE_INIT} - Not calling decode and not removed.</li>
+     *     <li>{@link #STATE_CALLING_CHILD_DECODE} - Calling decode and not removed.</li>
+     *     <li>{@link #STATE_HANDLER_REMOVED_PENDING} - Calling decode and has been removed.</li>
+     * </ul>
+     */
+    private byte decodeState = STATE_INIT;
+
     private int discardAfterReads = 16;
 
     /**
@@ -130,6 +149,7 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
                     }
 
                     int size = out.size();
+                    firedChannelRead |= size > 0;
                     fireChannelRead(ctx, out, size);
                 } finally {
                     // 后续的handler在处理完成消息后，将out列表回收掉
@@ -143,6 +163,37 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
 
     }
 
+    @Override
+    public final void handlerRemoved(MyChannelHandlerContext ctx) throws Exception {
+        if (decodeState == STATE_CALLING_CHILD_DECODE) {
+            // 正在decode的过程中被移除了，等decode返回后再处理
+            decodeState = STATE_HANDLER_REMOVED_PENDING;
+            return;
+        }
+
+        MyByteBuf buf = cumulation;
+        if (buf != null) {
+            // Directly set this to null so we are sure we not access it in any other method here anymore.
+            cumulation = null;
+            numReads = 0;
+            if (buf.isReadable()) {
+                // 还没有解码的数据原样传递给后面的handler(比如协议升级后新加入的handler)
+                ctx.fireChannelRead(buf);
+                ctx.fireChannelReadComplete();
+            } else {
+                buf.release();
+            }
+        }
+        handlerRemoved0(ctx);
+    }
+
+    /**
+     * Gets called after the {@link MyByteToMessageDecoder} was removed from the actual context and it doesn't handle
+     * events anymore.
+     */
+    protected void handlerRemoved0(MyChannelHandlerContext ctx) throws Exception {
+    }
+
     @Override
     public void channelReadComplete(MyChannelHandlerContext ctx) {
         numReads = 0;
@@ -150,7 +201,12 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
         // 完成了一次read操作，对cumulation进行缩容
         discardSomeReadBytes();
 
-        // 省略了一些autoRead相关的逻辑
+        if (!firedChannelRead && !ctx.channel().isAutoRead()) {
+            // 关闭了autoRead时，如果这一次读取的数据不足以解码出一个完整的消息，后续的handler不会收到任何消息，也就不会再调用read()
+            // 因此需要由解码器主动再读取一次，否则连接会一直卡住
+            ctx.read();
+        }
+        firedChannelRead = false;
 
         ctx.fireChannelReadComplete();
     }
@@ -204,7 +260,7 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
     /**
      * 将ByteBuf in中的数据按照既定的规则进行decode解码操作，解码成功后的消息加入out列表
      * <p>
-     * MyNetty暂不支持handler被remove，省略了判断当前handler是否已经被remove的逻辑(ctx.isRemoved()、decodeRemovalReentryProtection等)
+     * 每次向后传播消息以及decode之后，都需要判断当前handler是否已经被移除了(ctx.isRemoved())，被移除后不能再继续解码
      */
     protected void callDecode(MyChannelHandlerContext ctx, MyByteBuf in, List<Object> out) {
         try {
@@ -216,11 +272,28 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
                     fireChannelRead(ctx, out, outSize);
                     // 处理完成后，将out列表及时清理掉
                     out.clear();
+
+                    // Check if this handler was removed before continuing with decoding.
+                    // If it was removed, it is not safe to continue to operate on the buffer.
+                    //
+                    // See:
+                    // - https://github.com/netty/netty/issues/4635
+                    if (ctx.isRemoved()) {
+                        break;
+                    }
                 }
 
                 int oldInputLength = in.readableBytes();
                 // 调用子类实现的自定义解码逻辑
-                decode(ctx, in, out);
+                decodeRemovalReentryProtection(ctx, in, out);
+
+                // Check if this handler was removed before continuing the loop.
+                // If it was removed, it is not safe to continue to operate on the buffer.
+                //
+                // See https://github.com/netty/netty/issues/1664
+                if (ctx.isRemoved()) {
+                    break;
+                }
 
                 if (out.isEmpty()) {
                     if (oldInputLength == in.readableBytes()) {
@@ -245,6 +318,24 @@ public abstract class MyByteToMessageDecoder extends MyChannelEventHandlerAdapte
 
     protected abstract void decode(MyChannelHandlerContext ctx, MyByteBuf in, List<Object> out) throws Exception;
 
+    /**
+     * 调用子类的decode方法，如果decode的过程中当前handler被移除了，在decode返回之后先将已经解码出的消息传播出去，再处理移除的逻辑
+     */
+    final void decodeRemovalReentryProtection(MyChannelHandlerContext ctx, MyByteBuf in, List<Object> out) throws Exception {
+        decodeState = STATE_CALLING_CHILD_DECODE;
+        try {
+            decode(ctx, in, out);
+        } finally {
+            boolean removePending = decodeState == STATE_HANDLER_REMOVED_PENDING;
+            decodeState = STATE_INIT;
+            if (removePending) {
+                fireChannelRead(ctx, out, out.size());
+                out.clear();
+                handlerRemoved(ctx);
+            }
+        }
+    }
+
     static void fireChannelRead(MyChannelHandlerContext ctx, List<Object> msgs, int numElements) {
         if (msgs instanceof MyCodecOutputList) {
             fireChannelRead(ctx, (MyCodecOutputList) msgs, numElements);
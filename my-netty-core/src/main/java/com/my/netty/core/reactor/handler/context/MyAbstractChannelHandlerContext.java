@@ -2,32 +2,91 @@ package com.my.netty.core.reactor.handler.context;
 
 import com.my.netty.bytebuffer.netty.allocator.MyByteBufAllocator;
 import com.my.netty.core.reactor.channel.MyNioChannel;
-import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.eventloop.MyEventExecutor;
+import com.my.netty.core.reactor.eventloop.offload.MyRejectableTask;
 import com.my.netty.core.reactor.handler.MyChannelEventHandler;
 import com.my.netty.core.reactor.handler.mask.MyChannelHandlerMaskManager;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
 import com.my.netty.core.reactor.util.ThrowableUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public abstract class MyAbstractChannelHandlerContext implements MyChannelHandlerContext{
 
     private static final Logger logger = LoggerFactory.getLogger(MyAbstractChannelHandlerContext.class);
 
+    private static final AtomicIntegerFieldUpdater<MyAbstractChannelHandlerContext> HANDLER_STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(MyAbstractChannelHandlerContext.class, "handlerState");
+
+    /**
+     * handlerAdded即将被调用(从其它线程加入pipeline，handlerAdded被提交到了执行器中还未执行)
+     * */
+    private static final int ADD_PENDING = 1;
+    /**
+     * handlerAdded已经被调用
+     * */
+    private static final int ADD_COMPLETE = 2;
+    /**
+     * handlerRemoved已经被调用
+     * */
+    private static final int REMOVE_COMPLETE = 3;
+    /**
+     * 初始状态
+     * */
+    private static final int INIT = 0;
+
+    /**
+     * 跳表的长度，掩码中的每一个bit位对应一个位置
+     * */
+    private static final int SKIP_LINKS_LENGTH = Integer.numberOfTrailingZeros(MyChannelHandlerMaskManager.MASK_FLUSH) + 1;
+
     private final MyChannelPipeline pipeline;
 
+    /**
+     * 在pipeline中唯一的名字
+     * */
+    private final String name;
+
     private final int executionMask;
 
+    /**
+     * 执行当前handler的执行器，为null则代表使用channel所绑定的eventLoop
+     * */
+    private final MyEventExecutor childExecutor;
+
     /**
      * 双向链表前驱/后继节点
+     * pipeline允许在任意线程中增删handler(MyChannelPipeline中加锁修改)，而事件的传播是不加锁的，所以需要是volatile的
+     * 被移除的节点依然保留着自己的prev/next，正在经过它传播的事件可以继续传播下去
+     * */
+    private volatile MyAbstractChannelHandlerContext prev;
+    private volatile MyAbstractChannelHandlerContext next;
+
+    private volatile int handlerState = INIT;
+
+    /**
+     * 预先计算好的跳表，skipLinks[i]为沿着事件传播的方向，下一个能处理掩码第i位所对应事件的节点
+     * 入站事件的位置上存放的是next方向上的节点，出站事件的位置上存放的是prev方向上的节点
+     *
+     * 事件传播时直接取出目标节点，不再需要逐个节点的比对掩码(pipeline中大部分handler都只关心少数几种事件)
+     * 由MyChannelPipeline在每次增删handler时(加锁)整体重新计算，数组发布之后不会再被修改
+     * 为null时(还未被计算过)退化为沿着prev/next逐个查找
      * */
-    private MyAbstractChannelHandlerContext prev;
-    private MyAbstractChannelHandlerContext next;
+    private volatile MyAbstractChannelHandlerContext[] skipLinks;
 
-    public MyAbstractChannelHandlerContext(MyChannelPipeline pipeline, Class<? extends MyChannelEventHandler> handlerClass) {
+    public MyAbstractChannelHandlerContext(MyChannelPipeline pipeline, String name, Class<? extends MyChannelEventHandler> handlerClass) {
+        this(pipeline,null,name,handlerClass);
+    }
+
+    public MyAbstractChannelHandlerContext(MyChannelPipeline pipeline, MyEventExecutor childExecutor, String name, Class<? extends MyChannelEventHandler> handlerClass) {
         this.pipeline = pipeline;
+        this.childExecutor = childExecutor;
+        this.name = name;
 
         this.executionMask = MyChannelHandlerMaskManager.mask(handlerClass);
     }
@@ -54,7 +113,85 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
     }
 
     @Override
-    public MyNioEventLoop executor() {
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean isRemoved() {
+        return handlerState == REMOVE_COMPLETE;
+    }
+
+    public void setAddPending() {
+        boolean updated = HANDLER_STATE_UPDATER.compareAndSet(this, INIT, ADD_PENDING);
+        // This should always be true as it MUST be called before setAddComplete() or setRemoved().
+        assert updated;
+    }
+
+    public void setAddComplete() {
+        for (;;) {
+            int oldState = handlerState;
+            if (oldState == REMOVE_COMPLETE) {
+                return;
+            }
+            // Ensure we never update when the handlerState is REMOVE_COMPLETE already.
+            // oldState is usually ADD_PENDING but can also be REMOVE_COMPLETE when an EventExecutor is used that is not
+            // exposing ordering guarantees.
+            if (HANDLER_STATE_UPDATER.compareAndSet(this, oldState, ADD_COMPLETE)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 回调handler的handlerAdded方法(只能在当前ctx的执行器中调用)
+     * */
+    public void callHandlerAdded() throws Exception {
+        // We must call setAddComplete before calling handlerAdded. Otherwise if the handlerAdded method generates
+        // any pipeline events ctx.handler() will miss them because the state will not allow it.
+        setAddComplete();
+        handler().handlerAdded(this);
+    }
+
+    /**
+     * 回调handler的handlerRemoved方法(只能在当前ctx的执行器中调用)
+     * */
+    public void callHandlerRemoved() throws Exception {
+        try {
+            // Only call handlerRemoved(...) if we called handlerAdded(...) before.
+            if (handlerState == ADD_COMPLETE) {
+                handler().handlerRemoved(this);
+            }
+        } finally {
+            // Mark the handler as removed in any case.
+            handlerState = REMOVE_COMPLETE;
+        }
+    }
+
+    /**
+     * 当前handler是否可以处理事件
+     *
+     * 从其它线程加入pipeline的handler，在handlerAdded被回调之前(ADD_PENDING)不处理任何事件，直接将事件透传给下一个handler
+     * 执行器都是有序的(eventLoop或串行的子执行器)，handlerAdded任务一定先于后续提交的事件执行
+     * */
+    private boolean invokeHandler() {
+        return handlerState == ADD_COMPLETE;
+    }
+
+    /**
+     * 是否指定了非I/O的执行器
+     * */
+    public boolean hasChildExecutor() {
+        return childExecutor != null;
+    }
+
+    @Override
+    public MyEventExecutor executor() {
+        if(childExecutor != null){
+            // 指定了非I/O的执行器，handler的逻辑都由其执行
+            return childExecutor;
+        }
+
         return this.pipeline.getChannel().getMyNioEventLoop();
     }
 
@@ -63,20 +200,84 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
         return channel().config().getAllocator();
     }
 
+    @Override
+    public void fireChannelRegistered() {
+        // 找到当前链条下最近的一个支持channelRegistered方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_CHANNEL_REGISTERED);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            invokeChannelRegistered(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                invokeChannelRegistered(nextHandlerContext);
+            });
+        }
+    }
+
+    @Override
+    public void fireChannelUnregistered() {
+        // 找到当前链条下最近的一个支持channelUnregistered方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_CHANNEL_UNREGISTERED);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            invokeChannelUnregistered(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                invokeChannelUnregistered(nextHandlerContext);
+            });
+        }
+    }
+
+    @Override
+    public void fireChannelActive() {
+        // 找到当前链条下最近的一个支持channelActive方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_CHANNEL_ACTIVE);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            invokeChannelActive(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                invokeChannelActive(nextHandlerContext);
+            });
+        }
+    }
+
+    @Override
+    public void fireChannelInactive() {
+        // 找到当前链条下最近的一个支持channelInactive方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_CHANNEL_INACTIVE);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            invokeChannelInactive(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                invokeChannelInactive(nextHandlerContext);
+            });
+        }
+    }
+
     @Override
     public void fireChannelRead(Object msg) {
         // 找到当前链条下最近的一个支持channelRead方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
         MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_CHANNEL_READ);
 
         // 调用找到的那个ChannelHandlerContext其handler的channelRead方法
-        MyNioEventLoop myNioEventLoop = nextHandlerContext.executor();
-        if(myNioEventLoop.inEventLoop()){
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
             invokeChannelRead(nextHandlerContext,msg);
         }else{
-            // 防并发，每个针对channel的操作都由自己的eventLoop线程去执行
-            myNioEventLoop.execute(()->{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
                 invokeChannelRead(nextHandlerContext,msg);
-            });
+            },msg,null,true);
         }
     }
 
@@ -87,14 +288,15 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
 
         // 调用找到的那个ChannelHandlerContext其handler的exceptionCaught方法
 
-        MyNioEventLoop myNioEventLoop = nextHandlerContext.executor();
-        if(myNioEventLoop.inEventLoop()){
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
             invokeExceptionCaught(nextHandlerContext,cause);
         }else{
-            // 防并发，每个针对channel的操作都由自己的eventLoop线程去执行
-            myNioEventLoop.execute(()->{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            // 异常事件本身被拒绝时只打日志，避免再次触发exceptionCaught导致无限循环
+            safeExecute(nextHandlerContext,()->{
                 invokeExceptionCaught(nextHandlerContext,cause);
-            });
+            },null,null,false);
         }
     }
 
@@ -105,34 +307,71 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
 
         // 调用找到的那个ChannelHandlerContext其handler的channelReadComplete方法
 
-        MyNioEventLoop myNioEventLoop = nextHandlerContext.executor();
-        if(myNioEventLoop.inEventLoop()){
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
             invokeChannelReadComplete(nextHandlerContext);
         }else{
-            // 防并发，每个针对channel的操作都由自己的eventLoop线程去执行
-            myNioEventLoop.execute(()->{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
                 invokeChannelReadComplete(nextHandlerContext);
             });
         }
     }
 
+    @Override
+    public void fireChannelWritabilityChanged() {
+        // 找到当前链条下最近的一个支持channelWritabilityChanged方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_CHANNEL_WRITABILITY_CHANGED);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            invokeChannelWritabilityChanged(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                invokeChannelWritabilityChanged(nextHandlerContext);
+            });
+        }
+    }
+
+    @Override
+    public void fireUserEventTriggered(Object evt) {
+        // 找到当前链条下最近的一个支持userEventTriggered方法的MyAbstractChannelHandlerContext（inbound事件，从前往后找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextInbound(MyChannelHandlerMaskManager.MASK_USER_EVENT_TRIGGERED);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            invokeUserEventTriggered(nextHandlerContext,evt);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                invokeUserEventTriggered(nextHandlerContext,evt);
+            },evt,null,true);
+        }
+    }
+
     @Override
     public void close() {
         // 找到当前链条下最近的一个支持close方法的MyAbstractChannelHandlerContext（outbound事件，从后往前找）
         MyAbstractChannelHandlerContext nextHandlerContext = findContextOutbound(MyChannelHandlerMaskManager.MASK_CLOSE);
 
-        MyNioEventLoop myNioEventLoop = nextHandlerContext.executor();
-        if(myNioEventLoop.inEventLoop()){
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
             doClose(nextHandlerContext);
         }else{
-            // 防并发，每个针对channel的操作都由自己的eventLoop线程去执行
-            myNioEventLoop.execute(()->{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
                 doClose(nextHandlerContext);
             });
         }
     }
 
     private void doClose(MyAbstractChannelHandlerContext nextHandlerContext){
+        if (!nextHandlerContext.invokeHandler()) {
+            nextHandlerContext.close();
+            return;
+        }
+
         try {
             nextHandlerContext.handler().close(nextHandlerContext);
         } catch (Throwable t) {
@@ -140,6 +379,35 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
         }
     }
 
+    @Override
+    public void read() {
+        // 找到当前链条下最近的一个支持read方法的MyAbstractChannelHandlerContext（outbound事件，从后往前找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextOutbound(MyChannelHandlerMaskManager.MASK_READ);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            doRead(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                doRead(nextHandlerContext);
+            });
+        }
+    }
+
+    private void doRead(MyAbstractChannelHandlerContext nextHandlerContext){
+        if (!nextHandlerContext.invokeHandler()) {
+            nextHandlerContext.read();
+            return;
+        }
+
+        try {
+            nextHandlerContext.handler().read(nextHandlerContext);
+        } catch (Throwable t) {
+            logger.error("{} do read error!",nextHandlerContext,t);
+        }
+    }
+
     @Override
     public CompletableFuture<MyNioChannel> write(Object msg, boolean doFlush) {
         CompletableFuture<MyNioChannel> completableFuture = new CompletableFuture<>();
@@ -152,20 +420,31 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
         // 找到当前链条下最近的一个支持write方法的MyAbstractChannelHandlerContext（outbound事件，从后往前找）
         MyAbstractChannelHandlerContext nextHandlerContext = findContextOutbound(MyChannelHandlerMaskManager.MASK_WRITE);
 
-        MyNioEventLoop myNioEventLoop = nextHandlerContext.executor();
-        if(myNioEventLoop.inEventLoop()){
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
             doWrite(nextHandlerContext,msg,doFlush,completableFuture);
         }else{
-            // 防并发，每个针对channel的操作都由自己的eventLoop线程去执行
-            myNioEventLoop.execute(()->{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            // 被拒绝时通过future通知调用方(void future会触发exceptionCaught)
+            safeExecute(nextHandlerContext,()->{
                 doWrite(nextHandlerContext,msg,doFlush,completableFuture);
-            });
+            },msg,completableFuture,false);
         }
 
         return completableFuture;
     }
 
+    @Override
+    public void writeVoid(Object msg, boolean doFlush) {
+        write(msg,doFlush,channel().voidFuture());
+    }
+
     private void doWrite(MyAbstractChannelHandlerContext nextHandlerContext, Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture) {
+        if (!nextHandlerContext.invokeHandler()) {
+            nextHandlerContext.write(msg,doFlush,completableFuture);
+            return;
+        }
+
         try {
             nextHandlerContext.handler().write(nextHandlerContext,msg,doFlush,completableFuture);
         } catch (Throwable t) {
@@ -175,12 +454,160 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
         }
     }
 
+    @Override
+    public void flush() {
+        // 找到当前链条下最近的一个支持flush方法的MyAbstractChannelHandlerContext（outbound事件，从后往前找）
+        MyAbstractChannelHandlerContext nextHandlerContext = findContextOutbound(MyChannelHandlerMaskManager.MASK_FLUSH);
+
+        MyEventExecutor executor = nextHandlerContext.executor();
+        if(executor.inEventLoop()){
+            doFlush(nextHandlerContext);
+        }else{
+            // 防并发，每个针对channel的操作都由自己的eventLoop线程(或串行的子执行器)去执行
+            safeExecute(nextHandlerContext,()->{
+                doFlush(nextHandlerContext);
+            });
+        }
+    }
+
+    private void doFlush(MyAbstractChannelHandlerContext nextHandlerContext){
+        if (!nextHandlerContext.invokeHandler()) {
+            nextHandlerContext.flush();
+            return;
+        }
+
+        try {
+            nextHandlerContext.handler().flush(nextHandlerContext);
+        } catch (Throwable t) {
+            logger.error("{} do flush error!",nextHandlerContext,t);
+        }
+    }
+
+    /**
+     * 将任务提交给ctx对应的执行器执行
+     *
+     * channel可能在任务提交之后、执行之前被迁移到了其它的eventLoop上(MyNioEventLoop.migrate)，
+     * 因此执行前需要再检查一次，如果当前线程已经不是ctx对应的执行线程了，则转交给新的执行器，避免与新的eventLoop并发处理同一个channel
+     * */
+    private static void safeExecute(MyAbstractChannelHandlerContext ctx, Runnable task) {
+        safeExecute(ctx,task,null,null,true);
+    }
+
+    /**
+     * @param msg 任务被拒绝时需要释放的消息
+     * @param completableFuture 任务被拒绝时需要失败掉的future
+     * @param fireExceptionOnReject 任务被拒绝时，是否通过pipeline的exceptionCaught事件通知
+     * */
+    private static void safeExecute(MyAbstractChannelHandlerContext ctx, Runnable task, Object msg,
+                                    CompletableFuture<MyNioChannel> completableFuture, boolean fireExceptionOnReject) {
+        try {
+            ctx.executor().execute(new MyRejectableTask() {
+                @Override
+                public void run() {
+                    MyEventExecutor executor = ctx.executor();
+                    if(executor.inEventLoop()){
+                        task.run();
+                    }else{
+                        executor.execute(this);
+                    }
+                }
+
+                @Override
+                public void onRejected(RejectedExecutionException e) {
+                    // 已经进入了串行子执行器的队列，但最终被放弃了(见MySerialEventExecutor)
+                    onTaskRejected(ctx, e, msg, completableFuture, fireExceptionOnReject);
+                }
+            });
+        }catch (RejectedExecutionException e){
+            onTaskRejected(ctx, e, msg, completableFuture, fireExceptionOnReject);
+        }
+    }
+
+    private static void onTaskRejected(MyAbstractChannelHandlerContext ctx, RejectedExecutionException e, Object msg,
+                                       CompletableFuture<MyNioChannel> completableFuture, boolean fireExceptionOnReject) {
+        // 执行器拒绝了任务(比如卸载handler的有界线程池已满)，事件被丢弃，不能退化为在当前线程(可能是eventLoop线程)中执行
+        logger.warn("{} executor rejected the task, event dropped",ctx,e);
+        try {
+            if(msg != null){
+                MyReferenceCountUtil.safeRelease(msg);
+            }
+        } finally {
+            if(completableFuture != null){
+                completableFuture.completeExceptionally(e);
+            }
+            if(fireExceptionOnReject){
+                ctx.getPipeline().fireExceptionCaught(e);
+            }
+        }
+    }
+
     @Override
     public MyChannelPipeline getPipeline() {
         return pipeline;
     }
 
+    public static void invokeChannelRegistered(MyAbstractChannelHandlerContext next) {
+        if (!next.invokeHandler()) {
+            next.fireChannelRegistered();
+            return;
+        }
+
+        try {
+            next.handler().channelRegistered(next);
+        }catch (Throwable t){
+            // 处理抛出的异常
+            next.invokeExceptionCaught(t);
+        }
+    }
+
+    public static void invokeChannelUnregistered(MyAbstractChannelHandlerContext next) {
+        if (!next.invokeHandler()) {
+            next.fireChannelUnregistered();
+            return;
+        }
+
+        try {
+            next.handler().channelUnregistered(next);
+        }catch (Throwable t){
+            // 处理抛出的异常
+            next.invokeExceptionCaught(t);
+        }
+    }
+
+    public static void invokeChannelActive(MyAbstractChannelHandlerContext next) {
+        if (!next.invokeHandler()) {
+            next.fireChannelActive();
+            return;
+        }
+
+        try {
+            next.handler().channelActive(next);
+        }catch (Throwable t){
+            // 处理抛出的异常
+            next.invokeExceptionCaught(t);
+        }
+    }
+
+    public static void invokeChannelInactive(MyAbstractChannelHandlerContext next) {
+        if (!next.invokeHandler()) {
+            next.fireChannelInactive();
+            return;
+        }
+
+        try {
+            next.handler().channelInactive(next);
+        }catch (Throwable t){
+            // 处理抛出的异常
+            next.invokeExceptionCaught(t);
+        }
+    }
+
     public static void invokeChannelRead(MyAbstractChannelHandlerContext next, Object msg) {
+        if (!next.invokeHandler()) {
+            next.fireChannelRead(msg);
+            return;
+        }
+
         try {
             next.handler().channelRead(next, msg);
         }catch (Throwable t){
@@ -190,6 +617,11 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
     }
 
     public static void invokeChannelReadComplete(MyAbstractChannelHandlerContext next) {
+        if (!next.invokeHandler()) {
+            next.fireChannelReadComplete();
+            return;
+        }
+
         try {
             next.handler().channelReadComplete(next);
         }catch (Throwable t){
@@ -198,11 +630,44 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
         }
     }
 
+    public static void invokeChannelWritabilityChanged(MyAbstractChannelHandlerContext next) {
+        if (!next.invokeHandler()) {
+            next.fireChannelWritabilityChanged();
+            return;
+        }
+
+        try {
+            next.handler().channelWritabilityChanged(next);
+        }catch (Throwable t){
+            // 处理抛出的异常
+            next.invokeExceptionCaught(t);
+        }
+    }
+
+    public static void invokeUserEventTriggered(MyAbstractChannelHandlerContext next, Object evt) {
+        if (!next.invokeHandler()) {
+            next.fireUserEventTriggered(evt);
+            return;
+        }
+
+        try {
+            next.handler().userEventTriggered(next, evt);
+        }catch (Throwable t){
+            // 处理抛出的异常
+            next.invokeExceptionCaught(t);
+        }
+    }
+
     public static void invokeExceptionCaught(MyAbstractChannelHandlerContext next, Throwable cause) {
         next.invokeExceptionCaught(cause);
     }
 
     private void invokeExceptionCaught(final Throwable cause) {
+        if (!invokeHandler()) {
+            fireExceptionCaught(cause);
+            return;
+        }
+
         try {
             this.handler().exceptionCaught(this, cause);
         } catch (Throwable error) {
@@ -215,7 +680,87 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
         }
     }
 
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + '(' + name + ", " + channel() + ')';
+    }
+
+    /**
+     * 重新计算head到tail之间所有节点的跳表(只能在pipeline加锁修改链表之后调用)
+     * */
+    public static void rebuildSkipLinks(MyAbstractChannelHandlerContext head, MyAbstractChannelHandlerContext tail) {
+        // 先全部计算完，再统一发布
+        int size = 0;
+        for (MyAbstractChannelHandlerContext ctx = head; ctx != null; ctx = ctx.next) {
+            size++;
+        }
+        MyAbstractChannelHandlerContext[][] allLinks = new MyAbstractChannelHandlerContext[size][];
+
+        // inbound事件，从tail往head方向，记录每一种事件在当前节点之后最近的处理节点
+        MyAbstractChannelHandlerContext[] nearest = new MyAbstractChannelHandlerContext[SKIP_LINKS_LENGTH];
+        int index = size;
+        for (MyAbstractChannelHandlerContext ctx = tail; ctx != null; ctx = ctx.prev) {
+            MyAbstractChannelHandlerContext[] links = new MyAbstractChannelHandlerContext[SKIP_LINKS_LENGTH];
+            copyLinks(nearest, links, MyChannelHandlerMaskManager.MASK_ALL_INBOUND);
+            updateNearest(nearest, ctx, MyChannelHandlerMaskManager.MASK_ALL_INBOUND);
+            allLinks[--index] = links;
+        }
+
+        // outbound事件，从head往tail方向，记录每一种事件在当前节点之前最近的处理节点
+        nearest = new MyAbstractChannelHandlerContext[SKIP_LINKS_LENGTH];
+        index = 0;
+        for (MyAbstractChannelHandlerContext ctx = head; ctx != null; ctx = ctx.next) {
+            copyLinks(nearest, allLinks[index++], MyChannelHandlerMaskManager.MASK_ALL_OUTBOUND);
+            updateNearest(nearest, ctx, MyChannelHandlerMaskManager.MASK_ALL_OUTBOUND);
+        }
+
+        index = 0;
+        for (MyAbstractChannelHandlerContext ctx = head; ctx != null; ctx = ctx.next) {
+            ctx.skipLinks = allLinks[index++];
+        }
+    }
+
+    /**
+     * 当前节点被移出pipeline之后，让其跳表指向被移除时所处位置前后的节点(prev/next为移除后，原位置前后的节点)
+     * 与保留prev/next的目的一样，正在经过它传播的事件可以继续传播下去
+     * */
+    public void relinkRemoved(MyAbstractChannelHandlerContext prev, MyAbstractChannelHandlerContext next) {
+        MyAbstractChannelHandlerContext[] links = new MyAbstractChannelHandlerContext[SKIP_LINKS_LENGTH];
+        for (int i = 0; i < SKIP_LINKS_LENGTH; i++) {
+            int mask = 1 << i;
+            if ((MyChannelHandlerMaskManager.MASK_ALL_INBOUND & mask) != 0) {
+                links[i] = needSkipContext(next, mask) ? next.skipLinks[i] : next;
+            } else if ((MyChannelHandlerMaskManager.MASK_ALL_OUTBOUND & mask) != 0) {
+                links[i] = needSkipContext(prev, mask) ? prev.skipLinks[i] : prev;
+            }
+        }
+        this.skipLinks = links;
+    }
+
+    private static void copyLinks(MyAbstractChannelHandlerContext[] from, MyAbstractChannelHandlerContext[] to, int directionMask) {
+        for (int i = 0; i < SKIP_LINKS_LENGTH; i++) {
+            if ((directionMask & (1 << i)) != 0) {
+                to[i] = from[i];
+            }
+        }
+    }
+
+    private static void updateNearest(MyAbstractChannelHandlerContext[] nearest, MyAbstractChannelHandlerContext ctx, int directionMask) {
+        for (int i = 0; i < SKIP_LINKS_LENGTH; i++) {
+            int mask = 1 << i;
+            if ((directionMask & mask) != 0 && !needSkipContext(ctx, mask)) {
+                nearest[i] = ctx;
+            }
+        }
+    }
+
     private MyAbstractChannelHandlerContext findContextInbound(int mask) {
+        MyAbstractChannelHandlerContext[] links = this.skipLinks;
+        if (links != null) {
+            // mask在调用处都是常量，numberOfTrailingZeros会被jit优化掉
+            return links[Integer.numberOfTrailingZeros(mask)];
+        }
+
         MyAbstractChannelHandlerContext ctx = this;
         do {
             // inbound事件，从前往后找
@@ -226,6 +771,11 @@ public abstract class MyAbstractChannelHandlerContext implements MyChannelHandle
     }
 
     private MyAbstractChannelHandlerContext findContextOutbound(int mask) {
+        MyAbstractChannelHandlerContext[] links = this.skipLinks;
+        if (links != null) {
+            return links[Integer.numberOfTrailingZeros(mask)];
+        }
+
         MyAbstractChannelHandlerContext ctx = this;
         do {
             // outbound事件，从后往前找
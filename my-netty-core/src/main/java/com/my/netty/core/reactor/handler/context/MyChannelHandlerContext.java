@@ -3,7 +3,7 @@ package com.my.netty.core.reactor.handler.context;
 
 import com.my.netty.bytebuffer.netty.allocator.MyByteBufAllocator;
 import com.my.netty.core.reactor.channel.MyNioChannel;
-import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.eventloop.MyEventExecutor;
 import com.my.netty.core.reactor.handler.MyChannelEventHandler;
 import com.my.netty.core.reactor.handler.MyChannelEventInvoker;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
@@ -13,6 +13,16 @@ import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
  * */
 public interface MyChannelHandlerContext extends MyChannelEventInvoker {
 
+    /**
+     * 获得当前上下文在pipeline中唯一的名字
+     * */
+    String name();
+
+    /**
+     * 当前上下文对应的handler是否已经被从pipeline中移除了
+     * */
+    boolean isRemoved();
+
     /**
      * 获得当前的渠道
      * */
@@ -29,9 +39,9 @@ public interface MyChannelHandlerContext extends MyChannelEventInvoker {
     MyChannelPipeline getPipeline();
 
     /**
-     * 获得当前上下文所对应的执行单元(EventLoop)
+     * 获得当前上下文所对应的执行单元(默认是channel绑定的EventLoop，也可以是添加handler时指定的非I/O执行器)
      * */
-    MyNioEventLoop executor();
+    MyEventExecutor executor();
 
     /**
      * 获得ByteBufAllocator
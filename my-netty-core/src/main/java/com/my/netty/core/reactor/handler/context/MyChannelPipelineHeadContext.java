@@ -12,8 +12,41 @@ import java.util.concurrent.CompletableFuture;
  * */
 public class MyChannelPipelineHeadContext extends MyAbstractChannelHandlerContext implements MyChannelEventHandler {
 
+    private static final String HEAD_NAME = "MyChannelPipelineHeadContext#0";
+
     public MyChannelPipelineHeadContext(MyChannelPipeline pipeline) {
-        super(pipeline,MyChannelPipelineHeadContext.class);
+        super(pipeline,HEAD_NAME,MyChannelPipelineHeadContext.class);
+        setAddComplete();
+    }
+
+    @Override
+    public void handlerAdded(MyChannelHandlerContext ctx) {
+        // NOOP
+    }
+
+    @Override
+    public void handlerRemoved(MyChannelHandlerContext ctx) {
+        // NOOP
+    }
+
+    @Override
+    public void channelRegistered(MyChannelHandlerContext ctx) {
+        ctx.fireChannelRegistered();
+    }
+
+    @Override
+    public void channelUnregistered(MyChannelHandlerContext ctx) {
+        ctx.fireChannelUnregistered();
+    }
+
+    @Override
+    public void channelActive(MyChannelHandlerContext ctx) {
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(MyChannelHandlerContext ctx) {
+        ctx.fireChannelInactive();
     }
 
     @Override
@@ -31,10 +64,26 @@ public class MyChannelPipelineHeadContext extends MyAbstractChannelHandlerContex
         ctx.fireExceptionCaught(cause);
     }
 
+    @Override
+    public void channelWritabilityChanged(MyChannelHandlerContext ctx) {
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) {
+        ctx.fireUserEventTriggered(evt);
+    }
+
     @Override
     public void close(MyChannelHandlerContext ctx) throws Exception {
-        // 调用jdk原生的channel方法，关闭掉连接
-        ctx.getPipeline().getChannel().getJavaChannel().close();
+        // 调用jdk原生的channel方法，关闭掉连接，并从eventLoop上注销
+        ctx.getPipeline().getChannel().doClose();
+    }
+
+    @Override
+    public void read(MyChannelHandlerContext ctx) {
+        // head是最后一个outBoundHandler，开始监听OP_READ事件
+        ctx.getPipeline().getChannel().beginRead();
     }
 
     @Override
@@ -43,6 +92,12 @@ public class MyChannelPipelineHeadContext extends MyAbstractChannelHandlerContex
         ctx.getPipeline().getChannel().doWrite(msg,doFlush,completableFuture);
     }
 
+    @Override
+    public void flush(MyChannelHandlerContext ctx) {
+        // head是最后一个outBoundHandler，将outboundBuffer中积压的消息全部flush出去
+        ctx.getPipeline().getChannel().flushPendingWrites();
+    }
+
     @Override
     public MyChannelEventHandler handler() {
         return this;
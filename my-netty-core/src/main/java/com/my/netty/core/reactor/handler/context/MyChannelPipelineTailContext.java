@@ -3,6 +3,7 @@ package com.my.netty.core.reactor.handler.context;
 import com.my.netty.core.reactor.channel.MyNioChannel;
 import com.my.netty.core.reactor.handler.MyChannelEventHandler;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,8 +16,41 @@ public class MyChannelPipelineTailContext extends MyAbstractChannelHandlerContex
 
     private static final Logger logger = LoggerFactory.getLogger(MyChannelPipelineTailContext.class);
 
+    private static final String TAIL_NAME = "MyChannelPipelineTailContext#0";
+
     public MyChannelPipelineTailContext(MyChannelPipeline pipeline) {
-        super(pipeline, MyChannelPipelineTailContext.class);
+        super(pipeline, TAIL_NAME, MyChannelPipelineTailContext.class);
+        setAddComplete();
+    }
+
+    @Override
+    public void handlerAdded(MyChannelHandlerContext ctx) {
+        // NOOP
+    }
+
+    @Override
+    public void handlerRemoved(MyChannelHandlerContext ctx) {
+        // NOOP
+    }
+
+    @Override
+    public void channelRegistered(MyChannelHandlerContext ctx) {
+        // 生命周期事件传播到了tail节点，说明没有handler关心，直接忽略即可
+    }
+
+    @Override
+    public void channelUnregistered(MyChannelHandlerContext ctx) {
+        // NOOP
+    }
+
+    @Override
+    public void channelActive(MyChannelHandlerContext ctx) {
+        // NOOP
+    }
+
+    @Override
+    public void channelInactive(MyChannelHandlerContext ctx) {
+        // NOOP
     }
 
     @Override
@@ -37,18 +71,39 @@ public class MyChannelPipelineTailContext extends MyAbstractChannelHandlerContex
         onUnhandledInboundException(cause);
     }
 
+    @Override
+    public void channelWritabilityChanged(MyChannelHandlerContext ctx) {
+        // 可写状态变化事件传播到了tail节点，说明没有handler关心，直接忽略即可
+    }
+
+    @Override
+    public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) {
+        // 用户事件传播到了tail节点，说明没有handler处理，如果是引用计数对象需要释放掉，避免内存泄露
+        MyReferenceCountUtil.safeRelease(evt);
+    }
+
     @Override
     public void close(MyChannelHandlerContext ctx) throws Exception {
         // do nothing
         logger.info("close op, tail context do nothing");
     }
 
+    @Override
+    public void read(MyChannelHandlerContext ctx) throws Exception {
+        // do nothing
+    }
+
     @Override
     public void write(MyChannelHandlerContext ctx, Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture) throws Exception {
         // do nothing
         logger.info("write op, tail context do nothing");
     }
 
+    @Override
+    public void flush(MyChannelHandlerContext ctx) throws Exception {
+        // do nothing
+    }
+
     @Override
     public MyChannelEventHandler handler() {
         return this;
@@ -1,6 +1,7 @@
 package com.my.netty.core.reactor.handler.context;
 
 
+import com.my.netty.core.reactor.eventloop.MyEventExecutor;
 import com.my.netty.core.reactor.handler.MyChannelEventHandler;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
 
@@ -8,8 +9,13 @@ public class MyDefaultChannelHandlerContext extends MyAbstractChannelHandlerCont
 
     private final MyChannelEventHandler handler;
 
-    public MyDefaultChannelHandlerContext(MyChannelPipeline pipeline, MyChannelEventHandler handler) {
-        super(pipeline, handler.getClass());
+    public MyDefaultChannelHandlerContext(MyChannelPipeline pipeline, String name, MyChannelEventHandler handler) {
+        super(pipeline, name, handler.getClass());
+        this.handler = handler;
+    }
+
+    public MyDefaultChannelHandlerContext(MyChannelPipeline pipeline, MyEventExecutor childExecutor, String name, MyChannelEventHandler handler) {
+        super(pipeline, childExecutor, name, handler.getClass());
         this.handler = handler;
     }
 
@@ -0,0 +1,166 @@
+package com.my.netty.core.reactor.handler.flush;
+
+import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 参考netty的FlushConsolidationHandler，合并flush操作，减少write系统调用的次数
+ *
+ * 在一次read事件的处理过程中(channelRead到channelReadComplete之间)，业务handler每处理一个请求往往就会writeAndFlush一次响应，
+ * 对于pipeline化的rpc请求，一次read可能读到几十上百个请求，每次flush都对应一次socketChannel.write系统调用
+ * 该handler会将read过程中的flush先攒起来，等到channelReadComplete时再统一flush一次，积压的响应通过一次gathering write写出
+ *
+ * 1. read过程中的flush，每攒够explicitFlushAfterFlushes次强制flush一次，避免积压过多的数据
+ * 2. 不在read过程中的flush(比如业务线程异步写出的响应)，默认直接flush；
+ *    consolidateWhenNoReadInProgress为true时，则提交一个flush任务到eventLoop中，在同一轮任务里的多次flush会被合并
+ *
+ * MyNetty中write(msg, doFlush=true)相当于netty的writeAndFlush，所以这里也会拦截write，将其拆分为write + flush
+ * 需要添加在pipeline中靠近head的位置(所有会writeAndFlush的handler的前面)，才能拦截到所有的flush操作
+ * 该handler是有状态的，不能在多个channel之间共享
+ * */
+public class MyFlushConsolidationHandler extends MyChannelEventHandlerAdapter {
+
+    public static final int DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES = 256;
+
+    private final int explicitFlushAfterFlushes;
+    private final boolean consolidateWhenNoReadInProgress;
+
+    private final Runnable flushTask;
+
+    /**
+     * 被攒下来，还没有真正执行的flush次数
+     * */
+    private int flushPendingCount;
+
+    /**
+     * 当前是否处于一次read的过程中
+     * */
+    private boolean readInProgress;
+
+    /**
+     * 是否已经提交了一个还未执行的flush任务
+     * */
+    private boolean flushScheduled;
+
+    private MyChannelHandlerContext ctx;
+
+    public MyFlushConsolidationHandler() {
+        this(DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, false);
+    }
+
+    public MyFlushConsolidationHandler(int explicitFlushAfterFlushes) {
+        this(explicitFlushAfterFlushes, false);
+    }
+
+    public MyFlushConsolidationHandler(int explicitFlushAfterFlushes, boolean consolidateWhenNoReadInProgress) {
+        if (explicitFlushAfterFlushes <= 0) {
+            throw new IllegalArgumentException("explicitFlushAfterFlushes: " + explicitFlushAfterFlushes + " (expected: > 0)");
+        }
+        this.explicitFlushAfterFlushes = explicitFlushAfterFlushes;
+        this.consolidateWhenNoReadInProgress = consolidateWhenNoReadInProgress;
+        this.flushTask = consolidateWhenNoReadInProgress ? () -> {
+            flushScheduled = false;
+            if (flushPendingCount > 0 && !readInProgress) {
+                flushNow(ctx);
+            }
+        } : null;
+    }
+
+    @Override
+    public void handlerRemoved(MyChannelHandlerContext ctx) throws Exception {
+        // 被移除时，把攒下来的flush执行掉，否则已经write的数据要等到下一次flush才会被写出
+        flushIfNeeded(ctx);
+    }
+
+    @Override
+    public void write(MyChannelHandlerContext ctx, Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture) throws Exception {
+        // 拆分为write + flush，flush交给当前handler决定是否立即执行
+        ctx.write(msg, false, completableFuture);
+        if (doFlush) {
+            flush(ctx);
+        }
+    }
+
+    @Override
+    public void flush(MyChannelHandlerContext ctx) throws Exception {
+        if (readInProgress) {
+            // read过程中的flush先攒起来，在channelReadComplete中统一flush
+            if (++flushPendingCount == explicitFlushAfterFlushes) {
+                flushNow(ctx);
+            }
+        } else if (consolidateWhenNoReadInProgress) {
+            // 不在read过程中，提交一个flush任务，合并同一轮任务里的flush
+            if (++flushPendingCount == explicitFlushAfterFlushes) {
+                flushNow(ctx);
+            } else {
+                scheduleFlush(ctx);
+            }
+        } else {
+            // 不在read过程中，直接flush
+            flushNow(ctx);
+        }
+    }
+
+    @Override
+    public void channelRead(MyChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(MyChannelHandlerContext ctx) throws Exception {
+        // read过程结束，将攒下来的flush一次性执行
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void exceptionCaught(MyChannelHandlerContext ctx, Throwable cause) throws Exception {
+        // 异常时也可能触发不了channelReadComplete，先把攒下来的flush执行掉
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void close(MyChannelHandlerContext ctx) throws Exception {
+        // 关闭前，先把攒下来的数据flush出去
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.close();
+    }
+
+    @Override
+    public void channelWritabilityChanged(MyChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // 变为不可写时，说明积压的数据已经超过了高水位线，立即flush
+            flushIfNeeded(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private void resetReadAndFlushIfNeeded(MyChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfNeeded(ctx);
+    }
+
+    private void flushIfNeeded(MyChannelHandlerContext ctx) {
+        if (flushPendingCount > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(MyChannelHandlerContext ctx) {
+        flushPendingCount = 0;
+        ctx.flush();
+    }
+
+    private void scheduleFlush(MyChannelHandlerContext ctx) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            this.ctx = ctx;
+            ctx.executor().execute(flushTask);
+        }
+    }
+}
@@ -1,15 +1,10 @@
 package com.my.netty.core.reactor.handler.mask;
 
 import com.my.netty.core.reactor.handler.MyChannelEventHandler;
-import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
 import com.my.netty.core.reactor.handler.annotation.Skip;
 import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -19,8 +14,6 @@ import java.util.concurrent.CompletableFuture;
  * */
 public class MyChannelHandlerMaskManager {
 
-    private static final Logger logger = LoggerFactory.getLogger(MyChannelHandlerMaskManager.class);
-
     public static final int MASK_EXCEPTION_CAUGHT = 1;
 
     // ==================== inbound ==========================
@@ -30,8 +23,8 @@ public class MyChannelHandlerMaskManager {
     public static final int MASK_CHANNEL_INACTIVE = 1 << 4;
     public static final int MASK_CHANNEL_READ = 1 << 5;
     public static final int MASK_CHANNEL_READ_COMPLETE = 1 << 6;
-//    static final int MASK_USER_EVENT_TRIGGERED = 1 << 7;
-//    static final int MASK_CHANNEL_WRITABILITY_CHANGED = 1 << 8;
+    public static final int MASK_USER_EVENT_TRIGGERED = 1 << 7;
+    public static final int MASK_CHANNEL_WRITABILITY_CHANGED = 1 << 8;
 
     // ===================== outbound =========================
     public static final int MASK_BIND = 1 << 9;
@@ -43,20 +36,28 @@ public class MyChannelHandlerMaskManager {
     public static final int MASK_WRITE = 1 << 15;
     public static final int MASK_FLUSH = 1 << 16;
 
-    private static final ThreadLocal<Map<Class<? extends MyChannelEventHandler>, Integer>> MASKS =
-        ThreadLocal.withInitial(() -> new WeakHashMap<>(32));
+    public static final int MASK_ALL_INBOUND = MASK_EXCEPTION_CAUGHT | MASK_CHANNEL_REGISTERED |
+        MASK_CHANNEL_UNREGISTERED | MASK_CHANNEL_ACTIVE | MASK_CHANNEL_INACTIVE | MASK_CHANNEL_READ |
+        MASK_CHANNEL_READ_COMPLETE | MASK_USER_EVENT_TRIGGERED | MASK_CHANNEL_WRITABILITY_CHANGED;
+    public static final int MASK_ALL_OUTBOUND = MASK_BIND | MASK_CONNECT | MASK_CLOSE | MASK_READ | MASK_WRITE | MASK_FLUSH;
+
+    /**
+     * 全局的掩码缓存
+     *
+     * 对于非共享的handler，会随着channel的创建而被大量创建，为了避免反复的计算同样类型handler的mask掩码而引入缓存
+     * ClassValue是jdk为"给类附加一个计算结果"专门提供的机制，读取时无锁，并且不会阻止handler类被卸载(不需要再用WeakHashMap)
+     * 与之前每个线程一份的ThreadLocal缓存相比，每个handler类在整个进程中只需要计算一次
+     * */
+    private static final ClassValue<Integer> MASKS = new ClassValue<Integer>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Integer computeValue(Class<?> type) {
+            return calculateChannelHandlerMask((Class<? extends MyChannelEventHandler>) type);
+        }
+    };
 
     public static int mask(Class<? extends MyChannelEventHandler> clazz) {
-        // 对于非共享的handler，会随着channel的创建而被大量创建
-        // 为了避免反复的计算同样类型handler的mask掩码而引入缓存，优先从缓存中获得对应处理器类的掩码
-        Map<Class<? extends MyChannelEventHandler>, Integer> cache = MASKS.get();
-        Integer mask = cache.get(clazz);
-        if (mask == null) {
-            // 缓存中不存在，计算出对应类型的掩码值
-            mask = calculateChannelHandlerMask(clazz);
-            cache.put(clazz, mask);
-        }
-        return mask;
+        return MASKS.get(clazz);
     }
 
     private static int calculateChannelHandlerMask(Class<? extends MyChannelEventHandler> handlerType) {
@@ -64,6 +65,28 @@ public class MyChannelHandlerMaskManager {
 
         // MyChannelEventHandler中的方法一一对应，如果支持就通过掩码的或运算将对应的bit位设置为1
 
+        if(!needSkip(handlerType,"exceptionCaught", MyChannelHandlerContext.class,Throwable.class)){
+            mask |= MASK_EXCEPTION_CAUGHT;
+        }
+
+        // ==================== inbound ==========================
+
+        if(!needSkip(handlerType,"channelRegistered", MyChannelHandlerContext.class)){
+            mask |= MASK_CHANNEL_REGISTERED;
+        }
+
+        if(!needSkip(handlerType,"channelUnregistered", MyChannelHandlerContext.class)){
+            mask |= MASK_CHANNEL_UNREGISTERED;
+        }
+
+        if(!needSkip(handlerType,"channelActive", MyChannelHandlerContext.class)){
+            mask |= MASK_CHANNEL_ACTIVE;
+        }
+
+        if(!needSkip(handlerType,"channelInactive", MyChannelHandlerContext.class)){
+            mask |= MASK_CHANNEL_INACTIVE;
+        }
+
         if(!needSkip(handlerType,"channelRead", MyChannelHandlerContext.class,Object.class)){
             mask |= MASK_CHANNEL_READ;
         }
@@ -72,18 +95,32 @@ public class MyChannelHandlerMaskManager {
             mask |= MASK_CHANNEL_READ_COMPLETE;
         }
 
-        if(!needSkip(handlerType,"exceptionCaught", MyChannelHandlerContext.class,Throwable.class)){
-            mask |= MASK_EXCEPTION_CAUGHT;
+        if(!needSkip(handlerType,"userEventTriggered", MyChannelHandlerContext.class, Object.class)){
+            mask |= MASK_USER_EVENT_TRIGGERED;
         }
 
+        if(!needSkip(handlerType,"channelWritabilityChanged", MyChannelHandlerContext.class)){
+            mask |= MASK_CHANNEL_WRITABILITY_CHANGED;
+        }
+
+        // ===================== outbound =========================
+
         if(!needSkip(handlerType,"close", MyChannelHandlerContext.class)){
             mask |= MASK_CLOSE;
         }
 
+        if(!needSkip(handlerType,"read", MyChannelHandlerContext.class)){
+            mask |= MASK_READ;
+        }
+
         if(!needSkip(handlerType,"write", MyChannelHandlerContext.class, Object.class, boolean.class, CompletableFuture.class)){
             mask |= MASK_WRITE;
         }
 
+        if(!needSkip(handlerType,"flush", MyChannelHandlerContext.class)){
+            mask |= MASK_FLUSH;
+        }
+
         return mask;
     }
 
@@ -94,8 +131,8 @@ public class MyChannelHandlerMaskManager {
             // 如果有skip注解，说明需要跳过
             return method.isAnnotationPresent(Skip.class);
         } catch (NoSuchMethodException e) {
-            // 没有这个方法，就不需要设置掩码
-            return false;
+            // 没有这个方法(MyChannelEventHandler中还没有定义对应的事件)，handler不可能处理该事件，需要跳过
+            return true;
         }
     }
 }
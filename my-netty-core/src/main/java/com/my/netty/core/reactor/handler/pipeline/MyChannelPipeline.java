@@ -1,18 +1,25 @@
 package com.my.netty.core.reactor.handler.pipeline;
 
 
+import com.my.netty.bytebuffer.netty.util.ObjectUtil;
 import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.eventloop.MyEventExecutor;
+import com.my.netty.core.reactor.eventloop.offload.MyOffloadExecutorGroup;
 import com.my.netty.core.reactor.exception.MyNettyException;
 import com.my.netty.core.reactor.handler.MyChannelEventHandler;
 import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
 import com.my.netty.core.reactor.handler.MyChannelEventInvoker;
 import com.my.netty.core.reactor.handler.context.MyAbstractChannelHandlerContext;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
 import com.my.netty.core.reactor.handler.context.MyChannelPipelineHeadContext;
 import com.my.netty.core.reactor.handler.context.MyChannelPipelineTailContext;
 import com.my.netty.core.reactor.handler.context.MyDefaultChannelHandlerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -43,6 +50,28 @@ public class MyChannelPipeline implements MyChannelEventInvoker {
 
         head.setNext(tail);
         tail.setPrev(head);
+        MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+    }
+
+    @Override
+    public void fireChannelRegistered() {
+        // 生命周期事件也都从head节点开始传播(入站)
+        MyAbstractChannelHandlerContext.invokeChannelRegistered(head);
+    }
+
+    @Override
+    public void fireChannelUnregistered() {
+        MyAbstractChannelHandlerContext.invokeChannelUnregistered(head);
+    }
+
+    @Override
+    public void fireChannelActive() {
+        MyAbstractChannelHandlerContext.invokeChannelActive(head);
+    }
+
+    @Override
+    public void fireChannelInactive() {
+        MyAbstractChannelHandlerContext.invokeChannelInactive(head);
     }
 
     @Override
@@ -58,8 +87,20 @@ public class MyChannelPipeline implements MyChannelEventInvoker {
 
     @Override
     public void fireExceptionCaught(Throwable cause) {
-        // 异常传播到了pipeline的末尾，打印异常信息
-        onUnhandledInboundException(cause);
+        // 从head节点开始传播异常事件(入站)，没有handler处理时由tail节点打印异常信息
+        MyAbstractChannelHandlerContext.invokeExceptionCaught(head, cause);
+    }
+
+    @Override
+    public void fireChannelWritabilityChanged() {
+        // 从head节点开始传播可写状态变化事件(入站)
+        MyAbstractChannelHandlerContext.invokeChannelWritabilityChanged(head);
+    }
+
+    @Override
+    public void fireUserEventTriggered(Object evt) {
+        // 从head节点开始传播用户自定义事件(入站)
+        MyAbstractChannelHandlerContext.invokeUserEventTriggered(head, evt);
     }
 
     @Override
@@ -68,6 +109,24 @@ public class MyChannelPipeline implements MyChannelEventInvoker {
         tail.close();
     }
 
+    @Override
+    public void writeVoid(Object msg, boolean doFlush) {
+        // 出站事件，从尾节点向头结点传播
+        tail.writeVoid(msg,doFlush);
+    }
+
+    @Override
+    public void flush() {
+        // 出站事件，从尾节点向头结点传播
+        tail.flush();
+    }
+
+    @Override
+    public void read() {
+        // 出站事件，从尾节点向头结点传播
+        tail.read();
+    }
+
     @Override
     public CompletableFuture<MyNioChannel> write(Object msg, boolean doFlush) {
         return tail.write(msg,doFlush);
@@ -78,31 +137,388 @@ public class MyChannelPipeline implements MyChannelEventInvoker {
         return tail.write(msg,doFlush,completableFuture);
     }
 
-    public void addFirst(MyChannelEventHandler handler){
-        // 非sharable的handler是否重复加入的校验
-        checkMultiplicity(handler);
+    public MyChannelPipeline addFirst(MyChannelEventHandler handler){
+        return addFirst(null,handler);
+    }
+
+    public MyChannelPipeline addFirst(String name, MyChannelEventHandler handler){
+        MyAbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            // 非sharable的handler是否重复加入的校验
+            checkMultiplicity(handler);
+
+            newCtx = newContext(filterName(name, handler), handler);
+
+            // 加入链表头部节点之后
+            MyAbstractChannelHandlerContext nextCtx = head.getNext();
+            newCtx.setPrev(head);
+            newCtx.setNext(nextCtx);
+            head.setNext(newCtx);
+            nextCtx.setPrev(newCtx);
+            MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+        }
+
+        callHandlerAdded(newCtx);
+        return this;
+    }
+
+    public MyChannelPipeline addLast(MyChannelEventHandler handler){
+        return addLast(null,null,handler);
+    }
+
+    public MyChannelPipeline addLast(String name, MyChannelEventHandler handler){
+        return addLast(null,name,handler);
+    }
+
+    /**
+     * 将handler加入pipeline尾部，并且该handler的事件都交给group中的非I/O线程执行
+     *
+     * 适用于会调用阻塞服务的handler，避免阻塞eventLoop线程(也就阻塞了同一eventLoop上的所有channel)
+     * 每个channel的该handler都会分配一个串行的子执行器，保证同一channel的事件依然是按顺序处理的
+     *
+     * @param group 为null则和addLast(handler)一致，由channel的eventLoop执行
+     * */
+    public MyChannelPipeline addLast(MyOffloadExecutorGroup group, MyChannelEventHandler handler){
+        return addLast(group,null,handler);
+    }
 
-        MyAbstractChannelHandlerContext newCtx = newContext(handler);
+    public MyChannelPipeline addLast(MyOffloadExecutorGroup group, String name, MyChannelEventHandler handler){
+        MyAbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            // 非sharable的handler是否重复加入的校验
+            checkMultiplicity(handler);
 
-        MyAbstractChannelHandlerContext oldFirstCtx = head.getNext();
-        newCtx.setPrev(head);
-        newCtx.setNext(oldFirstCtx);
-        head.setNext(newCtx);
-        oldFirstCtx.setPrev(newCtx);
+            newCtx = newContext(group, filterName(name, handler), handler);
+
+            // 加入链表尾部节点之前
+            MyAbstractChannelHandlerContext prevCtx = tail.getPrev();
+            newCtx.setPrev(prevCtx);
+            newCtx.setNext(tail);
+            prevCtx.setNext(newCtx);
+            tail.setPrev(newCtx);
+            MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+        }
+
+        callHandlerAdded(newCtx);
+        return this;
     }
 
-    public void addLast(MyChannelEventHandler handler){
-        // 非sharable的handler是否重复加入的校验
-        checkMultiplicity(handler);
+    /**
+     * 将handler加入到名为baseName的handler之前
+     * */
+    public MyChannelPipeline addBefore(String baseName, String name, MyChannelEventHandler handler){
+        MyAbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(handler);
 
-        MyAbstractChannelHandlerContext newCtx = newContext(handler);
+            MyAbstractChannelHandlerContext baseCtx = getContextOrDie(baseName);
+            newCtx = newContext(filterName(name, handler), handler);
+
+            MyAbstractChannelHandlerContext prevCtx = baseCtx.getPrev();
+            newCtx.setPrev(prevCtx);
+            newCtx.setNext(baseCtx);
+            prevCtx.setNext(newCtx);
+            baseCtx.setPrev(newCtx);
+            MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+        }
+
+        callHandlerAdded(newCtx);
+        return this;
+    }
+
+    /**
+     * 将handler加入到名为baseName的handler之后
+     * */
+    public MyChannelPipeline addAfter(String baseName, String name, MyChannelEventHandler handler){
+        MyAbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(handler);
+
+            MyAbstractChannelHandlerContext baseCtx = getContextOrDie(baseName);
+            newCtx = newContext(filterName(name, handler), handler);
+
+            MyAbstractChannelHandlerContext nextCtx = baseCtx.getNext();
+            newCtx.setPrev(baseCtx);
+            newCtx.setNext(nextCtx);
+            nextCtx.setPrev(newCtx);
+            baseCtx.setNext(newCtx);
+            MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+        }
 
-        // 加入链表尾部节点之前
-        MyAbstractChannelHandlerContext oldLastCtx = tail.getPrev();
-        newCtx.setPrev(oldLastCtx);
-        newCtx.setNext(tail);
-        oldLastCtx.setNext(newCtx);
-        tail.setPrev(newCtx);
+        callHandlerAdded(newCtx);
+        return this;
+    }
+
+    public MyChannelPipeline remove(MyChannelEventHandler handler){
+        remove(getContextOrDie(handler));
+        return this;
+    }
+
+    /**
+     * 移除名为name的handler
+     *
+     * @return 被移除的handler
+     * */
+    public MyChannelEventHandler remove(String name){
+        return remove(getContextOrDie(name)).handler();
+    }
+
+    private MyAbstractChannelHandlerContext remove(MyAbstractChannelHandlerContext ctx){
+        assert ctx != head && ctx != tail;
+
+        synchronized (this) {
+            // 被移除的节点自身的prev/next保持不变，正在经过它传播的事件依然可以继续传播下去
+            MyAbstractChannelHandlerContext prev = ctx.getPrev();
+            MyAbstractChannelHandlerContext next = ctx.getNext();
+            prev.setNext(next);
+            next.setPrev(prev);
+            MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+            ctx.relinkRemoved(prev, next);
+        }
+
+        callHandlerRemoved(ctx);
+        return ctx;
+    }
+
+    public MyChannelPipeline replace(MyChannelEventHandler oldHandler, String newName, MyChannelEventHandler newHandler){
+        replace(getContextOrDie(oldHandler), newName, newHandler);
+        return this;
+    }
+
+    /**
+     * 将名为oldName的handler替换为newHandler
+     *
+     * @return 被替换掉的handler
+     * */
+    public MyChannelEventHandler replace(String oldName, String newName, MyChannelEventHandler newHandler){
+        return replace(getContextOrDie(oldName), newName, newHandler);
+    }
+
+    private MyChannelEventHandler replace(MyAbstractChannelHandlerContext ctx, String newName, MyChannelEventHandler newHandler){
+        assert ctx != head && ctx != tail;
+
+        MyAbstractChannelHandlerContext newCtx;
+        synchronized (this) {
+            checkMultiplicity(newHandler);
+
+            if (newName == null) {
+                newName = generateName(newHandler);
+            } else if (!ctx.name().equals(newName)) {
+                // 新名字与被替换的handler的名字相同是允许的
+                checkDuplicateName(newName);
+            }
+
+            newCtx = newContext(newName, newHandler);
+
+            MyAbstractChannelHandlerContext prev = ctx.getPrev();
+            MyAbstractChannelHandlerContext next = ctx.getNext();
+            newCtx.setPrev(prev);
+            newCtx.setNext(next);
+
+            // Finish the replacement of oldCtx with newCtx in the linked list.
+            // Note that this doesn't mean events will be sent to the new handler immediately
+            // because we are currently at the event handler thread and no more than one handler methods can be invoked
+            // at the same time (we ensured that in addFirst(), addLast() and addBefore()).
+            prev.setNext(newCtx);
+            next.setPrev(newCtx);
+
+            // update the reference to the replacement so forward of buffered content will work correctly
+            // 被替换的节点指向新节点，正在经过它传播的事件会传播到新的handler上
+            ctx.setPrev(newCtx);
+            ctx.setNext(newCtx);
+            MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+            ctx.relinkRemoved(newCtx, newCtx);
+        }
+
+        // Invoke newHandler.handlerAdded() first (i.e. before oldHandler.handlerRemoved() is invoked)
+        // because callHandlerRemoved() will trigger channelRead() or flush() on newHandler and those
+        // event handlers must be called after handlerAdded().
+        callHandlerAdded(newCtx);
+        callHandlerRemoved(ctx);
+        return ctx.handler();
+    }
+
+    /**
+     * 获得名为name的handler，不存在则返回null
+     * */
+    public MyChannelEventHandler get(String name){
+        MyChannelHandlerContext ctx = context(name);
+        return ctx == null ? null : ctx.handler();
+    }
+
+    /**
+     * 获得名为name的handler对应的上下文，不存在则返回null
+     * */
+    public MyChannelHandlerContext context(String name){
+        ObjectUtil.checkNotNull(name, "name");
+        return context0(name);
+    }
+
+    /**
+     * 获得handler对应的上下文，不存在则返回null
+     * */
+    public MyChannelHandlerContext context(MyChannelEventHandler handler){
+        ObjectUtil.checkNotNull(handler, "handler");
+
+        MyAbstractChannelHandlerContext ctx = head.getNext();
+        while (ctx != tail) {
+            if (ctx.handler() == handler) {
+                return ctx;
+            }
+            ctx = ctx.getNext();
+        }
+        return null;
+    }
+
+    /**
+     * 按照从head到tail的顺序，获得所有handler的名字(不包括head和tail)
+     * */
+    public List<String> names(){
+        List<String> list = new ArrayList<>();
+        MyAbstractChannelHandlerContext ctx = head.getNext();
+        while (ctx != tail) {
+            list.add(ctx.name());
+            ctx = ctx.getNext();
+        }
+        return list;
+    }
+
+    private MyAbstractChannelHandlerContext context0(String name){
+        MyAbstractChannelHandlerContext ctx = head.getNext();
+        while (ctx != tail) {
+            if (ctx.name().equals(name)) {
+                return ctx;
+            }
+            ctx = ctx.getNext();
+        }
+        return null;
+    }
+
+    private MyAbstractChannelHandlerContext getContextOrDie(String name){
+        MyAbstractChannelHandlerContext ctx = (MyAbstractChannelHandlerContext) context(name);
+        if (ctx == null) {
+            throw new NoSuchElementException(name);
+        }
+        return ctx;
+    }
+
+    private MyAbstractChannelHandlerContext getContextOrDie(MyChannelEventHandler handler){
+        MyAbstractChannelHandlerContext ctx = (MyAbstractChannelHandlerContext) context(handler);
+        if (ctx == null) {
+            throw new NoSuchElementException(handler.getClass().getName());
+        }
+        return ctx;
+    }
+
+    private String filterName(String name, MyChannelEventHandler handler){
+        if (name == null) {
+            return generateName(handler);
+        }
+        checkDuplicateName(name);
+        return name;
+    }
+
+    private void checkDuplicateName(String name){
+        if (context0(name) != null) {
+            throw new IllegalArgumentException("Duplicate handler name: " + name);
+        }
+    }
+
+    /**
+     * 未指定名字时，以"类名#序号"作为handler的名字
+     * */
+    private String generateName(MyChannelEventHandler handler){
+        String baseName = handler.getClass().getSimpleName();
+        if (baseName.isEmpty()) {
+            // 匿名内部类
+            baseName = handler.getClass().getName();
+            baseName = baseName.substring(baseName.lastIndexOf('.') + 1);
+        }
+
+        for (int i = 0; ; i++) {
+            String newName = baseName + "#" + i;
+            if (context0(newName) == null) {
+                return newName;
+            }
+        }
+    }
+
+    /**
+     * handler加入pipeline之后，在其执行器中回调handlerAdded
+     *
+     * channel还没有注册到eventLoop上时(一般是在构造pipeline的过程中)不存在并发，直接在当前线程中回调
+     * 当前线程不是handler的执行线程时，将回调提交到执行器中，在回调执行之前，该handler不处理任何事件
+     * */
+    private void callHandlerAdded(MyAbstractChannelHandlerContext ctx){
+        MyEventExecutor executor = executorOf(ctx);
+        if (executor == null || executor.inEventLoop()) {
+            callHandlerAdded0(ctx);
+        } else {
+            ctx.setAddPending();
+            executor.execute(() -> callHandlerAdded0(ctx));
+        }
+    }
+
+    private void callHandlerAdded0(MyAbstractChannelHandlerContext ctx){
+        try {
+            ctx.callHandlerAdded();
+        } catch (Throwable t) {
+            // handlerAdded出现异常，将handler移除掉
+            boolean removed = false;
+            try {
+                synchronized (this) {
+                    MyAbstractChannelHandlerContext prev = ctx.getPrev();
+                    MyAbstractChannelHandlerContext next = ctx.getNext();
+                    prev.setNext(next);
+                    next.setPrev(prev);
+                    MyAbstractChannelHandlerContext.rebuildSkipLinks(head, tail);
+                    ctx.relinkRemoved(prev, next);
+                }
+                ctx.callHandlerRemoved();
+                removed = true;
+            } catch (Throwable t2) {
+                logger.warn("Failed to remove a handler: {}", ctx.name(), t2);
+            }
+
+            if (removed) {
+                fireExceptionCaught(new MyNettyException(
+                    ctx.handler().getClass().getName() + ".handlerAdded() has thrown an exception; removed.", t));
+            } else {
+                fireExceptionCaught(new MyNettyException(
+                    ctx.handler().getClass().getName() + ".handlerAdded() has thrown an exception; also failed to remove.", t));
+            }
+        }
+    }
+
+    /**
+     * handler移出pipeline之后，在其执行器中回调handlerRemoved
+     * */
+    private void callHandlerRemoved(MyAbstractChannelHandlerContext ctx){
+        MyEventExecutor executor = executorOf(ctx);
+        if (executor == null || executor.inEventLoop()) {
+            callHandlerRemoved0(ctx);
+        } else {
+            executor.execute(() -> callHandlerRemoved0(ctx));
+        }
+    }
+
+    private void callHandlerRemoved0(MyAbstractChannelHandlerContext ctx){
+        try {
+            ctx.callHandlerRemoved();
+        } catch (Throwable t) {
+            fireExceptionCaught(new MyNettyException(
+                ctx.handler().getClass().getName() + ".handlerRemoved() has thrown an exception.", t));
+        }
+    }
+
+    /**
+     * channel还没有注册到eventLoop上，并且没有指定非I/O执行器时返回null
+     * */
+    private MyEventExecutor executorOf(MyAbstractChannelHandlerContext ctx){
+        if (channel == null || channel.getMyNioEventLoop() == null) {
+            return ctx.hasChildExecutor() ? ctx.executor() : null;
+        }
+        return ctx.executor();
     }
 
     private static void checkMultiplicity(MyChannelEventHandler handler) {
@@ -124,14 +540,16 @@ public class MyChannelPipeline implements MyChannelEventInvoker {
         return channel;
     }
 
-    private void onUnhandledInboundException(Throwable cause) {
-        logger.warn(
-            "An exceptionCaught() event was fired, and it reached at the tail of the pipeline. " +
-                "It usually means the last handler in the pipeline did not handle the exception.",
-            cause);
+    private MyAbstractChannelHandlerContext newContext(String name, MyChannelEventHandler handler) {
+        return new MyDefaultChannelHandlerContext(this,name,handler);
     }
 
-    private MyAbstractChannelHandlerContext newContext(MyChannelEventHandler handler) {
-        return new MyDefaultChannelHandlerContext(this,handler);
+    private MyAbstractChannelHandlerContext newContext(MyOffloadExecutorGroup group, String name, MyChannelEventHandler handler) {
+        if(group == null){
+            return newContext(name,handler);
+        }
+
+        MyEventExecutor childExecutor = group.newSerialExecutor();
+        return new MyDefaultChannelHandlerContext(this,childExecutor,name,handler);
     }
 }
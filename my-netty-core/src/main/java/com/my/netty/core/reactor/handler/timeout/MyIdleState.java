@@ -0,0 +1,22 @@
+package com.my.netty.core.reactor.handler.timeout;
+
+/**
+ * channel的空闲状态(参考netty的IdleState)
+ * */
+public enum MyIdleState {
+
+    /**
+     * 一段时间内没有读取到任何数据
+     * */
+    READER_IDLE,
+
+    /**
+     * 一段时间内没有写出任何数据
+     * */
+    WRITER_IDLE,
+
+    /**
+     * 一段时间内既没有读取也没有写出任何数据
+     * */
+    ALL_IDLE
+}
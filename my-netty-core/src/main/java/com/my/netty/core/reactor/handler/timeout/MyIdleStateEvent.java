@@ -0,0 +1,40 @@
+package com.my.netty.core.reactor.handler.timeout;
+
+/**
+ * MyIdleStateHandler检测到channel空闲时，通过userEventTriggered传播的事件(参考netty的IdleStateEvent)
+ *
+ * 事件都是无状态的单例，可以直接用==比较
+ * */
+public final class MyIdleStateEvent {
+
+    public static final MyIdleStateEvent FIRST_READER_IDLE_STATE_EVENT = new MyIdleStateEvent(MyIdleState.READER_IDLE, true);
+    public static final MyIdleStateEvent READER_IDLE_STATE_EVENT = new MyIdleStateEvent(MyIdleState.READER_IDLE, false);
+    public static final MyIdleStateEvent FIRST_WRITER_IDLE_STATE_EVENT = new MyIdleStateEvent(MyIdleState.WRITER_IDLE, true);
+    public static final MyIdleStateEvent WRITER_IDLE_STATE_EVENT = new MyIdleStateEvent(MyIdleState.WRITER_IDLE, false);
+    public static final MyIdleStateEvent FIRST_ALL_IDLE_STATE_EVENT = new MyIdleStateEvent(MyIdleState.ALL_IDLE, true);
+    public static final MyIdleStateEvent ALL_IDLE_STATE_EVENT = new MyIdleStateEvent(MyIdleState.ALL_IDLE, false);
+
+    private final MyIdleState state;
+    private final boolean first;
+
+    private MyIdleStateEvent(MyIdleState state, boolean first) {
+        this.state = state;
+        this.first = first;
+    }
+
+    public MyIdleState state() {
+        return state;
+    }
+
+    /**
+     * 是否是进入空闲状态之后的第一个事件(持续空闲时，后续的事件first=false)
+     * */
+    public boolean isFirst() {
+        return first;
+    }
+
+    @Override
+    public String toString() {
+        return "MyIdleStateEvent(" + state + (first ? ", first" : "") + ')';
+    }
+}
@@ -0,0 +1,365 @@
+package com.my.netty.core.reactor.handler.timeout;
+
+import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.channel.MyVoidCompletableFuture;
+import com.my.netty.core.reactor.eventloop.MyEventExecutor;
+import com.my.netty.core.reactor.eventloop.schedule.MyScheduledFutureTask;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 参考netty的IdleStateHandler，检测channel的读/写空闲，空闲时通过userEventTriggered传播MyIdleStateEvent
+ *
+ * 空闲检测完全基于channel所属eventLoop的定时任务，不需要额外的线程；每个channel最多只有3个定时任务，
+ * 并且读写时只记录时间戳，不会反复的取消/提交定时任务：定时任务到期时再根据最后一次读写的时间，计算是否空闲以及下一次检测的时间
+ * 因此即使有数万个连接，开销也只是定时任务队列中的几万个节点
+ *
+ * 典型用法是在其后的handler中处理MyIdleStateEvent，关闭长时间没有数据的死连接：
+ * <pre>
+ * pipeline.addLast(new MyIdleStateHandler(60, 30, 0, TimeUnit.SECONDS));
+ * pipeline.addLast(new MyChannelEventHandlerAdapter() {
+ *     public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) throws Exception {
+ *         if (evt instanceof MyIdleStateEvent) {
+ *             ctx.close();
+ *         } else {
+ *             ctx.fireUserEventTriggered(evt);
+ *         }
+ *     }
+ * });
+ * </pre>
+ * 该handler是有状态的，不能在多个channel之间共享
+ * */
+public class MyIdleStateHandler extends MyChannelEventHandlerAdapter {
+
+    private static final long MIN_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 未初始化
+     * */
+    private static final byte ST_INIT = 0;
+    /**
+     * 已经开始检测
+     * */
+    private static final byte ST_INITIALIZED = 1;
+    /**
+     * 已经停止检测(channel关闭或者handler被移除)
+     * */
+    private static final byte ST_DESTROYED = 2;
+
+    private final long readerIdleTimeNanos;
+    private final long writerIdleTimeNanos;
+    private final long allIdleTimeNanos;
+
+    /**
+     * 写出完成时更新最后一次写出的时间(只在eventLoop线程中回调)，复用同一个实例避免每次写出都创建
+     * */
+    private final BiConsumer<MyNioChannel, Throwable> writeListener = (channel, cause) -> {
+        lastWriteTime = ticksInNanos();
+        firstWriterIdleEvent = firstAllIdleEvent = true;
+    };
+
+    private MyScheduledFutureTask readerIdleTimeout;
+    private long lastReadTime;
+    private boolean firstReaderIdleEvent = true;
+
+    private MyScheduledFutureTask writerIdleTimeout;
+    private long lastWriteTime;
+    private boolean firstWriterIdleEvent = true;
+
+    private MyScheduledFutureTask allIdleTimeout;
+    private boolean firstAllIdleEvent = true;
+
+    private byte state;
+
+    /**
+     * 是否处于一次read的过程中(channelRead到channelReadComplete之间)
+     * */
+    private boolean reading;
+
+    /**
+     * @param readerIdleTimeSeconds 读空闲的时间，为0则不检测
+     * @param writerIdleTimeSeconds 写空闲的时间，为0则不检测
+     * @param allIdleTimeSeconds 读写都空闲的时间，为0则不检测
+     * */
+    public MyIdleStateHandler(int readerIdleTimeSeconds, int writerIdleTimeSeconds, int allIdleTimeSeconds) {
+        this(readerIdleTimeSeconds, writerIdleTimeSeconds, allIdleTimeSeconds, TimeUnit.SECONDS);
+    }
+
+    public MyIdleStateHandler(long readerIdleTime, long writerIdleTime, long allIdleTime, TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        this.readerIdleTimeNanos = readerIdleTime <= 0 ? 0 : Math.max(unit.toNanos(readerIdleTime), MIN_TIMEOUT_NANOS);
+        this.writerIdleTimeNanos = writerIdleTime <= 0 ? 0 : Math.max(unit.toNanos(writerIdleTime), MIN_TIMEOUT_NANOS);
+        this.allIdleTimeNanos = allIdleTime <= 0 ? 0 : Math.max(unit.toNanos(allIdleTime), MIN_TIMEOUT_NANOS);
+    }
+
+    public long getReaderIdleTimeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readerIdleTimeNanos);
+    }
+
+    public long getWriterIdleTimeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerIdleTimeNanos);
+    }
+
+    public long getAllIdleTimeInMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(allIdleTimeNanos);
+    }
+
+    @Override
+    public void handlerAdded(MyChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive() && ctx.channel().isRegistered()) {
+            // channel已经是active的了，不会再收到channelActive事件，直接开始检测
+            initialize(ctx);
+        }
+        // 否则等到channelActive时再开始检测
+    }
+
+    @Override
+    public void handlerRemoved(MyChannelHandlerContext ctx) throws Exception {
+        destroy();
+    }
+
+    @Override
+    public void channelRegistered(MyChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            initialize(ctx);
+        }
+        ctx.fireChannelRegistered();
+    }
+
+    @Override
+    public void channelActive(MyChannelHandlerContext ctx) throws Exception {
+        initialize(ctx);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(MyChannelHandlerContext ctx) throws Exception {
+        destroy();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelRead(MyChannelHandlerContext ctx, Object msg) throws Exception {
+        if (readerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
+            reading = true;
+            firstReaderIdleEvent = firstAllIdleEvent = true;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(MyChannelHandlerContext ctx) throws Exception {
+        if ((readerIdleTimeNanos > 0 || allIdleTimeNanos > 0) && reading) {
+            // 一次read完成时才更新时间戳，而不是每条消息都更新
+            lastReadTime = ticksInNanos();
+            reading = false;
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void write(MyChannelHandlerContext ctx, Object msg, boolean doFlush, CompletableFuture<MyNioChannel> completableFuture) throws Exception {
+        if (writerIdleTimeNanos > 0 || allIdleTimeNanos > 0) {
+            if (MyVoidCompletableFuture.isVoid(completableFuture)) {
+                // void future不支持回调，只能以提交写出的时间近似作为写出的时间
+                writeListener.accept(null, null);
+            } else {
+                // 写出完成时(而不是提交写出时)才认为有写出，对端不读导致的积压不会被当做非空闲
+                completableFuture.whenComplete(writeListener);
+            }
+        }
+        ctx.write(msg, doFlush, completableFuture);
+    }
+
+    /**
+     * 检测到空闲时回调，默认通过userEventTriggered向后传播，子类可以覆盖该方法直接处理空闲事件
+     * */
+    protected void channelIdle(MyChannelHandlerContext ctx, MyIdleStateEvent evt) throws Exception {
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    private void initialize(MyChannelHandlerContext ctx) {
+        // Avoid the case where destroy() is called before scheduling timeouts.
+        if (state != ST_INIT) {
+            return;
+        }
+        state = ST_INITIALIZED;
+
+        lastReadTime = lastWriteTime = ticksInNanos();
+        if (readerIdleTimeNanos > 0) {
+            readerIdleTimeout = schedule(ctx, new ReaderIdleTimeoutTask(ctx), readerIdleTimeNanos);
+        }
+        if (writerIdleTimeNanos > 0) {
+            writerIdleTimeout = schedule(ctx, new WriterIdleTimeoutTask(ctx), writerIdleTimeNanos);
+        }
+        if (allIdleTimeNanos > 0) {
+            allIdleTimeout = schedule(ctx, new AllIdleTimeoutTask(ctx), allIdleTimeNanos);
+        }
+    }
+
+    private void destroy() {
+        state = ST_DESTROYED;
+
+        if (readerIdleTimeout != null) {
+            readerIdleTimeout.cancel(false);
+            readerIdleTimeout = null;
+        }
+        if (writerIdleTimeout != null) {
+            writerIdleTimeout.cancel(false);
+            writerIdleTimeout = null;
+        }
+        if (allIdleTimeout != null) {
+            allIdleTimeout.cancel(false);
+            allIdleTimeout = null;
+        }
+    }
+
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * 定时任务提交到channel当前所属的eventLoop中(channel可能在eventLoop之间迁移，所以每次都重新获取)
+     * */
+    MyScheduledFutureTask schedule(MyChannelHandlerContext ctx, Runnable task, long delayNanos) {
+        return ctx.channel().getMyNioEventLoop().schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private abstract static class AbstractIdleTask implements Runnable {
+
+        private final MyChannelHandlerContext ctx;
+
+        AbstractIdleTask(MyChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void run() {
+            MyEventExecutor executor = ctx.executor();
+            if (!executor.inEventLoop()) {
+                // 定时任务总是在eventLoop线程中执行，handler指定了非I/O执行器，或者channel已经迁移到了其它eventLoop时，转交给handler的执行器
+                executor.execute(this);
+                return;
+            }
+
+            if (!ctx.channel().isOpen()) {
+                return;
+            }
+
+            run(ctx);
+        }
+
+        protected abstract void run(MyChannelHandlerContext ctx);
+    }
+
+    private final class ReaderIdleTimeoutTask extends AbstractIdleTask {
+
+        ReaderIdleTimeoutTask(MyChannelHandlerContext ctx) {
+            super(ctx);
+        }
+
+        @Override
+        protected void run(MyChannelHandlerContext ctx) {
+            if (state != ST_INITIALIZED) {
+                return;
+            }
+
+            long nextDelay = readerIdleTimeNanos;
+            if (!reading) {
+                nextDelay -= ticksInNanos() - lastReadTime;
+            }
+
+            if (nextDelay <= 0) {
+                // Reader is idle - set a new timeout and notify the callback.
+                readerIdleTimeout = schedule(ctx, this, readerIdleTimeNanos);
+
+                boolean first = firstReaderIdleEvent;
+                firstReaderIdleEvent = false;
+
+                try {
+                    channelIdle(ctx, first ? MyIdleStateEvent.FIRST_READER_IDLE_STATE_EVENT : MyIdleStateEvent.READER_IDLE_STATE_EVENT);
+                } catch (Throwable t) {
+                    ctx.fireExceptionCaught(t);
+                }
+            } else {
+                // Read occurred before the timeout - set a new timeout with shorter delay.
+                readerIdleTimeout = schedule(ctx, this, nextDelay);
+            }
+        }
+    }
+
+    private final class WriterIdleTimeoutTask extends AbstractIdleTask {
+
+        WriterIdleTimeoutTask(MyChannelHandlerContext ctx) {
+            super(ctx);
+        }
+
+        @Override
+        protected void run(MyChannelHandlerContext ctx) {
+            if (state != ST_INITIALIZED) {
+                return;
+            }
+
+            long nextDelay = writerIdleTimeNanos - (ticksInNanos() - lastWriteTime);
+            if (nextDelay <= 0) {
+                // Writer is idle - set a new timeout and notify the callback.
+                writerIdleTimeout = schedule(ctx, this, writerIdleTimeNanos);
+
+                boolean first = firstWriterIdleEvent;
+                firstWriterIdleEvent = false;
+
+                try {
+                    channelIdle(ctx, first ? MyIdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT : MyIdleStateEvent.WRITER_IDLE_STATE_EVENT);
+                } catch (Throwable t) {
+                    ctx.fireExceptionCaught(t);
+                }
+            } else {
+                // Write occurred before the timeout - set a new timeout with shorter delay.
+                writerIdleTimeout = schedule(ctx, this, nextDelay);
+            }
+        }
+    }
+
+    private final class AllIdleTimeoutTask extends AbstractIdleTask {
+
+        AllIdleTimeoutTask(MyChannelHandlerContext ctx) {
+            super(ctx);
+        }
+
+        @Override
+        protected void run(MyChannelHandlerContext ctx) {
+            if (state != ST_INITIALIZED) {
+                return;
+            }
+
+            long nextDelay = allIdleTimeNanos;
+            if (!reading) {
+                nextDelay -= ticksInNanos() - Math.max(lastReadTime, lastWriteTime);
+            }
+
+            if (nextDelay <= 0) {
+                // Both reader and writer are idle - set a new timeout and notify the callback.
+                allIdleTimeout = schedule(ctx, this, allIdleTimeNanos);
+
+                boolean first = firstAllIdleEvent;
+                firstAllIdleEvent = false;
+
+                try {
+                    channelIdle(ctx, first ? MyIdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT : MyIdleStateEvent.ALL_IDLE_STATE_EVENT);
+                } catch (Throwable t) {
+                    ctx.fireExceptionCaught(t);
+                }
+            } else {
+                // Either read or write occurred before the timeout - set a new timeout with shorter delay.
+                allIdleTimeout = schedule(ctx, this, nextDelay);
+            }
+        }
+    }
+}
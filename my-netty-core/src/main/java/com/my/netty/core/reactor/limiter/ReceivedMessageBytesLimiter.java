@@ -64,18 +64,28 @@ public class ReceivedMessageBytesLimiter {
     /**
      * 最多一次IO事件read多少次
      * */
-    private final int maxMessagesPerRead = 16;
+    private final int maxMessagesPerRead;
+
+    private static final int DEFAULT_MAX_MESSAGES_PER_READ = 16;
 
     public ReceivedMessageBytesLimiter() {
         this(DEFAULT_INITIAL);
     }
 
     public ReceivedMessageBytesLimiter(int receiveBufferSize) {
+        this(receiveBufferSize, DEFAULT_MAX_MESSAGES_PER_READ);
+    }
+
+    public ReceivedMessageBytesLimiter(int receiveBufferSize, int maxMessagesPerRead) {
         if(receiveBufferSize <= 0) {
             receiveBufferSize = DEFAULT_INITIAL;
         }
+        if(maxMessagesPerRead <= 0) {
+            throw new IllegalArgumentException("maxMessagesPerRead: " + maxMessagesPerRead + " (expected: > 0)");
+        }
 
         this.receiveBufferSize = receiveBufferSize;
+        this.maxMessagesPerRead = maxMessagesPerRead;
     }
 
     public int getReceiveBufferSize(){
@@ -1,6 +1,8 @@
 package com.my.netty.core.reactor.server;
 
+import com.my.netty.core.reactor.channel.MyNioServerSocketChannel;
 import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
 import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
 import com.my.netty.core.reactor.eventloop.MyNioEventLoopGroup;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipelineSupplier;
@@ -9,44 +11,155 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class MyNioServerBootstrap {
 
     private static final Logger logger = LoggerFactory.getLogger(MyNioServerBootstrap.class);
 
+    /**
+     * jdk9+才有StandardSocketOptions.SO_REUSEPORT，编译目标是jdk8，只能通过反射获取，不支持时为null
+     * */
+    private static final SocketOption<Boolean> SO_REUSEPORT = findReusePortOption();
+
     private final InetSocketAddress endpointAddress;
 
     private final MyNioEventLoopGroup bossGroup;
 
+    private final MyNioEventLoopGroup childGroup;
+
+    private final DefaultChannelConfig defaultChannelConfig;
+
     public MyNioServerBootstrap(InetSocketAddress endpointAddress,
                                 MyChannelPipelineSupplier childChannelPipelineSupplier,
                                 int bossThreads, int childThreads, DefaultChannelConfig defaultChannelConfig) {
         this.endpointAddress = endpointAddress;
+        this.defaultChannelConfig = defaultChannelConfig;
 
-        MyNioEventLoopGroup childGroup = new MyNioEventLoopGroup(childChannelPipelineSupplier,childThreads,defaultChannelConfig);
+        this.childGroup = new MyNioEventLoopGroup(childChannelPipelineSupplier,childThreads,defaultChannelConfig);
         this.bossGroup = new MyNioEventLoopGroup(childChannelPipelineSupplier, bossThreads, childGroup,defaultChannelConfig);
     }
 
-    public void start() throws IOException {
+    /**
+     * 启动服务端
+     *
+     * @return 所有serverSocketChannel都绑定完成后完成的future，绑定失败则异常完成
+     * */
+    public CompletableFuture<Void> start() throws IOException {
+        if(!defaultChannelConfig.isReusePort()){
+            // 默认只有一个serverSocketChannel，绑定在bossGroup中的一个eventLoop上
+            return bind(this.bossGroup.next(), false);
+        }
+
+        if(!isReusePortSupported()){
+            throw new IOException("SO_REUSEPORT is not supported on current platform, java.version=" + System.getProperty("java.version"));
+        }
+
+        // SO_REUSEPORT模式，每个boss eventLoop都绑定一个独立的serverSocketChannel，由内核在它们之间分配新连接
+        List<MyNioEventLoop> bossEventLoops = this.bossGroup.eventLoops();
+        CompletableFuture<?>[] bindFutures = new CompletableFuture<?>[bossEventLoops.size()];
+        for(int i=0; i<bossEventLoops.size(); i++){
+            bindFutures[i] = bind(bossEventLoops.get(i), true);
+        }
+        return CompletableFuture.allOf(bindFutures);
+    }
+
+    private CompletableFuture<Void> bind(MyNioEventLoop myNioEventLoop, boolean reusePort) throws IOException {
         ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.configureBlocking(false);
 
-        MyNioEventLoop myNioEventLoop = this.bossGroup.next();
-
+        CompletableFuture<Void> bindFuture = new CompletableFuture<>();
         myNioEventLoop.execute(()->{
             try {
                 Selector selector = myNioEventLoop.getUnwrappedSelector();
-                serverSocketChannel.socket().bind(endpointAddress);
-                SelectionKey selectionKey = serverSocketChannel.register(selector, 0);
+                // 作用于serverSocketChannel的配置项必须在bind之前设置(比如大于64K的SO_RCVBUF需要在listen前设置才能生效)
+                MyChannelOption.applySocketOptions(serverSocketChannel, defaultChannelConfig.getOptions());
+                if(reusePort){
+                    serverSocketChannel.setOption(SO_REUSEPORT, true);
+                }
+                serverSocketChannel.socket().bind(endpointAddress, defaultChannelConfig.getBacklog());
+                // 作用于连接的配置项在bind时生成一份不可变的快照，accept的每个连接都直接复用
+                MyNioServerSocketChannel myNioServerSocketChannel = new MyNioServerSocketChannel(serverSocketChannel, defaultChannelConfig.getChildOptions());
+                SelectionKey selectionKey = serverSocketChannel.register(selector, 0, myNioServerSocketChannel);
                 // 监听accept事件
                 selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_ACCEPT);
-                logger.info("MyNioServer do start! endpointAddress={}",endpointAddress);
+                logger.info("MyNioServer do start! endpointAddress={}, reusePort={}",endpointAddress,reusePort);
+                bindFuture.complete(null);
             } catch (IOException e) {
                 logger.error("MyNioServer do bind error!",e);
+                try {
+                    serverSocketChannel.close();
+                } catch (IOException ex) {
+                    logger.warn("Failed to close a serverSocketChannel.", ex);
+                }
+                bindFuture.completeExceptionally(e);
             }
         });
+        return bindFuture;
+    }
+
+    /**
+     * 累计accept的连接总数
+     * */
+    public long getAcceptedChannels(){
+        long acceptedChannels = 0;
+        for(MyNioEventLoop bossEventLoop : bossGroup.eventLoops()){
+            acceptedChannels += bossEventLoop.getAcceptedChannels();
+        }
+        return acceptedChannels;
+    }
+
+    /**
+     * 当前平台是否支持SO_REUSEPORT
+     * */
+    public static boolean isReusePortSupported(){
+        if(SO_REUSEPORT == null){
+            return false;
+        }
+
+        try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
+            return serverSocketChannel.supportedOptions().contains(SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> findReusePortOption(){
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 优雅关闭服务端
+     *
+     * 先关闭bossGroup，bossGroup关闭时会先关闭serverSocketChannel停止接收新连接；
+     * bossGroup终止之后才开始关闭childGroup，保证boss已经accept的连接都能注册到child上，不会因为child已经关闭而被丢弃
+     * childGroup则会在已有连接的积压数据都写出之后(或者超时之后)再关闭连接
+     * */
+    public CompletableFuture<Void> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit){
+        return shutdownInOrder(bossGroup.shutdownGracefully(quietPeriod,timeout,unit),
+            () -> childGroup.shutdownGracefully(quietPeriod,timeout,unit));
+    }
+
+    public CompletableFuture<Void> shutdownGracefully(){
+        return shutdownInOrder(bossGroup.shutdownGracefully(), childGroup::shutdownGracefully);
+    }
+
+    private static CompletableFuture<Void> shutdownInOrder(CompletableFuture<Void> bossTerminationFuture,
+                                                          Supplier<CompletableFuture<Void>> childShutdown){
+        // 无论bossGroup是否正常终止，childGroup都需要关闭
+        return bossTerminationFuture.handle((v, t) -> null).thenCompose(ignore -> childShutdown.get());
     }
 }
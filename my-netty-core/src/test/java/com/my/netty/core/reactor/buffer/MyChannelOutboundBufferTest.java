@@ -7,6 +7,7 @@ import com.my.netty.core.reactor.config.DefaultChannelConfig;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
 
 public class MyChannelOutboundBufferTest {
@@ -55,6 +56,75 @@ public class MyChannelOutboundBufferTest {
         Assert.assertFalse(myChannelOutboundBuffer.isEmpty());
     }
 
+    @Test
+    public void testNioByteBuffersReuse() {
+        MyChannelOutboundBuffer myChannelOutboundBuffer = new MyChannelOutboundBuffer(null);
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyByteBufAllocator allocator =  defaultChannelConfig.getAllocator();
+        MyByteBuf byteBuffer = buildReadableByteBuf(allocator,2);
+        myChannelOutboundBuffer.addMessage(byteBuffer,byteBuffer.readableBytes(),new CompletableFuture<>());
+
+        MyByteBuf byteBuffer2 = buildReadableByteBuf(allocator,4);
+        myChannelOutboundBuffer.addMessage(byteBuffer2,byteBuffer2.readableBytes(),new CompletableFuture<>());
+
+        myChannelOutboundBuffer.addFlush();
+
+        ByteBuffer[] nioBuffers = myChannelOutboundBuffer.nioByteBuffers(1024, Integer.MAX_VALUE);
+        Assert.assertEquals(2, myChannelOutboundBuffer.getNioBufferCount());
+        Assert.assertEquals(2+4, myChannelOutboundBuffer.getNioBufferSize());
+
+        // 模拟部分写出
+        nioBuffers[0].position(nioBuffers[0].limit());
+        nioBuffers[1].position(nioBuffers[1].position() + 1);
+        myChannelOutboundBuffer.removeBytes(2+1);
+
+        // 同一线程复用同一个数组，未写完的entry复用缓存的nio视图
+        ByteBuffer[] nioBuffers2 = myChannelOutboundBuffer.nioByteBuffers(1024, Integer.MAX_VALUE);
+        Assert.assertSame(nioBuffers, nioBuffers2);
+        Assert.assertEquals(1, myChannelOutboundBuffer.getNioBufferCount());
+        Assert.assertEquals(3, myChannelOutboundBuffer.getNioBufferSize());
+        Assert.assertEquals(3, nioBuffers2[0].remaining());
+        Assert.assertNull(nioBuffers2[1]);
+    }
+
+    @Test
+    public void testDirectStaging() {
+        MyChannelOutboundBuffer myChannelOutboundBuffer = new MyChannelOutboundBuffer(null, true);
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyByteBufAllocator allocator =  defaultChannelConfig.getAllocator();
+        MyByteBuf byteBuffer = buildReadableByteBuf(allocator,2);
+        myChannelOutboundBuffer.addMessage(byteBuffer,byteBuffer.readableBytes(),new CompletableFuture<>());
+
+        MyByteBuf byteBuffer2 = buildReadableByteBuf(allocator,4);
+        myChannelOutboundBuffer.addMessage(byteBuffer2,byteBuffer2.readableBytes(),new CompletableFuture<>());
+
+        // 暂存到堆外之后，堆内的msg立即被释放
+        Assert.assertEquals(0, byteBuffer.refCnt());
+        Assert.assertEquals(0, byteBuffer2.refCnt());
+
+        myChannelOutboundBuffer.addFlush();
+
+        ByteBuffer[] nioBuffers = myChannelOutboundBuffer.nioByteBuffers(1024, Integer.MAX_VALUE);
+        Assert.assertEquals(2, myChannelOutboundBuffer.getNioBufferCount());
+        Assert.assertTrue(nioBuffers[0].isDirect());
+        Assert.assertEquals(2, nioBuffers[0].remaining());
+        Assert.assertEquals('c', nioBuffers[1].get(nioBuffers[1].position()));
+
+        // 模拟部分写出
+        nioBuffers[0].position(nioBuffers[0].limit());
+        nioBuffers[1].position(nioBuffers[1].position() + 1);
+        myChannelOutboundBuffer.removeBytes(2+1);
+
+        nioBuffers = myChannelOutboundBuffer.nioByteBuffers(1024, Integer.MAX_VALUE);
+        Assert.assertEquals(1, myChannelOutboundBuffer.getNioBufferCount());
+        Assert.assertEquals(3, nioBuffers[0].remaining());
+
+        myChannelOutboundBuffer.removeBytes(3);
+        Assert.assertTrue(myChannelOutboundBuffer.isEmpty());
+    }
+
     private static MyByteBuf buildReadableByteBuf(MyByteBufAllocator allocator, int writeSize){
         MyByteBuf byteBuffer = allocator.heapBuffer(2);
 
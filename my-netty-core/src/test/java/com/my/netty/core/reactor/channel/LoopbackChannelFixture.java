@@ -0,0 +1,111 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipelineSupplier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 测试用的环回连接：一个独立的eventLoop，以及注册在其上的、服务端accept得到的MyNioSocketChannel，peer为对端的jdk SocketChannel
+ *
+ * open返回时channel已经在eventLoop中注册完毕；close时关闭对端并优雅关闭eventLoop
+ * */
+public final class LoopbackChannelFixture implements AutoCloseable {
+
+    private final DefaultChannelConfig defaultChannelConfig;
+    private final MyNioEventLoop eventLoop;
+    private final ServerSocketChannel server;
+    private final SocketChannel peer;
+    private final MyNioSocketChannel channel;
+
+    private LoopbackChannelFixture(DefaultChannelConfig defaultChannelConfig, MyNioEventLoop eventLoop,
+                                   ServerSocketChannel server, SocketChannel peer, MyNioSocketChannel channel) {
+        this.defaultChannelConfig = defaultChannelConfig;
+        this.eventLoop = eventLoop;
+        this.server = server;
+        this.peer = peer;
+        this.channel = channel;
+    }
+
+    public static LoopbackChannelFixture open(DefaultChannelConfig defaultChannelConfig, MyChannelPipelineSupplier supplier) throws Exception {
+        MyNioEventLoop eventLoop = new MyNioEventLoop(defaultChannelConfig);
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(eventLoop.getUnwrappedSelector(), accepted, supplier, defaultChannelConfig);
+            LoopbackChannelFixture fixture = new LoopbackChannelFixture(defaultChannelConfig, eventLoop, server, peer, channel);
+            eventLoop.register(channel);
+            // 注册任务是异步执行的，等待其在eventLoop中执行完毕
+            CompletableFuture.runAsync(() -> {}, eventLoop).get(5, TimeUnit.SECONDS);
+            return fixture;
+        } catch (Exception e) {
+            server.close();
+            eventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            throw e;
+        }
+    }
+
+    public SocketChannel peer() {
+        return peer;
+    }
+
+    public MyNioSocketChannel channel() {
+        return channel;
+    }
+
+    /**
+     * 在eventLoop线程中执行，用于查询只能由eventLoop线程访问的状态(同时也是一个sync屏障)
+     * */
+    public <T> T callInEventLoop(Callable<T> callable) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return callable.call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, eventLoop).get(5, TimeUnit.SECONDS);
+    }
+
+    public MyByteBuf newMessage(int size) {
+        MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(size);
+        message.writeBytes(new byte[size]);
+        return message;
+    }
+
+    /**
+     * 不声明受检异常，避免try-with-resources中出现close可能抛出InterruptedException的[try]警告
+     * 等待eventLoop关闭时被中断，恢复中断标识后直接返回
+     * */
+    @Override
+    public void close() {
+        try {
+            peer.close();
+            server.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                eventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("eventLoop shutdown failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MyChannelAutoReadTest {
+
+    @Test
+    public void testAutoReadAndExplicitRead() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.setAutoRead(false);
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Integer> readBytes = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        readBytes.add(((MyByteBuf) msg).readableBytes());
+                        MyReferenceCountUtil.safeRelease(msg);
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 关闭了autoRead，没有监听OP_READ，不会主动读取对端发来的数据
+            peer.write(ByteBuffer.wrap(new byte[16]));
+            Assert.assertFalse(isReadInterested(myNioEventLoop, channel));
+            Assert.assertTrue(readBytes.isEmpty());
+
+            // 显式的read()，读取一次
+            channel.getChannelPipeline().read();
+            Assert.assertEquals(Integer.valueOf(16), readBytes.poll(5, TimeUnit.SECONDS));
+            Assert.assertFalse(channel.isReadPending());
+
+            // read()只生效一次，读取完成后不再监听OP_READ，之后的数据依然不会被读取
+            Assert.assertFalse(isReadInterested(myNioEventLoop, channel));
+            peer.write(ByteBuffer.wrap(new byte[8]));
+
+            // 开启autoRead，积压的数据和后续的数据都会被读取
+            channel.setAutoRead(true);
+            Assert.assertEquals(Integer.valueOf(8), readBytes.poll(5, TimeUnit.SECONDS));
+            Assert.assertTrue(isReadInterested(myNioEventLoop, channel));
+            peer.write(ByteBuffer.wrap(new byte[4]));
+            Assert.assertEquals(Integer.valueOf(4), readBytes.poll(5, TimeUnit.SECONDS));
+
+            // 再次关闭autoRead
+            channel.setAutoRead(false);
+            Assert.assertFalse(isReadInterested(myNioEventLoop, channel));
+            Assert.assertTrue(readBytes.isEmpty());
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testConcurrentSetAutoRead() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Integer> readBytes = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        readBytes.add(((MyByteBuf) msg).readableBytes());
+                        MyReferenceCountUtil.safeRelease(msg);
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 多个线程并发的开关autoRead，每个线程最后都关闭autoRead
+            int threadCount = 4;
+            CountDownLatch startLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new Thread(() -> {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        channel.setAutoRead(j % 2 == 0);
+                    }
+                });
+                threads[i].start();
+            }
+            startLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // 最终状态为关闭，提交到eventLoop中的取消监听任务执行完之后，不再监听OP_READ
+            Assert.assertFalse(channel.isAutoRead());
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            Assert.assertFalse(isReadInterested(myNioEventLoop, channel));
+            peer.write(ByteBuffer.wrap(new byte[8]));
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            Assert.assertNull(readBytes.poll(100, TimeUnit.MILLISECONDS));
+
+            // 再次开启，积压的数据会被读取
+            channel.setAutoRead(true);
+            Assert.assertEquals(Integer.valueOf(8), readBytes.poll(5, TimeUnit.SECONDS));
+            Assert.assertTrue(isReadInterested(myNioEventLoop, channel));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * interestOps只在eventLoop线程中修改，在eventLoop中查询(同时也等待之前提交的任务执行完毕)
+     * */
+    private static boolean isReadInterested(MyNioEventLoop myNioEventLoop, MyNioSocketChannel channel) throws Exception {
+        return CompletableFuture.supplyAsync(() -> (channel.getSelectionKey().interestOps() & SelectionKey.OP_READ) != 0, myNioEventLoop)
+            .get(5, TimeUnit.SECONDS);
+    }
+}
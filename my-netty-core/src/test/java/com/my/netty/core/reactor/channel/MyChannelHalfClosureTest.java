@@ -0,0 +1,126 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MyChannelHalfClosureTest {
+
+    @Test
+    public void testResponseAfterPeerShutdownOutput() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.setAllowHalfClosure(true);
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        AtomicInteger received = new AtomicInteger();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        received.addAndGet(((MyByteBuf) msg).readableBytes());
+                        MyReferenceCountUtil.safeRelease(msg);
+                    }
+
+                    @Override
+                    public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) {
+                        if (evt == MyChannelInputShutdownEvent.INSTANCE) {
+                            // 对端的请求已经发送完毕，写出响应后再关闭连接
+                            MyByteBuf response = ctx.alloc().heapBuffer(received.get());
+                            response.writeBytes(new byte[received.get()]);
+                            ctx.write(response, true).whenComplete((ch, t) -> ctx.close());
+                        }
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            peer.write(ByteBuffer.wrap(new byte[100]));
+            peer.shutdownOutput();
+
+            // 半关闭之后依然能收到完整的响应，之后读取到EOF
+            ByteBuffer response = ByteBuffer.allocate(1024);
+            peer.socket().setSoTimeout(5000);
+            int total = 0;
+            int n;
+            while ((n = peer.socket().getInputStream().read(response.array(), total, response.capacity() - total)) > 0) {
+                total += n;
+            }
+            Assert.assertEquals(100, total);
+            Assert.assertEquals(-1, n);
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPendingWritesFailedOnClose() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, MyChannelPipeline::new, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 只write不flush，消息积压在outboundBuffer中
+            CompletableFuture<MyNioChannel> pending = channel.getChannelPipeline().write(newMessage(defaultChannelConfig, 16), false);
+            channel.getChannelPipeline().close();
+            assertClosedChannelException(pending);
+            Assert.assertEquals(0, channel.bytesBeforeWritable());
+
+            // 关闭之后的写入直接失败
+            assertClosedChannelException(channel.getChannelPipeline().write(newMessage(defaultChannelConfig, 16), true));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void assertClosedChannelException(CompletableFuture<MyNioChannel> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("write should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ClosedChannelException);
+        }
+    }
+
+    private static MyByteBuf newMessage(DefaultChannelConfig defaultChannelConfig, int size) {
+        MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(size);
+        message.writeBytes(new byte[size]);
+        return message;
+    }
+}
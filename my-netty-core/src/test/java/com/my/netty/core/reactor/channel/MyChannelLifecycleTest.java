@@ -0,0 +1,109 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.core.reactor.client.MyNioClientBootstrap;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MyChannelLifecycleTest {
+
+    @Test
+    public void testAcceptedChannelLifecycle() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted,
+                myNioChannel -> newPipeline(myNioChannel, events), defaultChannelConfig);
+            myNioEventLoop.register(channel);
+
+            // 已经建立好连接的channel，注册后紧接着就是active
+            Assert.assertEquals("registered", events.poll(5, TimeUnit.SECONDS));
+            Assert.assertEquals("active", events.poll(5, TimeUnit.SECONDS));
+
+            // 对端关闭，读取到EOF后关闭连接
+            peer.close();
+            Assert.assertEquals("inactive", events.poll(5, TimeUnit.SECONDS));
+            Assert.assertEquals("unregistered", events.poll(5, TimeUnit.SECONDS));
+
+            // 重复关闭不会再触发事件
+            channel.getChannelPipeline().close();
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(events.isEmpty());
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testClientChannelLifecycle() throws Exception {
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            MyNioClientBootstrap client = new MyNioClientBootstrap((InetSocketAddress) server.getLocalAddress(),
+                myNioChannel -> newPipeline(myNioChannel, events), new DefaultChannelConfig());
+            try {
+                client.start();
+
+                // 客户端channel注册时还未建立连接，连接建立完成后才是active
+                Assert.assertEquals("registered", events.poll(5, TimeUnit.SECONDS));
+                SocketChannel accepted = server.accept();
+                Assert.assertEquals("active", events.poll(5, TimeUnit.SECONDS));
+
+                accepted.close();
+                Assert.assertEquals("inactive", events.poll(5, TimeUnit.SECONDS));
+                Assert.assertEquals("unregistered", events.poll(5, TimeUnit.SECONDS));
+            } finally {
+                client.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static MyChannelPipeline newPipeline(MyNioChannel myNioChannel, BlockingQueue<String> events) {
+        MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+        myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+            @Override
+            public void channelRegistered(MyChannelHandlerContext ctx) {
+                events.add("registered");
+            }
+
+            @Override
+            public void channelActive(MyChannelHandlerContext ctx) {
+                Assert.assertTrue(ctx.channel().isActive());
+                events.add("active");
+            }
+
+            @Override
+            public void channelInactive(MyChannelHandlerContext ctx) {
+                events.add("inactive");
+            }
+
+            @Override
+            public void channelUnregistered(MyChannelHandlerContext ctx) {
+                events.add("unregistered");
+            }
+        });
+        return myChannelPipeline;
+    }
+}
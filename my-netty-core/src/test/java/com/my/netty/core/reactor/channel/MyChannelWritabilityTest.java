@@ -0,0 +1,140 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyWriteBufferWaterMark;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MyChannelWritabilityTest {
+
+    @Test
+    public void testWritabilityChanged() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Boolean> writabilityEvents = new LinkedBlockingQueue<>();
+        BlockingQueue<Boolean> inEventLoopFlags = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelWritabilityChanged(MyChannelHandlerContext ctx) {
+                        inEventLoopFlags.add(ctx.executor().inEventLoop());
+                        writabilityEvents.add(ctx.channel().isWritable());
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            // 单独设置当前channel的水位线，覆盖全局配置
+            channel.setWriteBufferWaterMark(new MyWriteBufferWaterMark(1024, 4096));
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 只write不flush，积压超过高水位线
+            channel.getChannelPipeline().write(newMessage(defaultChannelConfig, 8192), false);
+            Assert.assertEquals(Boolean.FALSE, writabilityEvents.poll(5, TimeUnit.SECONDS));
+            Assert.assertFalse(channel.isWritable());
+            Assert.assertEquals(0, channel.bytesBeforeUnwritable());
+            Assert.assertTrue(channel.bytesBeforeWritable() > 0);
+
+            // flush之后积压的数据全部写出，回落到低水位线以下
+            channel.getChannelPipeline().write(newMessage(defaultChannelConfig, 16), true).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(Boolean.TRUE, writabilityEvents.poll(5, TimeUnit.SECONDS));
+            Assert.assertTrue(channel.isWritable());
+
+            // 用户自定义的可写标识，在非eventLoop线程中修改时，事件依然在eventLoop线程中触发
+            channel.setUserDefinedWritability(3, false);
+            Assert.assertEquals(Boolean.FALSE, writabilityEvents.poll(5, TimeUnit.SECONDS));
+            Assert.assertFalse(channel.getUserDefinedWritability(3));
+            Assert.assertTrue(channel.getUserDefinedWritability(4));
+            channel.setUserDefinedWritability(3, true);
+            Assert.assertEquals(Boolean.TRUE, writabilityEvents.poll(5, TimeUnit.SECONDS));
+            Assert.assertTrue(channel.isWritable());
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(writabilityEvents.isEmpty());
+            Assert.assertEquals(4, inEventLoopFlags.size());
+            Assert.assertFalse(inEventLoopFlags.contains(Boolean.FALSE));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testWritableAfterShutdownOutput() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Boolean> writabilityEvents = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelWritabilityChanged(MyChannelHandlerContext ctx) {
+                        writabilityEvents.add(ctx.channel().isWritable());
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            channel.setWriteBufferWaterMark(new MyWriteBufferWaterMark(1024, 4096));
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 只write不flush，积压超过高水位线
+            CompletableFuture<MyNioChannel> writeFuture = channel.getChannelPipeline().write(newMessage(defaultChannelConfig, 8192), false);
+            Assert.assertEquals(Boolean.FALSE, writabilityEvents.poll(5, TimeUnit.SECONDS));
+            Assert.assertFalse(channel.isWritable());
+
+            // 积压的消息被失败掉之后，积压字节数归零，channel恢复可写并触发事件
+            channel.shutdownOutput().get(5, TimeUnit.SECONDS);
+            try {
+                writeFuture.get(5, TimeUnit.SECONDS);
+                Assert.fail("pending write should fail after shutdownOutput");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ClosedChannelException);
+            }
+            Assert.assertEquals(Boolean.TRUE, writabilityEvents.poll(5, TimeUnit.SECONDS));
+            Assert.assertTrue(channel.isWritable());
+            Assert.assertEquals(0, channel.bytesBeforeWritable());
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static MyByteBuf newMessage(DefaultChannelConfig defaultChannelConfig, int size) {
+        MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(size);
+        message.writeBytes(new byte[size]);
+        return message;
+    }
+}
@@ -0,0 +1,49 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class MyNioSocketChannelWriteTest {
+
+    @Test
+    public void testWriteQuantumAndOpWrite() throws Exception {
+        final int messageCount = 64;
+        final int messageSize = 64 * 1024;
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.setWriteQuantumBytes(128 * 1024);
+        defaultChannelConfig.childOption(MyChannelOption.SO_SNDBUF, 32 * 1024);
+
+        try (LoopbackChannelFixture fixture = LoopbackChannelFixture.open(defaultChannelConfig, MyChannelPipeline::new)) {
+            MyNioSocketChannel channel = fixture.channel();
+
+            CompletableFuture<MyNioChannel> lastFuture = null;
+            for (int i = 0; i < messageCount; i++) {
+                lastFuture = channel.getChannelPipeline().write(fixture.newMessage(messageSize), i == messageCount - 1);
+            }
+
+            // 对端先不读取，flush执行完之后socket发送缓冲区已满，剩余的数据积压在outboundBuffer中等待OP_WRITE
+            Assert.assertTrue(fixture.callInEventLoop(channel::hasPendingWrites));
+            Assert.assertFalse(lastFuture.isDone());
+
+            long totalRead = 0;
+            ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+            while (totalRead < (long) messageCount * messageSize) {
+                readBuffer.clear();
+                totalRead += fixture.peer().read(readBuffer);
+            }
+
+            lastFuture.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals((long) messageCount * messageSize, totalRead);
+            Assert.assertTrue(channel.getOpWriteRegistrationCount() > 0);
+            Assert.assertTrue(channel.getIncompleteWriteCount() >= channel.getOpWriteRegistrationCount());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.my.netty.core.reactor.channel;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MyVoidCompletableFutureTest {
+
+    @Test
+    public void testWriteVoid() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Throwable> exceptions = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void exceptionCaught(MyChannelHandlerContext ctx, Throwable cause) {
+                        exceptions.add(cause);
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 每个channel复用同一个void future
+            Assert.assertSame(channel.voidFuture(), channel.voidFuture());
+            Assert.assertTrue(MyVoidCompletableFuture.isVoid(channel.voidFuture()));
+            try {
+                channel.voidFuture().whenComplete((ch, t) -> {});
+                Assert.fail("void future should not accept callbacks");
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+
+            MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(16);
+            message.writeBytes(new byte[16]);
+            channel.getChannelPipeline().writeVoid(message, true);
+            ByteBuffer received = ByteBuffer.allocate(16);
+            while (received.hasRemaining()) {
+                if (peer.read(received) < 0) {
+                    Assert.fail("unexpected EOF");
+                }
+            }
+            Assert.assertFalse(channel.voidFuture().isDone());
+
+            // 写出失败时(head节点只支持MyByteBuf)，异常通过exceptionCaught传播
+            channel.getChannelPipeline().writeVoid("not a MyByteBuf", true);
+            Assert.assertNotNull(exceptions.poll(5, TimeUnit.SECONDS));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testVoidFutureRejectsDependents() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, MyChannelPipeline::new, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture<MyNioChannel> voidFuture = channel.voidFuture();
+
+            List<Runnable> dependents = Arrays.asList(
+                () -> voidFuture.thenApplyAsync(ch -> ch),
+                () -> voidFuture.thenAcceptAsync(ch -> {}),
+                () -> voidFuture.handleAsync((ch, t) -> ch),
+                () -> voidFuture.thenCombine(new CompletableFuture<>(), (a, b) -> a),
+                () -> voidFuture.thenAcceptBoth(new CompletableFuture<>(), (a, b) -> {}),
+                () -> voidFuture.applyToEither(new CompletableFuture<>(), ch -> ch),
+                () -> voidFuture.exceptionally(t -> null),
+                voidFuture::toCompletableFuture,
+                // 以void future为参数时，会调用其toCompletableFuture
+                () -> CompletableFuture.completedFuture(1).thenCombine(voidFuture, (a, b) -> a)
+            );
+            for (Runnable dependent : dependents) {
+                try {
+                    dependent.run();
+                    Assert.fail("void future should not create dependents");
+                } catch (IllegalStateException expected) {
+                    // expected
+                }
+            }
+
+            // allOf/anyOf不经过被覆盖的方法，依赖的future立即失败而不是一直挂起
+            assertFailsWithVoid(CompletableFuture.allOf(voidFuture, CompletableFuture.completedFuture(null)));
+            assertFailsWithVoid(CompletableFuture.anyOf(voidFuture, new CompletableFuture<>()));
+
+            // 对外依然表现为未完成
+            Assert.assertFalse(voidFuture.isDone());
+            Assert.assertFalse(voidFuture.isCompletedExceptionally());
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void assertFailsWithVoid(CompletableFuture<?> dependent) throws Exception {
+        try {
+            dependent.get(5, TimeUnit.SECONDS);
+            Assert.fail("dependent of void future should fail");
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+}
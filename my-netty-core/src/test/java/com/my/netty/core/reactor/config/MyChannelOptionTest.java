@@ -0,0 +1,89 @@
+package com.my.netty.core.reactor.config;
+
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+
+public class MyChannelOptionTest {
+
+    @Test
+    public void testOptionRegistry() {
+        Assert.assertSame(MyChannelOption.TCP_NODELAY, MyChannelOption.valueOf("TCP_NODELAY"));
+        Assert.assertSame(MyChannelOption.valueOf("custom"), MyChannelOption.valueOf("custom"));
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        Assert.assertEquals(1024, defaultChannelConfig.getBacklog());
+
+        defaultChannelConfig.option(MyChannelOption.SO_BACKLOG, 128)
+            .childOption(MyChannelOption.TCP_NODELAY, true);
+        Assert.assertEquals(128, defaultChannelConfig.getBacklog());
+        Assert.assertEquals(Boolean.TRUE, defaultChannelConfig.getChildOption(MyChannelOption.TCP_NODELAY));
+        Assert.assertNull(defaultChannelConfig.getOption(MyChannelOption.TCP_NODELAY));
+
+        // 设置为null代表移除
+        defaultChannelConfig.childOption(MyChannelOption.TCP_NODELAY, null);
+        Assert.assertTrue(defaultChannelConfig.getChildOptions().isEmpty());
+    }
+
+    @Test
+    public void testApplyChildOptions() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.childOption(MyChannelOption.TCP_NODELAY, true)
+            .childOption(MyChannelOption.SO_KEEPALIVE, true)
+            .childOption(MyChannelOption.SO_SNDBUF, 64 * 1024);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            try (SocketChannel accepted = server.accept()) {
+                MyNioSocketChannel channel = new MyNioSocketChannel(null, accepted, MyChannelPipeline::new, defaultChannelConfig);
+
+                Assert.assertTrue(accepted.getOption(StandardSocketOptions.TCP_NODELAY));
+                Assert.assertTrue(accepted.getOption(StandardSocketOptions.SO_KEEPALIVE));
+
+                // 一次聚合写出的最大字节数以实际生效的发送缓冲区大小的两倍作为初始值
+                int sendBufferSize = accepted.getOption(StandardSocketOptions.SO_SNDBUF);
+                Assert.assertEquals(sendBufferSize << 1, channel.getMaxBytesPerGatheringWrite());
+            } finally {
+                peer.close();
+            }
+        }
+    }
+
+    @Test
+    public void testApplyChildOptionsSnapshot() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.childOption(MyChannelOption.TCP_NODELAY, true);
+
+        // 服务端bind时生成的快照，之后对childOptions的修改不影响已生成的快照
+        Map<MyChannelOption<?>, Object> childOptions = defaultChannelConfig.getChildOptions();
+        defaultChannelConfig.childOption(MyChannelOption.TCP_NODELAY, false);
+        Assert.assertEquals(Boolean.TRUE, childOptions.get(MyChannelOption.TCP_NODELAY));
+        try {
+            childOptions.put(MyChannelOption.SO_KEEPALIVE, true);
+            Assert.fail();
+        } catch (UnsupportedOperationException expected) {
+            // 快照是不可变的
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            try (SocketChannel accepted = server.accept()) {
+                new MyNioSocketChannel(null, accepted, MyChannelPipeline::new, defaultChannelConfig, childOptions);
+
+                Assert.assertTrue(accepted.getOption(StandardSocketOptions.TCP_NODELAY));
+            } finally {
+                peer.close();
+            }
+        }
+    }
+}
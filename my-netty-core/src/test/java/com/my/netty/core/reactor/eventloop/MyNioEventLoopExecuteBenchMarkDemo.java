@@ -0,0 +1,83 @@
+package com.my.netty.core.reactor.eventloop;
+
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.queue.MyBlockingTaskQueueFactory;
+import com.my.netty.core.reactor.eventloop.queue.MyEventLoopTaskQueueFactory;
+import com.my.netty.core.reactor.eventloop.queue.MyMpscTaskQueueFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比不同任务队列下，多个外部线程并发execute提交任务的吞吐量(1到32个生产者线程)
+ *
+ * 结果依赖机器的核数，以main方法的形式提供，不在单测中执行
+ * 参数：[总任务数(默认1048576)]
+ * */
+public class MyNioEventLoopExecuteBenchMarkDemo {
+
+    private static final int[] PRODUCER_THREADS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws Exception {
+        int totalTasks = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+
+        doTest(MyBlockingTaskQueueFactory.INSTANCE, totalTasks);
+        doTest(MyMpscTaskQueueFactory.INSTANCE, totalTasks);
+    }
+
+    private static void doTest(MyEventLoopTaskQueueFactory taskQueueFactory, int totalTasks) throws Exception {
+        for (int producerThreads : PRODUCER_THREADS) {
+            DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+            defaultChannelConfig.setTaskQueueFactory(taskQueueFactory);
+            MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+            try {
+                long costMillis = testExecute(myNioEventLoop, producerThreads, totalTasks / producerThreads);
+                // 有了唤醒门闩，每次唤醒都至少对应一个外部提交的任务(wakeups <= externalTasks)
+                System.out.println(taskQueueFactory.getClass().getSimpleName() + " producerThreads=" + producerThreads
+                    + " cost=" + costMillis + "ms, ops/ms=" + (totalTasks / Math.max(costMillis, 1))
+                    + ", wakeups=" + myNioEventLoop.getWakeupCount() + "/" + myNioEventLoop.getExternalTaskCount());
+            } finally {
+                myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static long testExecute(MyNioEventLoop myNioEventLoop, int producerThreads, int tasksPerProducer) throws Exception {
+        int totalTasks = producerThreads * tasksPerProducer;
+        CountDownLatch executedLatch = new CountDownLatch(1);
+        int[] executedCount = new int[1];
+        Runnable task = () -> {
+            // 只会在eventLoop线程中执行，不需要同步
+            if (++executedCount[0] == totalTasks) {
+                executedLatch.countDown();
+            }
+        };
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] producers = new Thread[producerThreads];
+        for (int i = 0; i < producerThreads; i++) {
+            producers[i] = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < tasksPerProducer; j++) {
+                    myNioEventLoop.execute(task);
+                }
+            });
+            producers[i].start();
+        }
+
+        long start = System.currentTimeMillis();
+        startLatch.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        if (!executedLatch.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("tasks not executed in 60s, executed=" + executedCount[0]);
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,206 @@
+package com.my.netty.core.reactor.eventloop;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.channel.buffer.MyChannelOutboundBuffer;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MyNioEventLoopMigrateTest {
+
+    @Test
+    public void testMigrate() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop loopA = new MyNioEventLoop(defaultChannelConfig);
+        MyNioEventLoop loopB = new MyNioEventLoop(defaultChannelConfig);
+
+        StringBuffer received = new StringBuffer();
+        AtomicInteger readOnWrongLoop = new AtomicInteger();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(loopA.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline pipeline = new MyChannelPipeline(myNioChannel);
+                pipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        if (!ctx.channel().getMyNioEventLoop().inEventLoop()) {
+                            readOnWrongLoop.incrementAndGet();
+                        }
+                        MyByteBuf byteBuf = (MyByteBuf) msg;
+                        byte[] bytes = new byte[byteBuf.readableBytes()];
+                        byteBuf.readBytes(bytes);
+                        byteBuf.release();
+                        received.append(new String(bytes, StandardCharsets.UTF_8));
+                    }
+                });
+                return pipeline;
+            }, defaultChannelConfig);
+            loopA.register(channel);
+
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                String seq = i + ",";
+                expected.append(seq);
+                peer.write(ByteBuffer.wrap(seq.getBytes(StandardCharsets.UTF_8)));
+
+                if (i == 100) {
+                    // 数据发送过程中进行迁移
+                    loopA.migrate(channel, loopB).get(5, TimeUnit.SECONDS);
+                    Assert.assertSame(loopB, channel.getMyNioEventLoop());
+                }
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.length() < expected.length() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            Assert.assertEquals(expected.toString(), received.toString());
+            Assert.assertEquals(0, readOnWrongLoop.get());
+            Assert.assertEquals(0, loopA.registeredChannels());
+            Assert.assertEquals(1, loopB.registeredChannels());
+            Assert.assertEquals(1, loopB.getMigratedInChannels());
+
+            // 迁移后，写出操作由新的eventLoop执行
+            MyByteBuf response = defaultChannelConfig.getAllocator().heapBuffer(16);
+            response.writeBytes("pong".getBytes(StandardCharsets.UTF_8));
+            channel.getChannelPipeline().write(response, true).get(5, TimeUnit.SECONDS);
+
+            ByteBuffer readBuffer = ByteBuffer.allocate(4);
+            while (readBuffer.hasRemaining()) {
+                peer.read(readBuffer);
+            }
+            Assert.assertEquals("pong", new String(readBuffer.array(), StandardCharsets.UTF_8));
+
+            peer.close();
+        } finally {
+            loopA.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            loopB.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testMigrateFromEventLoopKeepsTaskOrder() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop loopA = new MyNioEventLoop(defaultChannelConfig);
+        MyNioEventLoop loopB = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(loopA.getUnwrappedSelector(), accepted, MyChannelPipeline::new, defaultChannelConfig);
+            loopA.register(channel);
+
+            List<String> order = new ArrayList<>();
+            CompletableFuture<CompletableFuture<Void>> migrateFuture = new CompletableFuture<>();
+            loopA.execute(() -> {
+                // 迁移前已经提交的任务
+                loopA.execute(() -> order.add("queued:" + (channel.getMyNioEventLoop() == loopA)));
+                // 在eventLoop线程中发起迁移，不会重入执行任务队列，已提交的任务依然在原eventLoop中按顺序执行
+                migrateFuture.complete(loopA.migrate(channel, loopB));
+                order.add("migrate called");
+            });
+
+            migrateFuture.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            List<String> executedOrder = CompletableFuture.supplyAsync(() -> new ArrayList<>(order), loopA).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(Arrays.asList("migrate called", "queued:true"), executedOrder);
+            Assert.assertSame(loopB, channel.getMyNioEventLoop());
+            Assert.assertEquals(0, loopA.registeredChannels());
+            Assert.assertEquals(1, loopB.registeredChannels());
+
+            peer.close();
+        } finally {
+            loopA.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            loopB.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testMigrateWithIncompleteWriteInFlight() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        // 每次flush只write一次，大消息一定写不完，剩余的部分由incompleteWrite提交的flush0任务继续写出
+        defaultChannelConfig.setWriteSpinCount(1);
+        MyNioEventLoop loopA = new MyNioEventLoop(defaultChannelConfig);
+        MyNioEventLoop loopB = new MyNioEventLoop(defaultChannelConfig);
+
+        AtomicInteger writeOnWrongLoop = new AtomicInteger();
+        final int messageSize = 4 * 1024 * 1024;
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(loopA.getUnwrappedSelector(), accepted, MyChannelPipeline::new, defaultChannelConfig) {
+                @Override
+                protected void doWrite(MyChannelOutboundBuffer myChannelOutboundBuffer) throws Exception {
+                    if (!getMyNioEventLoop().inEventLoop()) {
+                        // channel已经归属于其它eventLoop了，依然在当前线程中写出
+                        writeOnWrongLoop.incrementAndGet();
+                    }
+                    super.doWrite(myChannelOutboundBuffer);
+                }
+            };
+            loopA.register(channel);
+
+            byte[] content = new byte[messageSize];
+            for (int i = 0; i < messageSize; i++) {
+                content[i] = (byte) i;
+            }
+
+            CompletableFuture<CompletableFuture<Void>> migrateFuture = new CompletableFuture<>();
+            CompletableFuture<CompletableFuture<MyNioChannel>> writeFuture = new CompletableFuture<>();
+            loopA.execute(() -> {
+                // 先发起迁移，交接任务入队
+                migrateFuture.complete(loopA.migrate(channel, loopB));
+                // 再写出一个大消息，没写完的部分由incompleteWrite提交的flush0任务继续写出，该任务排在交接任务之后
+                MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(messageSize);
+                message.writeBytes(content);
+                writeFuture.complete(channel.getChannelPipeline().write(message, true));
+            });
+
+            ByteBuffer readBuffer = ByteBuffer.allocate(messageSize);
+            while (readBuffer.hasRemaining()) {
+                if (peer.read(readBuffer) < 0) {
+                    Assert.fail("unexpected EOF");
+                }
+            }
+
+            migrateFuture.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            writeFuture.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            Assert.assertArrayEquals(content, readBuffer.array());
+            Assert.assertEquals(0, writeOnWrongLoop.get());
+            Assert.assertSame(loopB, channel.getMyNioEventLoop());
+            Assert.assertEquals(1, loopB.registeredChannels());
+
+            peer.close();
+        } finally {
+            loopA.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            loopB.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+}
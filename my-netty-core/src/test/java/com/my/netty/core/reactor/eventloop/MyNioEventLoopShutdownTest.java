@@ -0,0 +1,137 @@
+package com.my.netty.core.reactor.eventloop;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MyNioEventLoopShutdownTest {
+
+    @Test
+    public void testShutdownNotStarted() throws Exception {
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(new DefaultChannelConfig());
+
+        myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(myNioEventLoop.isTerminated());
+        Assert.assertFalse(myNioEventLoop.getUnwrappedSelector().isOpen());
+    }
+
+    @Test
+    public void testShutdownGracefully() throws Exception {
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(new DefaultChannelConfig());
+
+        AtomicInteger executedTasks = new AtomicInteger();
+        AtomicInteger periodicTasks = new AtomicInteger();
+        myNioEventLoop.scheduleAtFixedRate(periodicTasks::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+        for(int i=0; i<1000; i++){
+            myNioEventLoop.execute(executedTasks::incrementAndGet);
+        }
+
+        // 静默期内提交的任务依然会被执行：在eventLoop中发起关闭后再提交一个任务，该任务同样会在终止前被执行
+        AtomicBoolean submittedWhileShuttingDown = new AtomicBoolean();
+        myNioEventLoop.execute(() -> {
+            myNioEventLoop.shutdownGracefully(300, 5000, TimeUnit.MILLISECONDS);
+            submittedWhileShuttingDown.set(myNioEventLoop.isShuttingDown());
+            myNioEventLoop.execute(executedTasks::incrementAndGet);
+        });
+
+        myNioEventLoop.terminationFuture().get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(myNioEventLoop.isTerminated());
+        Assert.assertTrue(submittedWhileShuttingDown.get());
+        Assert.assertEquals(1001, executedTasks.get());
+        Assert.assertFalse(myNioEventLoop.getUnwrappedSelector().isOpen());
+
+        // 关闭后周期性任务不再执行
+        int periodicTasksAfterShutdown = periodicTasks.get();
+        Thread.sleep(50);
+        Assert.assertEquals(periodicTasksAfterShutdown, periodicTasks.get());
+
+        // 终止后不再接收新任务
+        RejectedExecutionException exception = null;
+        try {
+            myNioEventLoop.execute(executedTasks::incrementAndGet);
+        }catch (RejectedExecutionException e){
+            exception = e;
+        }
+        Assert.assertNotNull(exception);
+
+        // 终止后注册channel被拒绝，不会计入注册数
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel socketChannel = SocketChannel.open(server.getLocalAddress())) {
+                MyNioSocketChannel myNioSocketChannel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), socketChannel,
+                    MyChannelPipeline::new, new DefaultChannelConfig());
+                try {
+                    myNioEventLoop.register(myNioSocketChannel);
+                    Assert.fail("register should be rejected after termination");
+                } catch (RejectedExecutionException expected) {
+                    // expected
+                }
+                Assert.assertEquals(0, myNioEventLoop.registeredChannels());
+            }
+        }
+    }
+
+    @Test
+    public void testShutdownWithoutQuietPeriodFlushesPendingWrites() throws Exception {
+        final int messageSize = 4 * 1024 * 1024;
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.childOption(MyChannelOption.SO_SNDBUF, 32 * 1024);
+
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, MyChannelPipeline::new, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+
+            MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(messageSize);
+            message.writeBytes(new byte[messageSize]);
+            myNioEventLoop.execute(() -> {
+                myNioEventLoop.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+                channel.getChannelPipeline().write(message, true);
+                // 让关闭检查时任务队列中依然有任务需要执行
+                for (int i = 0; i < 1000; i++) {
+                    myNioEventLoop.execute(() -> {});
+                }
+            });
+
+            // 没有静默期，但对端还没读取，积压的数据写出完毕之前eventLoop不能退出
+
+            long totalRead = 0;
+            ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+            while (totalRead < messageSize) {
+                readBuffer.clear();
+                int read = peer.read(readBuffer);
+                Assert.assertTrue("connection closed before pending writes were flushed", read >= 0);
+                totalRead += read;
+            }
+
+            myNioEventLoop.terminationFuture().get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(messageSize, totalRead);
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.my.netty.core.reactor.eventloop;
+
+import com.my.netty.core.reactor.eventloop.offload.MyOffloadExecutorGroup;
+import com.my.netty.core.reactor.eventloop.offload.MyRejectableTask;
+import com.my.netty.core.reactor.eventloop.offload.MySerialEventExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MyOffloadExecutorGroupTest {
+
+    @Test
+    public void testSerialExecutorKeepOrder() throws InterruptedException {
+        // 有界线程池，线程数远小于子执行器数量，且队列很小，会触发拒绝，生产者重试
+        MyOffloadExecutorGroup group = MyOffloadExecutorGroup.newBoundedGroup(4, 16);
+
+        int executorCount = 32;
+        int taskCount = 10000;
+
+        CountDownLatch countDownLatch = new CountDownLatch(executorCount * taskCount);
+        AtomicInteger outOfOrderCount = new AtomicInteger();
+        AtomicInteger concurrentCount = new AtomicInteger();
+
+        List<Thread> producers = new ArrayList<>();
+        for(int i=0; i<executorCount; i++){
+            MySerialEventExecutor serialEventExecutor = group.newSerialExecutor();
+            AtomicBoolean running = new AtomicBoolean();
+            int[] lastSeq = new int[]{-1};
+
+            // 每个子执行器一个生产者，模拟一个channel的eventLoop按顺序派发事件
+            producers.add(new Thread(()->{
+                for(int seq=0; seq<taskCount; seq++){
+                    final int currentSeq = seq;
+                    Runnable task = ()->{
+                        if(!running.compareAndSet(false,true) || !serialEventExecutor.inEventLoop()){
+                            concurrentCount.incrementAndGet();
+                        }
+
+                        if(lastSeq[0] + 1 != currentSeq){
+                            outOfOrderCount.incrementAndGet();
+                        }
+                        lastSeq[0] = currentSeq;
+
+                        running.set(false);
+                        countDownLatch.countDown();
+                    };
+                    for(;;){
+                        try {
+                            serialEventExecutor.execute(task);
+                            break;
+                        }catch (RejectedExecutionException e){
+                            // 共享线程池已满，被拒绝的任务不会执行，稍后重试
+                            Thread.yield();
+                        }
+                    }
+                }
+            }));
+        }
+
+        producers.forEach(Thread::start);
+
+        Assert.assertTrue(countDownLatch.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(0, outOfOrderCount.get());
+        Assert.assertEquals(0, concurrentCount.get());
+
+        group.shutdown();
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws Exception {
+        MyOffloadExecutorGroup group = MyOffloadExecutorGroup.newBoundedGroup(1, 1);
+        try {
+            CountDownLatch blocker = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(1);
+
+            // 占满唯一的线程和队列
+            MySerialEventExecutor busy = group.newSerialExecutor();
+            busy.execute(()->{
+                started.countDown();
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            MySerialEventExecutor queued = group.newSerialExecutor();
+            CountDownLatch queuedRan = new CountDownLatch(1);
+            queued.execute(queuedRan::countDown);
+
+            // 线程池已满，任务被拒绝，并且不会在提交者线程中执行
+            MySerialEventExecutor rejected = group.newSerialExecutor();
+            AtomicBoolean ranOnCaller = new AtomicBoolean();
+            Thread caller = Thread.currentThread();
+            try {
+                rejected.execute(()-> ranOnCaller.set(Thread.currentThread() == caller));
+                Assert.fail("should be rejected");
+            }catch (RejectedExecutionException expected){
+                // expected
+            }
+            Assert.assertFalse(ranOnCaller.get());
+            Assert.assertEquals(0, rejected.pendingTasks());
+
+            // 已经有drain在排队的子执行器，新任务进入自己的队列，不会被拒绝
+            queued.execute(()->{});
+            Assert.assertEquals(2, queued.pendingTasks());
+
+            blocker.countDown();
+            Assert.assertTrue(queuedRan.await(5, TimeUnit.SECONDS));
+
+            // 线程池恢复后可以再次提交
+            CountDownLatch retried = new CountDownLatch(1);
+            rejected.execute(retried::countDown);
+            Assert.assertTrue(retried.await(5, TimeUnit.SECONDS));
+        } finally {
+            group.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectWhileProducersSubmit() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // 第一次提交drain时阻塞在拒绝之前，期间其它生产者提交任务(CAS失败，认为drain已经提交了)
+            CountDownLatch rejecting = new CountDownLatch(1);
+            CountDownLatch releaseReject = new CountDownLatch(1);
+            AtomicInteger executeCalls = new AtomicInteger();
+            MySerialEventExecutor serialEventExecutor = new MySerialEventExecutor(command -> {
+                if(executeCalls.getAndIncrement() == 0){
+                    rejecting.countDown();
+                    try {
+                        releaseReject.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new RejectedExecutionException("saturated");
+                }
+                pool.execute(command);
+            });
+
+            AtomicBoolean firstRejected = new AtomicBoolean();
+            Thread rejectedProducer = new Thread(()->{
+                try {
+                    serialEventExecutor.execute(()->{});
+                }catch (RejectedExecutionException e){
+                    firstRejected.set(true);
+                }
+            });
+            rejectedProducer.start();
+            Assert.assertTrue(rejecting.await(5, TimeUnit.SECONDS));
+
+            int producerCount = 4;
+            List<Integer> executedOrder = new ArrayList<>();
+            CountDownLatch executed = new CountDownLatch(producerCount);
+            for(int i=0; i<producerCount; i++){
+                final int seq = i;
+                // 按顺序提交，都不会被拒绝
+                serialEventExecutor.execute(()->{
+                    executedOrder.add(seq);
+                    executed.countDown();
+                });
+            }
+
+            releaseReject.countDown();
+            rejectedProducer.join(5000);
+            Assert.assertTrue(firstRejected.get());
+
+            // 被拒绝的提交者撤回之后，为其它生产者已经入队的任务重新提交了drain，任务按提交顺序执行
+            Assert.assertTrue(executed.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList(0, 1, 2, 3), executedOrder);
+            Assert.assertEquals(0, serialEventExecutor.pendingTasks());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailQueuedTasksWhenRejectedAgain() throws Exception {
+        // 共享执行器一直拒绝
+        CountDownLatch rejecting = new CountDownLatch(1);
+        CountDownLatch releaseReject = new CountDownLatch(1);
+        AtomicInteger executeCalls = new AtomicInteger();
+        MySerialEventExecutor serialEventExecutor = new MySerialEventExecutor(command -> {
+            if(executeCalls.getAndIncrement() == 0){
+                rejecting.countDown();
+                try {
+                    releaseReject.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            throw new RejectedExecutionException("shutdown");
+        });
+
+        Thread rejectedProducer = new Thread(()->{
+            try {
+                serialEventExecutor.execute(()->{});
+            }catch (RejectedExecutionException e){
+                // expected
+            }
+        });
+        rejectedProducer.start();
+        Assert.assertTrue(rejecting.await(5, TimeUnit.SECONDS));
+
+        List<Integer> failedOrder = new ArrayList<>();
+        AtomicBoolean ran = new AtomicBoolean();
+        for(int i=0; i<3; i++){
+            final int seq = i;
+            serialEventExecutor.execute(new MyRejectableTask() {
+                @Override
+                public void run() {
+                    ran.set(true);
+                }
+
+                @Override
+                public void onRejected(RejectedExecutionException e) {
+                    failedOrder.add(seq);
+                }
+            });
+        }
+
+        releaseReject.countDown();
+        rejectedProducer.join(5000);
+
+        // 重新提交drain依然被拒绝，已经入队的任务按顺序收到拒绝通知，不会留在队列中
+        Assert.assertEquals(Arrays.asList(0, 1, 2), failedOrder);
+        Assert.assertFalse(ran.get());
+        Assert.assertEquals(0, serialEventExecutor.pendingTasks());
+    }
+}
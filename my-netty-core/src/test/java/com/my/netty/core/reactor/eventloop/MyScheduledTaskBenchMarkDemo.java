@@ -0,0 +1,76 @@
+package com.my.netty.core.reactor.eventloop;
+
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.schedule.MyScheduledFutureTask;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 百万级别的定时任务(超时任务)在eventLoop中插入、取消以及触发的开销
+ *
+ * 以main方法的形式提供，不在单测中执行
+ * 参数：[定时任务数(默认1000000)]
+ * */
+public class MyScheduledTaskBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        int pendingTimeouts = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(new DefaultChannelConfig());
+        try {
+            doTest(myNioEventLoop, pendingTimeouts);
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void doTest(MyNioEventLoop myNioEventLoop, int pendingTimeouts) throws Exception {
+        MyScheduledFutureTask[] tasks = new MyScheduledFutureTask[pendingTimeouts];
+        // 一半的任务会被取消，另一半在1秒内陆续到期
+        int expectedFired = pendingTimeouts / 2;
+        CountDownLatch firedLatch = new CountDownLatch(1);
+        int[] firedCount = new int[1];
+        Runnable timeoutTask = () -> {
+            // 只会在eventLoop线程中执行，不需要同步
+            if (++firedCount[0] == expectedFired) {
+                firedLatch.countDown();
+            }
+        };
+
+        AtomicLong insertCost = new AtomicLong();
+        AtomicLong cancelCost = new AtomicLong();
+        AtomicLong remaining = new AtomicLong();
+        CountDownLatch scheduledLatch = new CountDownLatch(1);
+        long firingStart = System.nanoTime();
+        myNioEventLoop.execute(() -> {
+            // 在eventLoop线程内插入，排除跨线程提交任务的开销
+            long start = System.nanoTime();
+            for (int i = 0; i < pendingTimeouts; i++) {
+                tasks[i] = myNioEventLoop.schedule(timeoutTask, 1000 + (i % 1000), TimeUnit.MILLISECONDS);
+            }
+            insertCost.set(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < pendingTimeouts; i += 2) {
+                tasks[i].cancel(false);
+            }
+            cancelCost.set(System.nanoTime() - start);
+            remaining.set(myNioEventLoop.scheduledTasks());
+            scheduledLatch.countDown();
+        });
+
+        if (!scheduledLatch.await(60, TimeUnit.SECONDS) || !firedLatch.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("timeouts not fired in 60s, fired=" + firedCount[0]);
+        }
+        // 最后一个任务的deadline大约在2秒时，超出的部分即为触发的开销
+        long firingCost = System.nanoTime() - firingStart - TimeUnit.MILLISECONDS.toNanos(2000);
+
+        System.out.println("pendingTimeouts=" + pendingTimeouts
+            + " remainingAfterCancel=" + remaining.get()
+            + " insert=" + insertCost.get() / pendingTimeouts + "ns/op"
+            + " cancel=" + cancelCost.get() / (pendingTimeouts / 2) + "ns/op"
+            + " firingDelay=" + TimeUnit.NANOSECONDS.toMillis(firingCost) + "ms");
+    }
+}
@@ -0,0 +1,107 @@
+package com.my.netty.core.reactor.eventloop;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * 对比jdk原生HashSet与数组优化后的selectedKeys，在大量活跃连接下的分配速率以及单轮事件循环的延迟
+ *
+ * 需要较大的文件句柄数(每个连接占用两个fd)，比如ulimit -n 65535，因此以main方法的形式提供，不在单测中执行
+ * 参数：连接数(默认10000) 轮数(默认200)
+ * */
+public class SelectedKeysBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        doTest(connections, rounds, false);
+        doTest(connections, rounds, true);
+    }
+
+    private static void doTest(int connections, int rounds, boolean optimized) throws Exception {
+        Selector selector = Selector.open();
+        MySelectedSelectionKeySet selectedKeySet = optimized ? MySelectorOptimizer.tryOptimize(selector) : null;
+        if (optimized && selectedKeySet == null) {
+            System.out.println("selectedKeys optimization unavailable, skip");
+            selector.close();
+            return;
+        }
+
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.socket().bind(new InetSocketAddress("127.0.0.1", 0), connections);
+
+        SocketChannel[] clients = new SocketChannel[connections];
+        SocketChannel[] servers = new SocketChannel[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = SocketChannel.open(serverSocketChannel.socket().getLocalSocketAddress());
+            servers[i] = serverSocketChannel.accept();
+            servers[i].configureBlocking(false);
+            servers[i].register(selector, SelectionKey.OP_READ, i);
+        }
+
+        ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1);
+        ByteBuffer readBuffer = ByteBuffer.allocateDirect(64);
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long totalLoopNanos = 0;
+        long totalAllocatedBytes = 0;
+        long totalKeys = 0;
+        for (int round = 0; round < rounds; round++) {
+            // 所有连接都写入1个字节，令服务端的所有连接都处于可读状态
+            for (SocketChannel client : clients) {
+                writeBuffer.clear();
+                client.write(writeBuffer);
+            }
+
+            int processed = 0;
+            long allocatedStart = threadMXBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            while (processed < connections) {
+                selector.select();
+                if (selectedKeySet != null) {
+                    for (int i = 0; i < selectedKeySet.size(); i++) {
+                        processed += read(selectedKeySet.getAndClear(i), readBuffer);
+                    }
+                    selectedKeySet.reset();
+                } else {
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        processed += read(key, readBuffer);
+                    }
+                }
+            }
+            totalLoopNanos += System.nanoTime() - start;
+            totalAllocatedBytes += threadMXBean.getThreadAllocatedBytes(threadId) - allocatedStart;
+            totalKeys += processed;
+        }
+
+        System.out.println((optimized ? "optimized" : "plain") + " connections=" + connections
+            + " avgLoopLatency=" + (totalLoopNanos / rounds / 1000) + "us"
+            + " allocatedBytesPerKey=" + (totalAllocatedBytes / Math.max(totalKeys, 1))
+            + " allocatedBytesPerRound=" + (totalAllocatedBytes / rounds));
+
+        for (int i = 0; i < connections; i++) {
+            clients[i].close();
+            servers[i].close();
+        }
+        serverSocketChannel.close();
+        selector.close();
+    }
+
+    private static int read(SelectionKey key, ByteBuffer readBuffer) throws Exception {
+        readBuffer.clear();
+        ((SocketChannel) key.channel()).read(readBuffer);
+        return 1;
+    }
+}
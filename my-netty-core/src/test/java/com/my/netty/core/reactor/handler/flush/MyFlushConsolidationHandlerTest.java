@@ -0,0 +1,122 @@
+package com.my.netty.core.reactor.handler.flush;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class MyFlushConsolidationHandlerTest {
+
+    @Test
+    public void testFlushConsolidatedDuringRead() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+        int responsesPerRead = 10;
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyFlushConsolidationHandler());
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        MyReferenceCountUtil.safeRelease(msg);
+                        // 每个响应都writeAndFlush
+                        for (int i = 0; i < responsesPerRead; i++) {
+                            MyByteBuf response = ctx.alloc().heapBuffer(4);
+                            response.writeBytes(new byte[4]);
+                            ctx.write(response, true);
+                        }
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            peer.write(ByteBuffer.wrap(new byte[1]));
+            readFully(peer, responsesPerRead * 4);
+            // read过程中的10次flush被合并为了1次写出(socketWriteCount只能在eventLoop中读取)
+            Assert.assertEquals(1, (long) CompletableFuture.supplyAsync(channel::getSocketWriteCount, myNioEventLoop).get(5, TimeUnit.SECONDS));
+
+            // 不在read过程中的flush直接执行
+            MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(4);
+            message.writeBytes(new byte[4]);
+            channel.getChannelPipeline().write(message, false);
+            channel.getChannelPipeline().flush();
+            readFully(peer, 4);
+            Assert.assertEquals(2, (long) CompletableFuture.supplyAsync(channel::getSocketWriteCount, myNioEventLoop).get(5, TimeUnit.SECONDS));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testFlushPendingOnHandlerRemoved() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast("flushConsolidation", new MyFlushConsolidationHandler());
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        MyReferenceCountUtil.safeRelease(msg);
+                        MyByteBuf response = ctx.alloc().heapBuffer(4);
+                        response.writeBytes(new byte[4]);
+                        ctx.write(response, true);
+                        // read过程中移除，攒下来的flush不能等到channelReadComplete(已经不会再经过该handler了)
+                        ctx.getPipeline().remove("flushConsolidation");
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            peer.write(ByteBuffer.wrap(new byte[1]));
+            readFully(peer, 4);
+            Assert.assertEquals(1, (long) CompletableFuture.supplyAsync(channel::getSocketWriteCount, myNioEventLoop).get(5, TimeUnit.SECONDS));
+            Assert.assertFalse(CompletableFuture.supplyAsync(channel::hasPendingWrites, myNioEventLoop).get(5, TimeUnit.SECONDS));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void readFully(SocketChannel peer, int length) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (peer.read(buffer) < 0) {
+                Assert.fail("unexpected EOF");
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.my.netty.core.reactor.handler.timeout;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.eventloop.schedule.MyScheduledFutureTask;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MyIdleStateHandlerTest {
+
+    @Test
+    public void testReaderIdleCloseDeadConnection() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyIdleStateHandler(200, 0, 0, TimeUnit.MILLISECONDS));
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) {
+                        events.add(evt);
+                        if (evt == MyIdleStateEvent.READER_IDLE_STATE_EVENT) {
+                            // 持续空闲，关闭连接
+                            ctx.close();
+                        }
+                    }
+
+                    @Override
+                    public void channelInactive(MyChannelHandlerContext ctx) {
+                        events.add("inactive");
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            Assert.assertSame(MyIdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, events.poll(5, TimeUnit.SECONDS));
+            Assert.assertSame(MyIdleStateEvent.READER_IDLE_STATE_EVENT, events.poll(5, TimeUnit.SECONDS));
+            Assert.assertEquals("inactive", events.poll(5, TimeUnit.SECONDS));
+
+            // 连接关闭后定时任务被取消，不会再有空闲事件
+            Assert.assertEquals(0, (int) CompletableFuture.supplyAsync(myNioEventLoop::scheduledTasks, myNioEventLoop).get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(events.isEmpty());
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testWriteResetsWriterIdle() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        ManualClockIdleStateHandler idleStateHandler = new ManualClockIdleStateHandler(0, 300, 300, TimeUnit.MILLISECONDS);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted, myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(idleStateHandler);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void userEventTriggered(MyChannelHandlerContext ctx, Object evt) {
+                        events.add(evt);
+                    }
+                });
+                return myChannelPipeline;
+            }, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            // 每100ms写出一次(一半是void future)，不会触发写空闲和读写空闲
+            for (int i = 0; i < 10; i++) {
+                idleStateHandler.advance(100, TimeUnit.MILLISECONDS);
+                if (i % 2 == 0) {
+                    channel.getChannelPipeline().write(newMessage(defaultChannelConfig, 4), true).get(5, TimeUnit.SECONDS);
+                } else {
+                    channel.getChannelPipeline().writeVoid(newMessage(defaultChannelConfig, 4), true);
+                }
+                CompletableFuture.supplyAsync(idleStateHandler::runDueTasks, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            }
+            Assert.assertTrue(events.isEmpty());
+
+            // 停止写出后，写空闲和读写空闲都会被检测到
+            idleStateHandler.advance(300, TimeUnit.MILLISECONDS);
+            CompletableFuture.supplyAsync(idleStateHandler::runDueTasks, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(new HashSet<>(Arrays.asList(MyIdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT, MyIdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT)),
+                new HashSet<>(Arrays.asList(events.poll(), events.poll())));
+            Assert.assertTrue(events.isEmpty());
+
+            // 持续空闲
+            idleStateHandler.advance(300, TimeUnit.MILLISECONDS);
+            CompletableFuture.supplyAsync(idleStateHandler::runDueTasks, myNioEventLoop).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(new HashSet<>(Arrays.asList(MyIdleStateEvent.WRITER_IDLE_STATE_EVENT, MyIdleStateEvent.ALL_IDLE_STATE_EVENT)),
+                new HashSet<>(Arrays.asList(events.poll(), events.poll())));
+
+            // 对端读取写出的数据
+            ByteBuffer received = ByteBuffer.allocate(40);
+            while (received.hasRemaining()) {
+                if (peer.read(received) < 0) {
+                    Assert.fail("unexpected EOF");
+                }
+            }
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static MyByteBuf newMessage(DefaultChannelConfig defaultChannelConfig, int size) {
+        MyByteBuf message = defaultChannelConfig.getAllocator().heapBuffer(size);
+        message.writeBytes(new byte[size]);
+        return message;
+    }
+
+    /**
+     * 使用手动推进的时钟，定时任务由测试线程显式的在eventLoop中触发，不依赖真实的时间流逝
+     * */
+    private static final class ManualClockIdleStateHandler extends MyIdleStateHandler {
+
+        private volatile long nanoTime;
+
+        /**
+         * 只在eventLoop线程中访问
+         * */
+        private final List<DelayedTask> delayedTasks = new ArrayList<>();
+
+        ManualClockIdleStateHandler(long readerIdleTime, long writerIdleTime, long allIdleTime, TimeUnit unit) {
+            super(readerIdleTime, writerIdleTime, allIdleTime, unit);
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanoTime += unit.toNanos(time);
+        }
+
+        /**
+         * 按到期时间的顺序执行所有已经到期的定时任务
+         * */
+        int runDueTasks() {
+            int count = 0;
+            while (true) {
+                DelayedTask due = delayedTasks.stream()
+                    .filter(delayedTask -> delayedTask.deadlineNanos <= nanoTime)
+                    .min(Comparator.comparingLong(delayedTask -> delayedTask.deadlineNanos))
+                    .orElse(null);
+                if (due == null) {
+                    return count;
+                }
+                delayedTasks.remove(due);
+                if (!due.scheduledFutureTask.isCancelled()) {
+                    due.task.run();
+                    count++;
+                }
+            }
+        }
+
+        @Override
+        long ticksInNanos() {
+            return nanoTime;
+        }
+
+        @Override
+        MyScheduledFutureTask schedule(MyChannelHandlerContext ctx, Runnable task, long delayNanos) {
+            // 向eventLoop提交一个不会到期的占位任务，只用于承载handler的取消操作
+            MyScheduledFutureTask scheduledFutureTask = super.schedule(ctx, () -> {}, TimeUnit.DAYS.toNanos(1));
+            delayedTasks.add(new DelayedTask(task, nanoTime + delayNanos, scheduledFutureTask));
+            return scheduledFutureTask;
+        }
+    }
+
+    private static final class DelayedTask {
+        final Runnable task;
+        final long deadlineNanos;
+        final MyScheduledFutureTask scheduledFutureTask;
+
+        DelayedTask(Runnable task, long deadlineNanos, MyScheduledFutureTask scheduledFutureTask) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.scheduledFutureTask = scheduledFutureTask;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.my.netty.core.reactor.pipeline;
+
+import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计channelRead事件在不同长度的pipeline中传播的耗时
+ *
+ * pipeline中除了最后一个handler之外，其余的handler都只关心出站事件(channelRead被@Skip跳过)，模拟大部分handler都不处理当前事件的场景
+ * 压测逻辑在channel所属的eventLoop线程中执行，排除掉线程切换的开销
+ * 参数：[pipeline长度，逗号分隔(默认2,8,32)] [每轮的事件数(默认10000000)] [轮数(默认5，第一轮作为预热不统计)]
+ * */
+public class PipelineFireChannelReadBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        String[] sizes = (args.length > 0 ? args[0] : "2,8,32").split(",");
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+        try {
+            for (String size : sizes) {
+                int handlerCount = Integer.parseInt(size.trim());
+                CountingHandler countingHandler = new CountingHandler();
+                MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), SocketChannel.open(),
+                    myNioChannel -> buildPipeline(myNioChannel, handlerCount, countingHandler), defaultChannelConfig);
+                myNioEventLoop.register(channel);
+
+                double bestNanosPerEvent = CompletableFuture.supplyAsync(() -> {
+                    double best = Double.MAX_VALUE;
+                    Object msg = new Object();
+                    MyChannelPipeline pipeline = channel.getChannelPipeline();
+                    for (int round = 0; round < rounds; round++) {
+                        long start = System.nanoTime();
+                        for (int i = 0; i < events; i++) {
+                            pipeline.fireChannelRead(msg);
+                        }
+                        long cost = System.nanoTime() - start;
+                        if (round > 0) {
+                            best = Math.min(best, (double) cost / events);
+                        }
+                    }
+                    return best;
+                }, myNioEventLoop).get(10, TimeUnit.MINUTES);
+
+                System.out.printf("handlers=%d, events=%d, received=%d, best=%.2fns/event%n",
+                    handlerCount, events, countingHandler.count, bestNanosPerEvent);
+
+                channel.getJavaChannel().close();
+            }
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static MyChannelPipeline buildPipeline(MyNioChannel myNioChannel, int handlerCount, CountingHandler countingHandler) {
+        MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+        for (int i = 0; i < handlerCount - 1; i++) {
+            myChannelPipeline.addLast(new OutboundOnlyHandler());
+        }
+        myChannelPipeline.addLast(countingHandler);
+        return myChannelPipeline;
+    }
+
+    /**
+     * 只关心出站事件，channelRead会被跳过
+     * */
+    private static class OutboundOnlyHandler extends MyChannelEventHandlerAdapter {
+        @Override
+        public void flush(MyChannelHandlerContext ctx) throws Exception {
+            ctx.flush();
+        }
+    }
+
+    private static class CountingHandler extends MyChannelEventHandlerAdapter {
+        long count;
+
+        @Override
+        public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+            count++;
+        }
+    }
+}
@@ -1,10 +1,28 @@
 package com.my.netty.core.reactor.pipeline;
 
+import com.my.netty.core.reactor.channel.MyNioSocketChannel;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.eventloop.MyNioEventLoop;
 import com.my.netty.core.reactor.exception.MyNettyException;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
 import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 public class PipelineTest {
 
     @Test
@@ -43,4 +61,185 @@ public class PipelineTest {
 
         Assert.assertNull(exception);
     }
+
+    @Test
+    public void testNamedMutation(){
+        MyChannelPipeline myChannelPipeline = new MyChannelPipeline(null);
+
+        LifecycleHandler a = new LifecycleHandler();
+        LifecycleHandler b = new LifecycleHandler();
+        LifecycleHandler c = new LifecycleHandler();
+        LifecycleHandler d = new LifecycleHandler();
+        myChannelPipeline.addLast("a", a).addLast("c", c);
+        myChannelPipeline.addBefore("c", "b", b);
+        myChannelPipeline.addAfter("c", "d", d);
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), myChannelPipeline.names());
+        Assert.assertSame(b, myChannelPipeline.get("b"));
+        Assert.assertSame(c, myChannelPipeline.context(c).handler());
+        Assert.assertNull(myChannelPipeline.get("x"));
+        Assert.assertTrue(a.added && b.added && c.added && d.added);
+
+        try {
+            myChannelPipeline.addLast("a", new LifecycleHandler());
+            Assert.fail("duplicate name");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+
+        Assert.assertSame(b, myChannelPipeline.remove("b"));
+        Assert.assertTrue(b.removed);
+
+        LifecycleHandler e = new LifecycleHandler();
+        Assert.assertSame(c, myChannelPipeline.replace("c", "e", e));
+        Assert.assertTrue(c.removed && e.added);
+        myChannelPipeline.remove(d);
+        Assert.assertEquals(Arrays.asList("a", "e"), myChannelPipeline.names());
+
+        // 未指定名字时自动生成
+        myChannelPipeline.addFirst(new LifecycleHandler());
+        Assert.assertEquals("LifecycleHandler#0", myChannelPipeline.names().get(0));
+
+        try {
+            myChannelPipeline.remove("b");
+            Assert.fail("already removed");
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMutationFromForeignThread() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted,
+                MyChannelPipeline::new, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            BlockingQueue<Boolean> callbacksInEventLoop = new LinkedBlockingQueue<>();
+            MyChannelEventHandlerAdapter handler = new MyChannelEventHandlerAdapter() {
+                @Override
+                public void handlerAdded(MyChannelHandlerContext ctx) {
+                    callbacksInEventLoop.add(ctx.executor().inEventLoop());
+                }
+
+                @Override
+                public void handlerRemoved(MyChannelHandlerContext ctx) {
+                    callbacksInEventLoop.add(ctx.executor().inEventLoop());
+                }
+            };
+
+            // 在非eventLoop线程中增删handler，handlerAdded/handlerRemoved都在eventLoop线程中回调
+            channel.getChannelPipeline().addLast("foreign", handler);
+            Assert.assertEquals(Boolean.TRUE, callbacksInEventLoop.poll(5, TimeUnit.SECONDS));
+            channel.getChannelPipeline().remove("foreign");
+            Assert.assertEquals(Boolean.TRUE, callbacksInEventLoop.poll(5, TimeUnit.SECONDS));
+            Assert.assertTrue(channel.getChannelPipeline().names().isEmpty());
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPropagationAfterMutation() throws Exception {
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        MyNioEventLoop myNioEventLoop = new MyNioEventLoop(defaultChannelConfig);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel peer = SocketChannel.open(server.getLocalAddress());
+            SocketChannel accepted = server.accept();
+
+            MyNioSocketChannel channel = new MyNioSocketChannel(myNioEventLoop.getUnwrappedSelector(), accepted,
+                MyChannelPipeline::new, defaultChannelConfig);
+            myNioEventLoop.register(channel);
+            CompletableFuture.runAsync(() -> {}, myNioEventLoop).get(5, TimeUnit.SECONDS);
+
+            MyChannelPipeline pipeline = channel.getChannelPipeline();
+            List<String> received = new ArrayList<>();
+            pipeline.addLast("first", new MyChannelEventHandlerAdapter() {
+                @Override
+                public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                    received.add("first");
+                    if ("removeSelf".equals(msg)) {
+                        // 移除自己之后继续传播，事件依然能到达后面的handler
+                        ctx.getPipeline().remove(this);
+                    }
+                    ctx.fireChannelRead(msg);
+                }
+            });
+            pipeline.addLast("outbound", new MyChannelEventHandlerAdapter() {
+                @Override
+                public void flush(MyChannelHandlerContext ctx) throws Exception {
+                    ctx.flush();
+                }
+            });
+            pipeline.addLast("last", new RecordingHandler("last", received));
+
+            Assert.assertEquals(Arrays.asList("first", "last"), fireChannelRead(myNioEventLoop, pipeline, received, "msg"));
+
+            // 增加handler后，跳过的链路重新计算
+            pipeline.addBefore("last", "middle", new RecordingHandler("middle", received));
+            Assert.assertEquals(Arrays.asList("first", "middle", "last"), fireChannelRead(myNioEventLoop, pipeline, received, "msg"));
+
+            Assert.assertEquals(Arrays.asList("first", "middle", "last"), fireChannelRead(myNioEventLoop, pipeline, received, "removeSelf"));
+            Assert.assertEquals(Arrays.asList("middle", "last"), fireChannelRead(myNioEventLoop, pipeline, received, "msg"));
+
+            pipeline.replace("middle", "replaced", new RecordingHandler("replaced", received));
+            pipeline.remove("outbound");
+            Assert.assertEquals(Arrays.asList("replaced", "last"), fireChannelRead(myNioEventLoop, pipeline, received, "msg"));
+
+            peer.close();
+        } finally {
+            myNioEventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static List<String> fireChannelRead(MyNioEventLoop myNioEventLoop, MyChannelPipeline pipeline,
+                                                List<String> received, Object msg) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            received.clear();
+            pipeline.fireChannelRead(msg);
+            return new ArrayList<>(received);
+        }, myNioEventLoop).get(5, TimeUnit.SECONDS);
+    }
+
+    private static class RecordingHandler extends MyChannelEventHandlerAdapter {
+        private final String name;
+        private final List<String> received;
+
+        RecordingHandler(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @Override
+        public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+            received.add(name);
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private static class LifecycleHandler extends MyChannelEventHandlerAdapter {
+        boolean added;
+        boolean removed;
+
+        @Override
+        public void handlerAdded(MyChannelHandlerContext ctx) {
+            added = true;
+        }
+
+        @Override
+        public void handlerRemoved(MyChannelHandlerContext ctx) {
+            removed = true;
+        }
+    }
 }
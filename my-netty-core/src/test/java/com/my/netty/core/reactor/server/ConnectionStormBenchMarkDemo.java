@@ -0,0 +1,79 @@
+package com.my.netty.core.reactor.server;
+
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地连接风暴压测，统计服务端每秒accept的连接数
+ *
+ * 参数：[连接数(默认10000)] [客户端并发线程数(默认8)] [boss线程数(默认1)] [是否开启SO_REUSEPORT(默认false)] [maxMessagesPerRead(默认16)]
+ * 注意：连接数较大时需要调大文件句柄数限制(ulimit -n)
+ * */
+public class ConnectionStormBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int clientThreads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int bossThreads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        boolean reusePort = args.length > 3 && Boolean.parseBoolean(args[3]);
+        int maxMessagesPerRead = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.setReusePort(reusePort);
+        defaultChannelConfig.setMaxMessagesPerRead(maxMessagesPerRead);
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 18081);
+        MyNioServerBootstrap myNioServerBootstrap = new MyNioServerBootstrap(address,
+            MyChannelPipeline::new, bossThreads, Runtime.getRuntime().availableProcessors(), defaultChannelConfig);
+        myNioServerBootstrap.start().get(5, TimeUnit.SECONDS);
+
+        List<List<SocketChannel>> clientChannels = new ArrayList<>();
+        CountDownLatch countDownLatch = new CountDownLatch(clientThreads);
+        long start = System.nanoTime();
+        for(int t=0; t<clientThreads; t++){
+            List<SocketChannel> channels = new ArrayList<>();
+            clientChannels.add(channels);
+            int count = connections / clientThreads + (t < connections % clientThreads ? 1 : 0);
+            new Thread(()->{
+                try {
+                    for(int i=0; i<count; i++){
+                        channels.add(SocketChannel.open(address));
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    countDownLatch.countDown();
+                }
+            }).start();
+        }
+        countDownLatch.await();
+
+        // 客户端connect返回时，连接可能还在服务端的accept队列中，等待全部被accept
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (myNioServerBootstrap.getAcceptedChannels() < connections && System.nanoTime() < deadline){
+            Thread.sleep(1);
+        }
+        long costNanos = System.nanoTime() - start;
+
+        long accepted = myNioServerBootstrap.getAcceptedChannels();
+        System.out.printf("connections=%d, clientThreads=%d, bossThreads=%d, reusePort=%s, maxMessagesPerRead=%d%n",
+            connections, clientThreads, bossThreads, reusePort, maxMessagesPerRead);
+        System.out.printf("accepted=%d, cost=%dms, accepts/s=%.0f%n",
+            accepted, TimeUnit.NANOSECONDS.toMillis(costNanos), accepted * 1e9 / costNanos);
+
+        for(List<SocketChannel> channels : clientChannels){
+            for(SocketChannel channel : channels){
+                channel.close();
+            }
+        }
+        myNioServerBootstrap.shutdownGracefully(0, 5, TimeUnit.SECONDS).get(30, TimeUnit.SECONDS);
+    }
+}
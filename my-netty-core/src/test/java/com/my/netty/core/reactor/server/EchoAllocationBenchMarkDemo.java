@@ -0,0 +1,137 @@
+package com.my.netty.core.reactor.server;
+
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.threadlocal.impl.netty.MyFastThreadLocalThread;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 小消息echo场景下，统计服务端IO线程的内存分配速率(每条消息平均分配的字节数)
+ *
+ * 参数：[消息大小(默认64字节)] [客户端连接数(默认4)] [压测时长秒数(默认10)] [是否使用writeVoid(默认false)]
+ * 依赖com.sun.management.ThreadMXBean.getThreadAllocatedBytes，只统计服务端eventLoop线程(MyFastThreadLocalThread)上的分配
+ * */
+public class EchoAllocationBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        int messageSize = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        boolean writeVoid = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 18082);
+        MyNioServerBootstrap myNioServerBootstrap = new MyNioServerBootstrap(address,
+            myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                // 不做任何编解码，收到的ByteBuf原样写回
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        if (writeVoid) {
+                            // 不关心写出结果，复用channel的void future
+                            ctx.writeVoid(msg, true);
+                        } else {
+                            ctx.write(msg, true);
+                        }
+                    }
+                });
+                return myChannelPipeline;
+            }, 1, 1, defaultChannelConfig);
+        myNioServerBootstrap.start().get(5, TimeUnit.SECONDS);
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        LongAdder echoCount = new LongAdder();
+        CountDownLatch warmUpLatch = new CountDownLatch(connections);
+        CountDownLatch finishLatch = new CountDownLatch(connections);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds + 2);
+        for (int c = 0; c < connections; c++) {
+            new Thread(() -> {
+                try (SocketChannel socketChannel = SocketChannel.open(address)) {
+                    ByteBuffer request = ByteBuffer.allocate(messageSize);
+                    ByteBuffer response = ByteBuffer.allocate(messageSize);
+                    long warmUpEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+                    boolean warmedUp = false;
+                    while (System.nanoTime() < deadline) {
+                        request.clear();
+                        while (request.hasRemaining()) {
+                            socketChannel.write(request);
+                        }
+                        response.clear();
+                        while (response.hasRemaining()) {
+                            if (socketChannel.read(response) < 0) {
+                                return;
+                            }
+                        }
+                        if (warmedUp) {
+                            echoCount.increment();
+                        } else if (System.nanoTime() > warmUpEnd) {
+                            warmedUp = true;
+                            warmUpLatch.countDown();
+                        }
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    finishLatch.countDown();
+                }
+            }).start();
+        }
+
+        // 预热结束后才开始统计
+        warmUpLatch.await();
+        List<Thread> eventLoopThreads = eventLoopThreads();
+        long startBytes = allocatedBytes(threadMXBean, eventLoopThreads);
+        long startCount = echoCount.sum();
+        long start = System.nanoTime();
+
+        finishLatch.await();
+
+        long costNanos = System.nanoTime() - start;
+        long allocated = allocatedBytes(threadMXBean, eventLoopThreads) - startBytes;
+        long echoed = echoCount.sum() - startCount;
+
+        System.out.printf("messageSize=%d, connections=%d, writeVoid=%s, echoed=%d, qps=%.0f%n",
+            messageSize, connections, writeVoid, echoed, echoed * 1e9 / costNanos);
+        System.out.printf("eventLoop allocated=%d bytes, rate=%.2f MB/s, perMessage=%.1f bytes%n",
+            allocated, allocated * 1e9 / costNanos / 1024 / 1024, echoed == 0 ? 0d : (double) allocated / echoed);
+
+        myNioServerBootstrap.shutdownGracefully().get(30, TimeUnit.SECONDS);
+    }
+
+    private static List<Thread> eventLoopThreads() {
+        List<Thread> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread instanceof MyFastThreadLocalThread) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threadMXBean, List<Thread> threads) {
+        long total = 0;
+        for (Thread thread : threads) {
+            long bytes = threadMXBean.getThreadAllocatedBytes(thread.getId());
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+}
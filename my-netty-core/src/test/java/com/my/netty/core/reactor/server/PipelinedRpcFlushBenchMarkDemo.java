@@ -0,0 +1,116 @@
+package com.my.netty.core.reactor.server;
+
+import com.my.netty.core.reactor.channel.MyNioChannel;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.codec.MyLengthFieldBasedFrameDecoder;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.flush.MyFlushConsolidationHandler;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * pipeline化的rpc场景下(客户端一次发送一批请求，再等待这一批的响应)，对比是否使用MyFlushConsolidationHandler时服务端write系统调用的次数
+ *
+ * 服务端每解码出一个请求，就writeAndFlush一次响应(原样echo)
+ * 参数：[每批的请求数(默认32)] [单个请求大小(默认64字节，包含4字节的长度字段)] [客户端连接数(默认4)] [压测时长秒数(默认10)] [是否开启flush合并(默认true)]
+ * */
+public class PipelinedRpcFlushBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int requestSize = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        boolean consolidate = args.length <= 4 || Boolean.parseBoolean(args[4]);
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        // 关闭nagle算法，避免不合并flush时大量的小包与延迟确认相互作用产生几十毫秒的停顿，干扰对比
+        defaultChannelConfig.childOption(MyChannelOption.TCP_NODELAY, true);
+
+        Set<MyNioChannel> serverChannels = ConcurrentHashMap.newKeySet();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 18084);
+        MyNioServerBootstrap myNioServerBootstrap = new MyNioServerBootstrap(address,
+            myNioChannel -> {
+                serverChannels.add(myNioChannel);
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                if (consolidate) {
+                    // 需要在所有会flush的handler之前
+                    myChannelPipeline.addLast(new MyFlushConsolidationHandler());
+                }
+                myChannelPipeline.addLast(new MyLengthFieldBasedFrameDecoder(1024, 0, 4));
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        // 每个请求都writeAndFlush一次响应
+                        ctx.write(msg, true);
+                    }
+                });
+                return myChannelPipeline;
+            }, 1, 1, defaultChannelConfig);
+        myNioServerBootstrap.start().get(5, TimeUnit.SECONDS);
+
+        LongAdder requestCount = new LongAdder();
+        CountDownLatch finishLatch = new CountDownLatch(connections);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int c = 0; c < connections; c++) {
+            new Thread(() -> {
+                try (SocketChannel socketChannel = SocketChannel.open(address)) {
+                    socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    ByteBuffer request = ByteBuffer.allocate(batchSize * requestSize);
+                    for (int i = 0; i < batchSize; i++) {
+                        request.putInt(requestSize - 4);
+                        request.position(request.position() + requestSize - 4);
+                    }
+                    ByteBuffer response = ByteBuffer.allocate(batchSize * requestSize);
+                    while (System.nanoTime() < deadline) {
+                        request.clear();
+                        while (request.hasRemaining()) {
+                            socketChannel.write(request);
+                        }
+                        response.clear();
+                        while (response.hasRemaining()) {
+                            if (socketChannel.read(response) < 0) {
+                                return;
+                            }
+                        }
+                        requestCount.add(batchSize);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    finishLatch.countDown();
+                }
+            }).start();
+        }
+        long start = System.nanoTime();
+        finishLatch.await();
+        long costNanos = System.nanoTime() - start;
+
+        long socketWrites = 0;
+        for (MyNioChannel channel : serverChannels) {
+            // socketWriteCount只能在eventLoop线程中读取
+            socketWrites += CompletableFuture.supplyAsync(channel::getSocketWriteCount, channel.getMyNioEventLoop()).get(5, TimeUnit.SECONDS);
+        }
+        long requests = requestCount.sum();
+
+        System.out.printf("batchSize=%d, requestSize=%d, connections=%d, flushConsolidation=%s%n",
+            batchSize, requestSize, connections, consolidate);
+        System.out.printf("requests=%d, qps=%.0f, socketWrites=%d, writesPerRequest=%.3f%n",
+            requests, requests * 1e9 / costNanos, socketWrites, requests == 0 ? 0d : (double) socketWrites / requests);
+
+        myNioServerBootstrap.shutdownGracefully().get(30, TimeUnit.SECONDS);
+    }
+}
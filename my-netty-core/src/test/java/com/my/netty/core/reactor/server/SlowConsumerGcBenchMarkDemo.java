@@ -0,0 +1,162 @@
+package com.my.netty.core.reactor.server;
+
+import com.my.netty.bytebuffer.netty.MyByteBuf;
+import com.my.netty.core.reactor.config.DefaultChannelConfig;
+import com.my.netty.core.reactor.config.MyChannelOption;
+import com.my.netty.core.reactor.config.MyWriteBufferWaterMark;
+import com.my.netty.core.reactor.handler.MyChannelEventHandlerAdapter;
+import com.my.netty.core.reactor.handler.context.MyChannelHandlerContext;
+import com.my.netty.core.reactor.handler.pipeline.MyChannelPipeline;
+import com.my.netty.core.reactor.util.MyReferenceCountUtil;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 大量慢消费者(只连接不读取)场景下，对比开启/关闭outboundDirectStaging时的gc情况
+ *
+ * 每个客户端连接发送1个字节后不再读取，服务端收到后向其写出backlog字节的数据，由于对端不读，数据全部积压在channelOutboundBuffer中
+ * 积压建立完成后，启动一个模拟业务的线程持续分配短生命周期的对象，统计这段时间内的gc次数与gc总耗时
+ *
+ * 参数：[连接数(默认10000)] [每个连接积压的字节数(默认64KB)] [单条消息大小(默认4096)] [是否开启outboundDirectStaging(默认false)] [业务分配持续秒数(默认10)]
+ * 建议启动参数：-Xms2g -Xmx2g -XX:MaxDirectMemorySize=2g(固定堆大小，避免两次对比时堆大小自适应调整的干扰)，连接数较大时需要调大文件句柄数限制(ulimit -n，客户端和服务端在同一进程内，每个连接占用2个句柄)
+ * */
+public class SlowConsumerGcBenchMarkDemo {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int backlogBytes = args.length > 1 ? Integer.parseInt(args[1]) : 64 * 1024;
+        int messageSize = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        boolean directStaging = args.length > 3 && Boolean.parseBoolean(args[3]);
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        DefaultChannelConfig defaultChannelConfig = new DefaultChannelConfig();
+        defaultChannelConfig.setOutboundDirectStaging(directStaging);
+        // 不关心可写状态，水位线设置得足够大
+        defaultChannelConfig.setWriteBufferWaterMark(new MyWriteBufferWaterMark(Integer.MAX_VALUE / 2, Integer.MAX_VALUE));
+        // socket发送缓冲区尽量小，让数据积压在channelOutboundBuffer中
+        defaultChannelConfig.childOption(MyChannelOption.SO_SNDBUF, 4096);
+        defaultChannelConfig.option(MyChannelOption.SO_BACKLOG, 4096);
+
+        LongAdder backlogChannels = new LongAdder();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 18083);
+        MyNioServerBootstrap myNioServerBootstrap = new MyNioServerBootstrap(address,
+            myNioChannel -> {
+                MyChannelPipeline myChannelPipeline = new MyChannelPipeline(myNioChannel);
+                myChannelPipeline.addLast(new MyChannelEventHandlerAdapter() {
+                    @Override
+                    public void channelRead(MyChannelHandlerContext ctx, Object msg) {
+                        MyReferenceCountUtil.safeRelease(msg);
+
+                        byte[] payload = new byte[messageSize];
+                        ThreadLocalRandom.current().nextBytes(payload);
+                        for (int written = 0; written < backlogBytes; written += messageSize) {
+                            MyByteBuf message = ctx.alloc().heapBuffer(messageSize);
+                            message.writeBytes(payload);
+                            ctx.write(message, written + messageSize >= backlogBytes);
+                        }
+                        backlogChannels.increment();
+                    }
+                });
+                return myChannelPipeline;
+            }, 1, 1, defaultChannelConfig);
+        myNioServerBootstrap.start().get(5, TimeUnit.SECONDS);
+
+        List<SocketChannel> clients = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            SocketChannel client = SocketChannel.open();
+            // 客户端接收缓冲区也尽量小
+            client.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+            client.connect(address);
+            client.write(ByteBuffer.wrap(new byte[]{1}));
+            clients.add(client);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (backlogChannels.sum() < connections && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        System.gc();
+        Thread.sleep(1000);
+
+        System.out.printf("connections=%d, backlogBytes=%d, messageSize=%d, outboundDirectStaging=%s%n",
+            connections, backlogBytes, messageSize, directStaging);
+        System.out.printf("after backlog: heapUsed=%dMB, directUsed=%dMB%n", heapUsedMb(), directUsedMb());
+
+        // 一次full gc的停顿时间，与堆内存活对象的多少直接相关
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        System.out.printf("full gc pause=%.1fms%n", (System.nanoTime() - fullGcStart) / 1e6);
+
+        long[] before = gcStats();
+        long start = System.nanoTime();
+        Thread worker = new Thread(() -> simulateBusinessAllocation(seconds));
+        worker.start();
+        worker.join();
+        long costMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long[] after = gcStats();
+
+        System.out.printf("business allocation %dms: gcCount=%d, gcTime=%dms, avgPause=%.2fms%n",
+            costMillis, after[0] - before[0], after[1] - before[1],
+            after[0] == before[0] ? 0d : (double) (after[1] - before[1]) / (after[0] - before[0]));
+
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        myNioServerBootstrap.shutdownGracefully().get(60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 模拟业务：持续分配大量短生命周期的对象，并保留一小部分存活一段时间(触发对象晋升)
+     * */
+    private static void simulateBusinessAllocation(int seconds) {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Object[] survivors = new Object[4096];
+        int i = 0;
+        long sink = 0;
+        while (System.nanoTime() < end) {
+            byte[] garbage = new byte[ThreadLocalRandom.current().nextInt(64, 4096)];
+            sink += garbage.length;
+            if ((i++ & 63) == 0) {
+                survivors[(i >>> 6) & (survivors.length - 1)] = garbage;
+            }
+        }
+        if (sink == 42) {
+            System.out.println(sink);
+        }
+    }
+
+    private static long[] gcStats() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return new long[]{count, time};
+    }
+
+    private static long heapUsedMb() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024 / 1024;
+    }
+
+    private static long directUsedMb() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed() / 1024 / 1024;
+            }
+        }
+        return 0;
+    }
+}